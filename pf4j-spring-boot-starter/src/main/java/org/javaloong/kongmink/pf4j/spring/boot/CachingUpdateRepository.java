@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.pf4j.update.DefaultUpdateRepository;
+import org.pf4j.update.PluginInfo;
+import org.pf4j.update.PluginInfo.PluginRelease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StreamUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Update repository caching the plugins json of the repository in memory and on disk, so
+ * that listing the available plugins does not download the whole index again and again.
+ *
+ * <p>The cached plugins are served for the time to live. Once expired, they are revalidated
+ * with a conditional request using the {@code ETag} and {@code Last-Modified} of the cached
+ * index, which is only downloaded again if it changed. Concurrent callers wait for a single
+ * revalidation instead of each fetching the index. The cached plugins are kept when the
+ * repository can not be reached, and the copy on disk is revalidated on restart.
+ *
+ * <p>A failed fetch is retried after the retry delay rather than the time to live, doubling
+ * the delay on each further failure up to the time to live, so that a repository down on
+ * startup does not leave the plugins empty until the time to live expires.
+ *
+ * <p>{@link #refresh()} does not bypass the time to live, since the update manager refreshes
+ * its repositories on each listing, {@link #invalidate()} does.
+ *
+ * @author Xu Cheng
+ */
+public class CachingUpdateRepository extends DefaultUpdateRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingUpdateRepository.class);
+
+    private static final String META_FILE_EXTENSION = ".meta";
+
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final Path cacheDirectory;
+
+    private final long timeToLive;
+
+    private int connectTimeout = 10000;
+
+    private int readTimeout = 60000;
+
+    private long retryDelay = 5000;
+
+    private final Object fetchMonitor = new Object();
+
+    private volatile CacheEntry cacheEntry;
+
+    /**
+     * @param id the id of the repository
+     * @param url the url of the repository
+     * @param pluginsJsonFileName the file name of the plugins json in the repository
+     * @param cacheDirectory the directory of the copy on disk, or {@code null} to only cache in memory
+     * @param timeToLive the milliseconds the cached plugins are served without revalidation
+     */
+    public CachingUpdateRepository(String id, URL url, String pluginsJsonFileName, Path cacheDirectory,
+                                   long timeToLive) {
+        super(id, url, pluginsJsonFileName);
+        this.cacheDirectory = cacheDirectory != null ? cacheDirectory.resolve(id) : null;
+        this.timeToLive = timeToLive;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @param retryDelay the milliseconds before a failed fetch is first retried
+     */
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    @Override
+    public Map<String, PluginInfo> getPlugins() {
+        CacheEntry entry = cacheEntry;
+        if (entry != null && !entry.isExpired()) return entry.plugins;
+
+        synchronized (fetchMonitor) {
+            entry = cacheEntry;
+            // revalidated by a concurrent caller meanwhile
+            if (entry != null && !entry.isExpired()) return entry.plugins;
+            cacheEntry = revalidate(entry != null ? entry : readCacheEntry());
+            return cacheEntry.plugins;
+        }
+    }
+
+    @Override
+    public PluginInfo getPlugin(String id) {
+        return getPlugins().get(id);
+    }
+
+    /**
+     * Served from the cache until the time to live expires.
+     */
+    @Override
+    public void refresh() {
+    }
+
+    /**
+     * Expire the cached plugins, so that they are revalidated on the next access.
+     */
+    public void invalidate() {
+        CacheEntry entry = cacheEntry;
+        if (entry != null) {
+            cacheEntry = new CacheEntry(entry.plugins, entry.etag, entry.lastModified, 0, 0);
+        }
+    }
+
+    private CacheEntry revalidate(CacheEntry entry) {
+        URL url = null;
+        try {
+            url = new URL(getUrl(), getPluginsJsonFileName());
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                if (entry != null && entry.etag != null) {
+                    httpConnection.setRequestProperty("If-None-Match", entry.etag);
+                }
+                if (entry != null && entry.lastModified > 0) {
+                    httpConnection.setIfModifiedSince(entry.lastModified);
+                }
+                int status = httpConnection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                    httpConnection.disconnect();
+                    log.debug("Plugins of repository '{}' not modified", getId());
+                    return new CacheEntry(entry.plugins, entry.etag, entry.lastModified, expiryTime(timeToLive), 0);
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    httpConnection.disconnect();
+                    throw new IOException("Unexpected status " + status);
+                }
+            }
+
+            byte[] body;
+            try (InputStream input = connection.getInputStream()) {
+                body = StreamUtils.copyToByteArray(input);
+            }
+            String etag = connection.getHeaderField("ETag");
+            long lastModified = connection.getLastModified();
+            log.debug("Fetched plugins of repository '{}' from '{}'", getId(), url);
+            Map<String, PluginInfo> plugins = parse(body);
+            writeCacheEntry(body, etag, lastModified);
+            return new CacheEntry(plugins, etag, lastModified, expiryTime(timeToLive), 0);
+        } catch (Exception e) {
+            log.error("Failed to fetch plugins of repository '{}' from '{}'", getId(), url, e);
+            // retried after the backoff, serving the cached plugins meanwhile
+            int failures = entry != null ? entry.failures + 1 : 1;
+            long expiryTime = expiryTime(retryDelay(failures));
+            return entry != null
+                    ? new CacheEntry(entry.plugins, entry.etag, entry.lastModified, expiryTime, failures)
+                    : new CacheEntry(Collections.emptyMap(), null, 0, expiryTime, failures);
+        }
+    }
+
+    /**
+     * @return the retry delay doubled for each failure but the first, at most the time to live
+     */
+    private long retryDelay(int failures) {
+        long delay = retryDelay << Math.min(failures - 1, 20);
+        return Math.max(0, Math.min(delay, timeToLive));
+    }
+
+    private static long expiryTime(long delay) {
+        return System.currentTimeMillis() + delay;
+    }
+
+    /**
+     * Parse the plugins json like {@link DefaultUpdateRepository}, resolving release urls
+     * against the repository url.
+     */
+    private Map<String, PluginInfo> parse(byte[] body) throws IOException {
+        Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd").create();
+        PluginInfo[] items;
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)) {
+            items = gson.fromJson(reader, PluginInfo[].class);
+        }
+        Map<String, PluginInfo> plugins = new HashMap<>();
+        if (items == null) return plugins;
+        for (PluginInfo plugin : items) {
+            if (plugin.releases != null) {
+                for (PluginRelease release : plugin.releases) {
+                    try {
+                        release.url = new URL(getUrl(), release.url).toString();
+                    } catch (MalformedURLException e) {
+                        log.warn("Invalid url '{}' of plugin '{}' {}", release.url, plugin.id, release.version);
+                    }
+                }
+            }
+            plugin.setRepositoryId(getId());
+            plugins.put(plugin.id, plugin);
+        }
+        return plugins;
+    }
+
+    /**
+     * @return the copy on disk, expired so that it is revalidated, or {@code null} if none
+     */
+    private CacheEntry readCacheEntry() {
+        if (cacheDirectory == null) return null;
+
+        Path bodyFile = cacheDirectory.resolve(getPluginsJsonFileName());
+        Path metaFile = cacheDirectory.resolve(getPluginsJsonFileName() + META_FILE_EXTENSION);
+        if (Files.notExists(bodyFile) || Files.notExists(metaFile)) return null;
+        try {
+            Properties meta = new Properties();
+            try (InputStream input = Files.newInputStream(metaFile)) {
+                meta.load(input);
+            }
+            if (!getUrl().toString().equals(meta.getProperty("url"))) return null;
+            return new CacheEntry(parse(Files.readAllBytes(bodyFile)), meta.getProperty("etag"),
+                    Long.parseLong(meta.getProperty("lastModified", "0")), 0, 0);
+        } catch (Exception e) {
+            log.warn("Failed to read cached plugins of repository '{}'", getId(), e);
+            return null;
+        }
+    }
+
+    private void writeCacheEntry(byte[] body, String etag, long lastModified) {
+        if (cacheDirectory == null) return;
+
+        try {
+            Files.createDirectories(cacheDirectory);
+            Properties meta = new Properties();
+            meta.setProperty("url", getUrl().toString());
+            if (etag != null) meta.setProperty("etag", etag);
+            meta.setProperty("lastModified", String.valueOf(lastModified));
+            Path metaTemp = cacheDirectory.resolve(getPluginsJsonFileName() + META_FILE_EXTENSION + TEMP_FILE_EXTENSION);
+            try (OutputStream output = Files.newOutputStream(metaTemp)) {
+                meta.store(output, null);
+            }
+            Path bodyTemp = cacheDirectory.resolve(getPluginsJsonFileName() + TEMP_FILE_EXTENSION);
+            Files.write(bodyTemp, body);
+            move(bodyTemp, cacheDirectory.resolve(getPluginsJsonFileName()));
+            move(metaTemp, cacheDirectory.resolve(getPluginsJsonFileName() + META_FILE_EXTENSION));
+        } catch (IOException e) {
+            log.warn("Failed to write cached plugins of repository '{}'", getId(), e);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final Map<String, PluginInfo> plugins;
+
+        private final String etag;
+
+        private final long lastModified;
+
+        private final long expiryTime;
+
+        /** Number of consecutive failed fetches */
+        private final int failures;
+
+        private CacheEntry(Map<String, PluginInfo> plugins, String etag, long lastModified, long expiryTime,
+                           int failures) {
+            this.plugins = plugins;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiryTime = expiryTime;
+            this.failures = failures;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiryTime;
+        }
+    }
+}
@@ -20,13 +20,19 @@ import static org.pf4j.AbstractPluginManager.*;
 import java.io.File;
 import java.lang.reflect.Constructor;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
 import java.util.function.Consumer;
 
+import javax.sql.DataSource;
+
 import org.javaloong.kongmink.pf4j.spring.boot.context.MainApplicationReadyListener;
 import org.javaloong.kongmink.pf4j.spring.boot.context.MainApplicationStartedListener;
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginEventBroadcaster;
+import org.javaloong.kongmink.pf4j.spring.boot.env.ConfigurationRepository;
+import org.javaloong.kongmink.pf4j.spring.boot.env.JdbcConfigurationRepository;
 import org.pf4j.CompoundPluginLoader;
 import org.pf4j.DevelopmentPluginLoader;
 import org.pf4j.JarPluginLoader;
@@ -39,6 +45,7 @@ import org.pf4j.PluginStatusProvider;
 import org.pf4j.RuntimeMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -84,7 +91,8 @@ public class Pf4jAutoConfiguration {
 
 	@Bean
 	@ConditionalOnMissingBean
-	public SpringBootPluginManager pluginManager(Pf4jProperties properties) {
+	public SpringBootPluginManager pluginManager(Pf4jProperties properties,
+												 ObjectProvider<DataSource> dataSource) {
 		// Setup RuntimeMode
 		System.setProperty(MODE_PROPERTY_NAME, properties.getRuntimeMode().toString());
 
@@ -95,6 +103,12 @@ public class Pf4jAutoConfiguration {
 		    pluginsRoot = properties.getPluginsRoot();
 		}
 		System.setProperty(PLUGINS_DIR_PROPERTY_NAME, pluginsRoot);
+		// Setup configuration store
+		System.setProperty(SpringBootPluginManager.CONFIG_STORE_PROPERTY_NAME, properties.getConfigStore());
+		Duration configFlushInterval = properties.getConfigFlushInterval();
+		System.setProperty(SpringBootPluginManager.CONFIG_FLUSH_INTERVAL_PROPERTY_NAME,
+				String.valueOf(configFlushInterval != null ? configFlushInterval.toMillis() : 0));
+
 		String appHome = System.getProperty("app.home");
 		if (RuntimeMode.DEPLOYMENT == properties.getRuntimeMode()
 				&& StringUtils.hasText(appHome)) {
@@ -144,6 +158,24 @@ public class Pf4jAutoConfiguration {
 				}
 			}
 
+			@Override
+			protected ConfigurationRepository createConfigurationStore() {
+				if (!JDBC_CONFIG_STORE.equalsIgnoreCase(properties.getConfigStore())) {
+					return super.createConfigurationStore();
+				}
+				DataSource configDataSource = dataSource.getIfAvailable();
+				if (configDataSource == null) {
+					throw new IllegalStateException("No DataSource available for the jdbc configuration store");
+				}
+				Pf4jProperties.Jdbc jdbc = properties.getJdbc();
+				JdbcConfigurationRepository repository = new JdbcConfigurationRepository(configDataSource,
+						jdbc.getTableName(), jdbc.getPollInterval().toMillis());
+				if (jdbc.isInitializeSchema()) {
+					repository.initializeSchema();
+				}
+				return repository;
+			}
+
 			@Override
 			protected PluginStatusProvider createPluginStatusProvider() {
 				if (PropertyPluginStatusProvider.isPropertySet(properties)) {
@@ -158,10 +190,32 @@ public class Pf4jAutoConfiguration {
 		pluginManager.presetProperties(flatProperties(properties.getPluginProperties()));
 		pluginManager.setExactVersionAllowed(properties.isExactVersionAllowed());
 		pluginManager.setSystemVersion(properties.getSystemVersion());
+		pluginManager.setDrainTimeout(properties.getDrainTimeout().toMillis());
+		pluginManager.setLifecycleParallelism(properties.getLifecycleParallelism());
+		pluginManager.setConfigurationRefreshEnabled(properties.isConfigurationRefreshEnabled());
 
 		return pluginManager;
 	}
 
+	@Bean
+	@ConditionalOnMissingBean
+	public PluginEventBroadcaster pluginEventBroadcaster(SpringBootPluginManager pluginManager,
+														 Pf4jProperties properties) {
+		PluginEventBroadcaster eventBroadcaster = new PluginEventBroadcaster(properties.getEventBacklogSize());
+		pluginManager.addPluginStateListener(eventBroadcaster);
+		pluginManager.addPluginStartingErrorListener(eventBroadcaster);
+		return eventBroadcaster;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public PluginLifecycleJobManager pluginLifecycleJobManager(SpringBootPluginManager pluginManager,
+															   Pf4jProperties properties) {
+		PluginLifecycleJobManager jobManager = new PluginLifecycleJobManager(pluginManager);
+		jobManager.setMaxRetainedJobs(properties.getMaxRetainedLifecycleJobs());
+		return jobManager;
+	}
+
 	private Map<String, Object> flatProperties(Map<String, Object> propertiesMap) {
 		Stack<String> pathStack = new Stack<>();
 		Map<String, Object> flatMap = new HashMap<>();
@@ -15,17 +15,39 @@
  */
 package org.javaloong.kongmink.pf4j.spring.boot;
 
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStateChangedEvent;
+import org.javaloong.kongmink.pf4j.spring.boot.metrics.MicrometerPluginRequestMetrics;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginBulkhead;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginRequestMappingHandlerAdapter;
 import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginRequestMappingHandlerMapping;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginRequestMetrics;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceIndex;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceNotModifiedInterceptor;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceStore;
+import org.javaloong.kongmink.pf4j.spring.util.ExecutorUtils;
 import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.web.servlet.PluginResourceHandlerRegistrationCustomizer;
 import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExceptionResolver;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
@@ -37,21 +59,46 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
  */
 @Configuration
 @ConditionalOnClass({ PluginManager.class, SpringBootPluginManager.class })
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @ConditionalOnProperty(prefix = Pf4jProperties.PREFIX, value = "enabled", havingValue = "true")
+@EnableConfigurationProperties(Pf4jProperties.class)
+@Import(PluginResourceConfiguration.class)
+@AutoConfigureAfter(name = {
+		"org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+		"org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration" })
 public class Pf4jMvcPatchAutoConfiguration {
 
+	private static final String RESOURCE_STORE_NAME = "pf4j-resources";
+
+	private static final String HANDLER_THREAD_NAME_PREFIX = "pf4j-handler-";
+
 	@Bean
 	@ConditionalOnMissingBean(WebMvcRegistrations.class)
-	public WebMvcRegistrations mvcRegistrations() {
+	public WebMvcRegistrations mvcRegistrations(Pf4jProperties properties,
+												ObjectProvider<PluginRequestMetrics> requestMetrics) {
 		return new WebMvcRegistrations() {
 			@Override
 			public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
-				return new PluginRequestMappingHandlerMapping();
+				PluginRequestMappingHandlerMapping handlerMapping = new PluginRequestMappingHandlerMapping();
+				handlerMapping.setPrefixDispatchEnabled(properties.isPrefixDispatchEnabled());
+				handlerMapping.setRequestMetrics(requestMetrics.getIfAvailable());
+				if (properties.getBulkhead().isEnabled()) {
+					handlerMapping.setBulkheadFactory(plugin -> createBulkhead(properties.getBulkhead(), plugin));
+				}
+				return handlerMapping;
 			}
 
 			@Override
 			public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
-				return null;
+				Pf4jProperties.HandlerExecution handlerExecution = properties.getHandlerExecution();
+				if (!handlerExecution.isOffloadEnabled()) return null;
+				PluginRequestMappingHandlerAdapter handlerAdapter = new PluginRequestMappingHandlerAdapter();
+				handlerAdapter.setPluginExecutor(ExecutorUtils.newExecutorService(
+						HANDLER_THREAD_NAME_PREFIX, handlerExecution.getMaxPoolSize(), handlerExecution.getQueueCapacity()));
+				if (handlerExecution.getTimeout() != null) {
+					handlerAdapter.setPluginTimeout(handlerExecution.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+				}
+				return handlerAdapter;
 			}
 
 			@Override
@@ -61,6 +108,56 @@ public class Pf4jMvcPatchAutoConfiguration {
 		};
 	}
 
+	private static PluginBulkhead createBulkhead(Pf4jProperties.Bulkhead properties, SpringBootPlugin plugin) {
+		String pluginId = plugin.getWrapper().getPluginId();
+		Pf4jProperties.BulkheadLimit limit = properties.getPlugins().get(pluginId);
+		int maxConcurrentRequests = limit != null && limit.getMaxConcurrentRequests() != null
+				? limit.getMaxConcurrentRequests() : properties.getMaxConcurrentRequests();
+		int maxQueueSize = limit != null && limit.getMaxQueueSize() != null
+				? limit.getMaxQueueSize() : properties.getMaxQueueSize();
+		// plugin configuration takes precedence
+		Environment environment = plugin.getApplicationContext().getEnvironment();
+		maxConcurrentRequests = environment.getProperty(Pf4jPluginProperties.PREFIX + ".max-concurrent-requests",
+				Integer.class, maxConcurrentRequests);
+		maxQueueSize = environment.getProperty(Pf4jPluginProperties.PREFIX + ".max-queue-size",
+				Integer.class, maxQueueSize);
+
+		PluginBulkhead bulkhead = new PluginBulkhead(pluginId);
+		bulkhead.setMaxConcurrentRequests(maxConcurrentRequests);
+		bulkhead.setMaxQueueSize(maxQueueSize);
+		bulkhead.setQueueTimeout(properties.getQueueTimeout().toMillis(), TimeUnit.MILLISECONDS);
+		bulkhead.setRejectStatus(properties.getRejectStatus());
+		return bulkhead;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = Pf4jProperties.PREFIX, value = "resource.store-enabled", havingValue = "true")
+	public PluginResourceStore pluginResourceStore(SpringBootPluginManager pluginManager, Pf4jProperties properties,
+												   PluginResourceIndex resourceIndex) {
+		String storeLocation = properties.getResource().getStoreLocation();
+		PluginResourceStore resourceStore = new PluginResourceStore(storeLocation != null
+				? Paths.get(storeLocation) : Paths.get(System.getProperty("java.io.tmpdir"), RESOURCE_STORE_NAME),
+				resourceIndex);
+		resourceStore.setExtractEnabled(properties.getResource().isExtractEnabled());
+		// registered after the index, which lists the resources to store
+		pluginManager.getPlugins(PluginState.STARTED).forEach(resourceStore::addPlugin);
+		pluginManager.addPluginStateListener(resourceStore);
+		return resourceStore;
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = Pf4jProperties.PREFIX, value = "resource.store-enabled", havingValue = "true")
+	public WebMvcConfigurer pluginResourceWebMvcConfigurer() {
+		return new WebMvcConfigurer() {
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				// stored resources carry a strong ETag, answer If-None-Match with 304
+				registry.addInterceptor(new PluginResourceNotModifiedInterceptor());
+			}
+		};
+	}
+
 	@Bean
 	public PluginResourceHandlerRegistrationCustomizer resourceHandlerRegistrationCustomizer() {
 		return new PluginResourceHandlerRegistrationCustomizer();
@@ -70,4 +167,16 @@ public class Pf4jMvcPatchAutoConfiguration {
 	public void onPluginStarted() {
 
 	}
+
+	@Configuration
+	@ConditionalOnClass(MeterRegistry.class)
+	@ConditionalOnBean(MeterRegistry.class)
+	static class PluginRequestMetricsConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean(PluginRequestMetrics.class)
+		public MicrometerPluginRequestMetrics pluginRequestMetrics(MeterRegistry meterRegistry) {
+			return new MicrometerPluginRequestMetrics(meterRegistry);
+		}
+	}
 }
\ No newline at end of file
@@ -36,6 +36,21 @@ public class Pf4jPluginProperties {
 	 * Load these resource from plugin classpath only
 	 */
 	public String[] pluginOnlyResources = {};
+	/**
+	 * Url prefix owned by plugin controllers, used to dispatch requests
+	 * to the plugin when `spring.pf4j.prefix-dispatch-enabled` is set.
+	 */
+	public String urlPrefix;
+	/**
+	 * Maximum number of requests handled concurrently by plugin controllers
+	 * when `spring.pf4j.bulkhead.enabled` is set, 0 for no limit.
+	 */
+	public Integer maxConcurrentRequests;
+	/**
+	 * Maximum number of requests waiting for plugin controllers
+	 * when `spring.pf4j.bulkhead.enabled` is set.
+	 */
+	public Integer maxQueueSize;
 	
     public String[] getPluginFirstClasses() {
         return pluginFirstClasses;
@@ -52,4 +67,28 @@ public class Pf4jPluginProperties {
     public void setPluginOnlyResources(String[] pluginOnlyResources) {
         this.pluginOnlyResources = pluginOnlyResources;
     }
+    
+    public String getUrlPrefix() {
+        return urlPrefix;
+    }
+    
+    public void setUrlPrefix(String urlPrefix) {
+        this.urlPrefix = urlPrefix;
+    }
+    
+    public Integer getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+    
+    public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+    
+    public Integer getMaxQueueSize() {
+        return maxQueueSize;
+    }
+    
+    public void setMaxQueueSize(Integer maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
 }
@@ -19,7 +19,10 @@ import org.pf4j.PluginLoader;
 import org.pf4j.RuntimeMode;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -74,6 +77,17 @@ public class Pf4jProperties {
 	 * should be an absolute directory address
 	 */
 	private String pluginsRoot;
+	/**
+	 * Store of plugin configuration properties：files/log/jdbc, a properties file
+	 * per plugin, a single log file for many plugins, or a table of the application
+	 * DataSource shared by several nodes
+	 */
+	private String configStore = "files";
+	/**
+	 * Interval between two flushes of plugin configuration writes, which are written
+	 * in the background when set, or synchronously otherwise
+	 */
+	private Duration configFlushInterval;
 	/**
 	 * Allows to provide custom plugin loaders
 	 */
@@ -91,6 +105,51 @@ public class Pf4jProperties {
 	 * The system version used for comparisons to the plugin requires attribute.
 	 */
 	private String systemVersion = "0.0.0";
+	/**
+	 * Dispatch requests to plugin controllers by the url prefix declared by
+	 * each plugin with `pf4j-plugin.url-prefix`
+	 */
+	private boolean prefixDispatchEnabled = false;
+	/**
+	 * Maximum time a stopping plugin waits for in-flight requests to its
+	 * controllers to complete, new requests are refused meanwhile
+	 */
+	private Duration drainTimeout = Duration.ofSeconds(30);
+	/**
+	 * Maximum number of finished asynchronous lifecycle jobs whose status is
+	 * kept for the job API
+	 */
+	private int maxRetainedLifecycleJobs = 100;
+	/**
+	 * Maximum number of plugins started or stopped concurrently by a bulk
+	 * lifecycle operation
+	 */
+	private int lifecycleParallelism = Runtime.getRuntime().availableProcessors();
+	/**
+	 * Number of plugin lifecycle events kept for event stream clients to
+	 * resume from
+	 */
+	private int eventBacklogSize = 256;
+	/**
+	 * Apply configuration changes to started plugins without restarting them
+	 */
+	private boolean configurationRefreshEnabled = true;
+	/**
+	 * Plugin static resources
+	 */
+	private final Resource resource = new Resource();
+	/**
+	 * Concurrency limits of plugin controllers
+	 */
+	private final Bulkhead bulkhead = new Bulkhead();
+	/**
+	 * Execution of plugin handler methods
+	 */
+	private final HandlerExecution handlerExecution = new HandlerExecution();
+	/**
+	 * Table of plugin configuration properties, when stored with jdbc
+	 */
+	private final Jdbc jdbc = new Jdbc();
 	
     public boolean isEnabled() {
         return enabled;
@@ -162,6 +221,22 @@ public class Pf4jProperties {
         this.pluginsRoot = pluginsRoot;
     }
     
+    public String getConfigStore() {
+        return configStore;
+    }
+    
+    public void setConfigStore(String configStore) {
+        this.configStore = configStore;
+    }
+    
+    public Duration getConfigFlushInterval() {
+        return configFlushInterval;
+    }
+    
+    public void setConfigFlushInterval(Duration configFlushInterval) {
+        this.configFlushInterval = configFlushInterval;
+    }
+    
     public Class<PluginLoader> getCustomPluginLoader() {
         return customPluginLoader;
     }
@@ -190,7 +265,340 @@ public class Pf4jProperties {
         return systemVersion;
     }
     
+    public Duration getDrainTimeout() {
+        return drainTimeout;
+    }
+    
+    public void setDrainTimeout(Duration drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+    
+    public int getMaxRetainedLifecycleJobs() {
+        return maxRetainedLifecycleJobs;
+    }
+    
+    public void setMaxRetainedLifecycleJobs(int maxRetainedLifecycleJobs) {
+        this.maxRetainedLifecycleJobs = maxRetainedLifecycleJobs;
+    }
+    
+    public int getLifecycleParallelism() {
+        return lifecycleParallelism;
+    }
+    
+    public void setLifecycleParallelism(int lifecycleParallelism) {
+        this.lifecycleParallelism = lifecycleParallelism;
+    }
+    
+    public int getEventBacklogSize() {
+        return eventBacklogSize;
+    }
+    
+    public void setEventBacklogSize(int eventBacklogSize) {
+        this.eventBacklogSize = eventBacklogSize;
+    }
+    
+    public boolean isConfigurationRefreshEnabled() {
+        return configurationRefreshEnabled;
+    }
+    
+    public void setConfigurationRefreshEnabled(boolean configurationRefreshEnabled) {
+        this.configurationRefreshEnabled = configurationRefreshEnabled;
+    }
+    
     public void setSystemVersion(String systemVersion) {
         this.systemVersion = systemVersion;
     }
+    
+    public boolean isPrefixDispatchEnabled() {
+        return prefixDispatchEnabled;
+    }
+    
+    public void setPrefixDispatchEnabled(boolean prefixDispatchEnabled) {
+        this.prefixDispatchEnabled = prefixDispatchEnabled;
+    }
+    
+    public Resource getResource() {
+        return resource;
+    }
+    
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+    
+    public HandlerExecution getHandlerExecution() {
+        return handlerExecution;
+    }
+
+    public Jdbc getJdbc() {
+        return jdbc;
+    }
+
+    public static class Resource {
+
+        /**
+         * Maximum estimated size of the plugin resource chain cache
+         */
+        private DataSize cacheMaxSize = DataSize.ofMegabytes(10);
+        /**
+         * Precompress plugin static resources and compute their content hash
+         * when plugin is started, to serve them with strong ETags
+         */
+        private boolean storeEnabled = false;
+        /**
+         * Directory of the precompressed plugin static resources, defaults to
+         * `pf4j-resources` in the temporary directory
+         */
+        private String storeLocation;
+        /**
+         * Extract the static resources of jar plugins to the store location,
+         * and serve them from files
+         */
+        private boolean extractEnabled = false;
+        /**
+         * Send an immutable Cache-Control header for stored plugin static
+         * resources requested with a versioned URL
+         */
+        private boolean immutable = false;
+
+        public DataSize getCacheMaxSize() {
+            return cacheMaxSize;
+        }
+
+        public void setCacheMaxSize(DataSize cacheMaxSize) {
+            this.cacheMaxSize = cacheMaxSize;
+        }
+
+        public boolean isStoreEnabled() {
+            return storeEnabled;
+        }
+
+        public void setStoreEnabled(boolean storeEnabled) {
+            this.storeEnabled = storeEnabled;
+        }
+
+        public String getStoreLocation() {
+            return storeLocation;
+        }
+
+        public void setStoreLocation(String storeLocation) {
+            this.storeLocation = storeLocation;
+        }
+
+        public boolean isExtractEnabled() {
+            return extractEnabled;
+        }
+
+        public void setExtractEnabled(boolean extractEnabled) {
+            this.extractEnabled = extractEnabled;
+        }
+
+        public boolean isImmutable() {
+            return immutable;
+        }
+
+        public void setImmutable(boolean immutable) {
+            this.immutable = immutable;
+        }
+    }
+
+    public static class Bulkhead {
+
+        /**
+         * Limit the concurrent requests of each plugin's controllers
+         */
+        private boolean enabled = false;
+        /**
+         * Default maximum number of requests handled concurrently by a plugin, 0 for no limit
+         */
+        private int maxConcurrentRequests = 0;
+        /**
+         * Default maximum number of requests waiting for a plugin, 0 to reject at once
+         */
+        private int maxQueueSize = 0;
+        /**
+         * Maximum time a request waits in the queue before being rejected
+         */
+        private Duration queueTimeout = Duration.ofSeconds(1);
+        /**
+         * Status of rejected requests, usually 503 or 429
+         */
+        private HttpStatus rejectStatus = HttpStatus.SERVICE_UNAVAILABLE;
+        /**
+         * Limits of specific plugins, keyed by plugin id. Limits declared in
+         * plugin configuration with `pf4j-plugin.max-concurrent-requests` and
+         * `pf4j-plugin.max-queue-size` take precedence.
+         */
+        private Map<String, BulkheadLimit> plugins = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public int getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        public void setMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+        }
+
+        public Duration getQueueTimeout() {
+            return queueTimeout;
+        }
+
+        public void setQueueTimeout(Duration queueTimeout) {
+            this.queueTimeout = queueTimeout;
+        }
+
+        public HttpStatus getRejectStatus() {
+            return rejectStatus;
+        }
+
+        public void setRejectStatus(HttpStatus rejectStatus) {
+            this.rejectStatus = rejectStatus;
+        }
+
+        public Map<String, BulkheadLimit> getPlugins() {
+            return plugins;
+        }
+
+        public void setPlugins(Map<String, BulkheadLimit> plugins) {
+            this.plugins = plugins;
+        }
+    }
+
+    public static class BulkheadLimit {
+
+        /**
+         * Maximum number of requests handled concurrently by the plugin, 0 for no limit
+         */
+        private Integer maxConcurrentRequests;
+        /**
+         * Maximum number of requests waiting for the plugin
+         */
+        private Integer maxQueueSize;
+
+        public Integer getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public Integer getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        public void setMaxQueueSize(Integer maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+        }
+    }
+
+    public static class HandlerExecution {
+
+        /**
+         * Run plugin handler methods off the container threads, on virtual threads
+         * where the JDK provides them
+         */
+        private boolean offloadEnabled = false;
+        /**
+         * Maximum number of platform threads running plugin handler methods when
+         * virtual threads are not available
+         */
+        private int maxPoolSize = 200;
+        /**
+         * Maximum number of plugin handler methods waiting for a platform thread, further
+         * ones run on the container thread
+         */
+        private int queueCapacity = 1000;
+        /**
+         * Timeout of offloaded plugin handler methods, defaults to the async request timeout
+         */
+        private Duration timeout;
+
+        public boolean isOffloadEnabled() {
+            return offloadEnabled;
+        }
+
+        public void setOffloadEnabled(boolean offloadEnabled) {
+            this.offloadEnabled = offloadEnabled;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class Jdbc {
+
+        /**
+         * Name of the table of plugin configuration properties
+         */
+        private String tableName = "PF4J_PLUGIN_CONFIG";
+        /**
+         * Interval between two polls of the table for changes made by other nodes
+         */
+        private Duration pollInterval = Duration.ofSeconds(5);
+        /**
+         * Create the table on startup unless it exists
+         */
+        private boolean initializeSchema = true;
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public void setTableName(String tableName) {
+            this.tableName = tableName;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public boolean isInitializeSchema() {
+            return initializeSchema;
+        }
+
+        public void setInitializeSchema(boolean initializeSchema) {
+            this.initializeSchema = initializeSchema;
+        }
+    }
 }
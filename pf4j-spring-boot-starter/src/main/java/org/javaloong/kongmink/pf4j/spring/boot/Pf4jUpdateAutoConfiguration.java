@@ -15,12 +15,13 @@
  */
 package org.javaloong.kongmink.pf4j.spring.boot;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import org.javaloong.kongmink.pf4j.spring.boot.Pf4jUpdateProperties.Pf4jUpdateRepository;
 import org.pf4j.PluginManager;
-import org.pf4j.update.DefaultUpdateRepository;
 import org.pf4j.update.UpdateManager;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -61,11 +62,35 @@ public class Pf4jUpdateAutoConfiguration {
             updateManager = new UpdateManager(pluginManager);
         }
         if(!CollectionUtils.isEmpty(properties.getRepositories())) {
+            Path cacheDirectory = StringUtils.hasText(properties.getMetadataCacheDirectory())
+                    ? Paths.get(properties.getMetadataCacheDirectory())
+                    : Paths.get(System.getProperty("java.io.tmpdir"), "pf4j-update-cache");
             for (Pf4jUpdateRepository repo : properties.getRepositories()) {
-                updateManager.addRepository(new DefaultUpdateRepository(repo.getId(), 
-                        repo.getUrl(), repo.getPluginsJsonFileName()));
+                CachingUpdateRepository repository = new CachingUpdateRepository(repo.getId(), 
+                        repo.getUrl(), repo.getPluginsJsonFileName(), cacheDirectory,
+                        properties.getMetadataCacheTtl().toMillis());
+                repository.setConnectTimeout((int) properties.getConnectTimeout().toMillis());
+                repository.setReadTimeout((int) properties.getReadTimeout().toMillis());
+                repository.setRetryDelay(properties.getMetadataRetryDelay().toMillis());
+                updateManager.addRepository(repository);
             }
         }
         return updateManager;
     }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PluginInstaller pluginInstaller(PluginManager pluginManager, UpdateManager updateManager,
+                                           Pf4jUpdateProperties properties,
+                                           ObjectProvider<PluginLifecycleJobManager> jobManager) {
+        Path stagingDirectory = StringUtils.hasText(properties.getStagingDirectory())
+                ? Paths.get(properties.getStagingDirectory())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "pf4j-update-staging");
+        PluginInstaller pluginInstaller = new PluginInstaller(pluginManager, updateManager, stagingDirectory,
+                properties.getDownloadParallelism());
+        pluginInstaller.setConnectTimeout((int) properties.getConnectTimeout().toMillis());
+        pluginInstaller.setReadTimeout((int) properties.getReadTimeout().toMillis());
+        pluginInstaller.setJobManager(jobManager.getIfAvailable());
+        return pluginInstaller;
+    }
 }
@@ -31,6 +31,7 @@ import java.net.URL;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -58,6 +59,38 @@ public class Pf4jUpdateProperties {
      * Remote Repositories Path 
      */
     private List<Pf4jUpdateRepository> repositories = new ArrayList<Pf4jUpdateRepository>();
+    /**
+     * Directory plugins are downloaded to before being installed, defaults to a
+     * directory in the temporary directory
+     */
+    private String stagingDirectory;
+    /**
+     * Maximum number of plugins downloaded concurrently by a batch installation
+     */
+    private int downloadParallelism = 4;
+    /**
+     * Connect timeout of plugin and repository downloads
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    /**
+     * Read timeout of plugin and repository downloads
+     */
+    private Duration readTimeout = Duration.ofSeconds(60);
+    /**
+     * Time the plugins of a remote repository are served from the cache before being
+     * revalidated with a conditional request
+     */
+    private Duration metadataCacheTtl = Duration.ofMinutes(5);
+    /**
+     * Time before a failed fetch of the plugins of a remote repository is retried, doubled
+     * on each further failure up to the metadata cache ttl
+     */
+    private Duration metadataRetryDelay = Duration.ofSeconds(5);
+    /**
+     * Directory the plugins json of remote repositories are cached in, defaults to a
+     * directory in the temporary directory
+     */
+    private String metadataCacheDirectory;
     
     public boolean isEnabled() {
         return enabled;
@@ -83,6 +116,62 @@ public class Pf4jUpdateProperties {
         this.repositories = repositories;
     }
 
+    public String getStagingDirectory() {
+        return stagingDirectory;
+    }
+
+    public void setStagingDirectory(String stagingDirectory) {
+        this.stagingDirectory = stagingDirectory;
+    }
+
+    public int getDownloadParallelism() {
+        return downloadParallelism;
+    }
+
+    public void setDownloadParallelism(int downloadParallelism) {
+        this.downloadParallelism = downloadParallelism;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    public void setMetadataCacheTtl(Duration metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    public Duration getMetadataRetryDelay() {
+        return metadataRetryDelay;
+    }
+
+    public void setMetadataRetryDelay(Duration metadataRetryDelay) {
+        this.metadataRetryDelay = metadataRetryDelay;
+    }
+
+    public String getMetadataCacheDirectory() {
+        return metadataCacheDirectory;
+    }
+
+    public void setMetadataCacheDirectory(String metadataCacheDirectory) {
+        this.metadataCacheDirectory = metadataCacheDirectory;
+    }
+
     public static class Pf4jUpdateRepository {
         
         /**
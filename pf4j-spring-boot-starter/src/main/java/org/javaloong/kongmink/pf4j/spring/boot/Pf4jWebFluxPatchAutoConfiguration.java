@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.reactive.PluginRequestMappingHandlerMapping;
+import org.javaloong.kongmink.pf4j.spring.boot.web.reactive.PluginRequestTrackingWebFilter;
+import org.pf4j.PluginManager;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.reactive.PluginResourceHandlerRegistrationCustomizer;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxRegistrations;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+
+/**
+ * pf4j main application auto configuration for Spring WebFlux, the reactive
+ * counterpart of {@link Pf4jMvcPatchAutoConfiguration}.
+ *
+ * @author Xu Cheng
+ * @see Pf4jProperties
+ */
+@Configuration
+@ConditionalOnClass({ PluginManager.class, SpringBootPluginManager.class, WebFluxConfigurer.class })
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnProperty(prefix = Pf4jProperties.PREFIX, value = "enabled", havingValue = "true")
+@EnableConfigurationProperties(Pf4jProperties.class)
+@Import(PluginResourceConfiguration.class)
+@AutoConfigureAfter(name = {
+		"org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+		"org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration" })
+public class Pf4jWebFluxPatchAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean(WebFluxRegistrations.class)
+	public WebFluxRegistrations webFluxRegistrations() {
+		return new WebFluxRegistrations() {
+			@Override
+			public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+				PluginRequestMappingHandlerMapping handlerMapping = new PluginRequestMappingHandlerMapping();
+				handlerMapping.setRequestTrackingEnabled(true);
+				return handlerMapping;
+			}
+		};
+	}
+
+	@Bean
+	public PluginRequestTrackingWebFilter pluginRequestTrackingWebFilter() {
+		return new PluginRequestTrackingWebFilter();
+	}
+
+	@Bean
+	public PluginResourceHandlerRegistrationCustomizer resourceHandlerRegistrationCustomizer() {
+		return new PluginResourceHandlerRegistrationCustomizer();
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import org.pf4j.PluginState;
+
+/**
+ * Result of the installation of one plugin of a batch.
+ *
+ * @author Xu Cheng
+ * @see PluginInstaller
+ */
+public class PluginInstallResult {
+
+    private final String pluginId;
+
+    private final String version;
+
+    private final PluginState pluginState;
+
+    private final long downloadedBytes;
+
+    private final boolean resumed;
+
+    private final String error;
+
+    private final long duration;
+
+    public PluginInstallResult(String pluginId, String version, PluginState pluginState, long downloadedBytes,
+                               boolean resumed, String error, long duration) {
+        this.pluginId = pluginId;
+        this.version = version;
+        this.pluginState = pluginState;
+        this.downloadedBytes = downloadedBytes;
+        this.resumed = resumed;
+        this.error = error;
+        this.duration = duration;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * @return the version installed, or the version requested if the release was not found
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the state of the plugin after the installation, or {@code null} if not loaded
+     */
+    public PluginState getPluginState() {
+        return pluginState;
+    }
+
+    /**
+     * @return the number of bytes downloaded by this installation, not counting the bytes
+     * of a partial download resumed
+     */
+    public long getDownloadedBytes() {
+        return downloadedBytes;
+    }
+
+    /**
+     * @return true if a partial download of a previous installation was resumed
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * @return the message of the error the installation failed with, or {@code null}
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the milliseconds spent on the installation of this plugin
+     */
+    public long getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,582 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipFile;
+
+import org.pf4j.PluginDependency;
+import org.pf4j.PluginDescriptor;
+import org.pf4j.PluginDescriptorFinder;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginRuntimeException;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+import org.pf4j.update.PluginInfo;
+import org.pf4j.update.PluginInfo.PluginRelease;
+import org.pf4j.update.UpdateManager;
+import org.pf4j.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Installs and updates plugins of the update repositories in batches, instead of one plugin
+ * per request like {@link UpdateManager#installPlugin(String, String)}.
+ *
+ * <p>Installation runs in two phases. The releases are first downloaded concurrently, with
+ * bounded parallelism, to a staging directory. A partial download left by a previous batch
+ * is resumed with a range request. Each download is verified against the sha512 sum of the
+ * release, then the central directory of the archive is checked and its descriptor read,
+ * so that a corrupt plugin fails before any plugin is touched. The staged plugins are then swapped into the plugins
+ * root one by one, dependencies first, and started. The previous version of a plugin is
+ * deleted through the plugin manager, removing the archive it was expanded from too, and
+ * kept aside until the new version is started. A plugin failing to load or start is rolled
+ * back to its previous version.
+ *
+ * <p>Batches staging the same release share its staging directory, one at a time. With a
+ * {@link #setJobManager(PluginLifecycleJobManager) job manager}, plugins are swapped in on
+ * its lifecycle thread.
+ *
+ * @author Xu Cheng
+ */
+public class PluginInstaller implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginInstaller.class);
+
+    private static final String PART_FILE_EXTENSION = ".part";
+
+    private static final String BACKUP_FILE_EXTENSION = ".bak";
+
+    private final PluginManager pluginManager;
+
+    private final UpdateManager updateManager;
+
+    private final Path stagingDirectory;
+
+    private final ExecutorService downloadExecutor;
+
+    private int connectTimeout = 10000;
+
+    private int readTimeout = 60000;
+
+    private PluginLifecycleJobManager jobManager;
+
+    private final Object swapMonitor = new Object();
+
+    private final Map<String, Object> stagingLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param pluginManager the plugin manager
+     * @param updateManager the update manager of the repositories
+     * @param stagingDirectory the directory plugins are downloaded to before being installed
+     * @param downloadParallelism the maximum number of concurrent downloads
+     */
+    public PluginInstaller(PluginManager pluginManager, UpdateManager updateManager, Path stagingDirectory,
+                           int downloadParallelism) {
+        Assert.notNull(pluginManager, "pluginManager must not be null");
+        Assert.notNull(updateManager, "updateManager must not be null");
+        Assert.notNull(stagingDirectory, "stagingDirectory must not be null");
+        Assert.isTrue(downloadParallelism > 0, "downloadParallelism must be greater than 0");
+        this.pluginManager = pluginManager;
+        this.updateManager = updateManager;
+        this.stagingDirectory = stagingDirectory;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pf4j-download-");
+        threadFactory.setDaemon(true);
+        this.downloadExecutor = Executors.newFixedThreadPool(downloadParallelism, threadFactory);
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Swap staged plugins in on the lifecycle thread of a job manager, so that they are not
+     * loaded or started concurrently with lifecycle jobs.
+     * @param jobManager the job manager, or {@code null} to swap on the calling thread
+     */
+    public void setJobManager(PluginLifecycleJobManager jobManager) {
+        this.jobManager = jobManager;
+    }
+
+    public Path getStagingDirectory() {
+        return stagingDirectory;
+    }
+
+    /**
+     * Install plugins, or update them if already installed.
+     *
+     * @param pluginVersions the versions to install by plugin id, a {@code null} or empty
+     * version stands for the last release
+     * @return the result of each plugin, in the order of the given plugins
+     */
+    public List<PluginInstallResult> install(Map<String, String> pluginVersions) {
+        List<StagedPlugin> plugins = new ArrayList<>(pluginVersions.size());
+        for (Map.Entry<String, String> entry : pluginVersions.entrySet()) {
+            plugins.add(new StagedPlugin(entry.getKey(), entry.getValue()));
+        }
+
+        List<Callable<Void>> downloads = new ArrayList<>(plugins.size());
+        for (StagedPlugin plugin : plugins) {
+            downloads.add(() -> {
+                stage(plugin);
+                return null;
+            });
+        }
+        List<Future<Void>> futures;
+        try {
+            futures = downloadExecutor.invokeAll(downloads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginRuntimeException(e);
+        }
+        for (int i = 0; i < plugins.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PluginRuntimeException(e);
+            } catch (ExecutionException e) {
+                plugins.get(i).fail(e.getCause());
+            }
+        }
+
+        if (jobManager != null) {
+            jobManager.execute(() -> {
+                swapAll(plugins);
+                return null;
+            });
+        } else {
+            swapAll(plugins);
+        }
+
+        List<PluginInstallResult> results = new ArrayList<>(plugins.size());
+        for (StagedPlugin plugin : plugins) {
+            results.add(plugin.toResult());
+        }
+        return results;
+    }
+
+    /**
+     * Update the installed plugins with a newer release to their last release.
+     *
+     * @return the result of each plugin updated
+     */
+    public List<PluginInstallResult> updateAll() {
+        Map<String, String> pluginVersions = new LinkedHashMap<>();
+        for (PluginInfo plugin : updateManager.getUpdates()) {
+            pluginVersions.put(plugin.id, null);
+        }
+        return pluginVersions.isEmpty() ? Collections.emptyList() : install(pluginVersions);
+    }
+
+    @Override
+    public void destroy() {
+        downloadExecutor.shutdownNow();
+    }
+
+    private void swapAll(List<StagedPlugin> plugins) {
+        // swapped one batch at a time, so that batches do not interleave their dependencies
+        synchronized (swapMonitor) {
+            for (StagedPlugin plugin : sortByDependencies(plugins)) {
+                try {
+                    swap(plugin);
+                } catch (Exception e) {
+                    plugin.fail(e);
+                }
+            }
+        }
+    }
+
+    private void stage(StagedPlugin plugin) throws IOException {
+        PluginRelease release = findRelease(plugin.pluginId, plugin.version);
+        if (release == null) {
+            throw new PluginRuntimeException("Release {} of plugin {} not found",
+                    plugin.version != null ? plugin.version : "latest", plugin.pluginId);
+        }
+        plugin.version = release.version;
+
+        URL url = new URL(release.url);
+        String fileName = StringUtils.getFilename(url.getPath());
+        if (!StringUtils.hasText(fileName)) {
+            throw new PluginRuntimeException("No file name in the url {} of plugin {}", url, plugin.pluginId);
+        }
+        Path directory = stagingDirectory.resolve(plugin.pluginId + "-" + release.version);
+        // batches downloading the same release would write the same partial download
+        synchronized (getStagingLock(directory)) {
+            Files.createDirectories(directory);
+            Path file = directory.resolve(fileName);
+            if (Files.notExists(file)) {
+                Path partFile = directory.resolve(fileName + PART_FILE_EXTENSION);
+                download(plugin, url, partFile);
+                verifyChecksum(partFile, release.sha512sum);
+                Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                // staged by a batch which failed to install it, or is installing it
+                verifyChecksum(file, release.sha512sum);
+            }
+            plugin.descriptor = open(plugin.pluginId, file);
+            plugin.file = file;
+        }
+    }
+
+    private Object getStagingLock(Path directory) {
+        return stagingLocks.computeIfAbsent(directory.getFileName().toString(), key -> new Object());
+    }
+
+    private PluginRelease findRelease(String pluginId, String version) {
+        if (!StringUtils.hasText(version)) {
+            return updateManager.getLastPluginRelease(pluginId);
+        }
+        PluginInfo pluginInfo = updateManager.getPluginsMap().get(pluginId);
+        if (pluginInfo == null || pluginInfo.releases == null) return null;
+        for (PluginRelease release : pluginInfo.releases) {
+            if (version.equals(release.version)) return release;
+        }
+        return null;
+    }
+
+    private void download(StagedPlugin plugin, URL url, Path partFile) throws IOException {
+        long offset = Files.exists(partFile) ? Files.size(partFile) : 0;
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        boolean append = false;
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            if (offset > 0) {
+                httpConnection.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            int status = httpConnection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                String contentRange = httpConnection.getHeaderField("Content-Range");
+                if (offset == 0 || contentRange == null || !contentRange.startsWith("bytes " + offset + "-")) {
+                    httpConnection.disconnect();
+                    Files.deleteIfExists(partFile);
+                    throw new IOException("Unexpected content range '" + contentRange + "' of " + url);
+                }
+                append = true;
+            } else if (status == 416 && offset > 0) {
+                // range not satisfiable, the partial download is complete
+                httpConnection.disconnect();
+                plugin.resumed = true;
+                return;
+            } else if (status != HttpURLConnection.HTTP_OK) {
+                httpConnection.disconnect();
+                throw new IOException("Failed to download " + url + ", status " + status);
+            }
+        }
+
+        log.debug("Download plugin '{}' from '{}'{}", plugin.pluginId, url, append ? " from byte " + offset : "");
+        try (InputStream input = connection.getInputStream();
+             OutputStream output = Files.newOutputStream(partFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND
+                             : StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+                plugin.downloadedBytes += read;
+            }
+        }
+        plugin.resumed = append;
+    }
+
+    /**
+     * Verify a file against the sha512 sum of a release, which is either the sum itself or
+     * the url of a file holding it.
+     */
+    private void verifyChecksum(Path file, String sha512sum) throws IOException {
+        if (!StringUtils.hasText(sha512sum)) return;
+
+        String expected = sha512sum.trim();
+        if (expected.contains("://")) {
+            URLConnection connection = new URL(expected).openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                    StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                expected = line != null ? line.trim().split("\\s+")[0] : "";
+            }
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder actual = new StringBuilder();
+        for (byte b : digest.digest()) {
+            actual.append(String.format("%02x", b));
+        }
+        if (!actual.toString().equals(expected.toLowerCase(Locale.ROOT))) {
+            Files.deleteIfExists(file);
+            throw new PluginRuntimeException("Checksum of {} does not match the sha512 sum of the release", file);
+        }
+    }
+
+    /**
+     * Check the central directory of the staged archive and read its descriptor, so that a
+     * corrupt plugin fails before being swapped in. The descriptor of a zip is read from a
+     * temporary expansion of it, since descriptor finders only read jars and directories.
+     */
+    private PluginDescriptor open(String pluginId, Path file) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            // reading the central directory fails on a truncated archive
+            zipFile.size();
+        }
+        if (!(pluginManager instanceof SpringBootPluginManager)) return null;
+
+        PluginDescriptorFinder finder = ((SpringBootPluginManager) pluginManager).getPluginDescriptorFinder();
+        PluginDescriptor descriptor;
+        if (FileUtils.isZipFile(file)) {
+            Path expanded = FileUtils.expandIfZip(file);
+            try {
+                descriptor = finder.find(expanded);
+            } finally {
+                FileSystemUtils.deleteRecursively(expanded);
+            }
+        } else {
+            descriptor = finder.find(file);
+        }
+        if (!pluginId.equals(descriptor.getPluginId())) {
+            throw new PluginRuntimeException("Plugin {} downloaded from the release of plugin {}",
+                    descriptor.getPluginId(), pluginId);
+        }
+        return descriptor;
+    }
+
+    private void swap(StagedPlugin plugin) throws IOException {
+        synchronized (getStagingLock(plugin.file.getParent())) {
+            PluginWrapper previous = pluginManager.getPlugin(plugin.pluginId);
+            if (Files.notExists(plugin.file)) {
+                // staged by a concurrent batch as well, which installed it first
+                if (previous == null || !plugin.version.equals(previous.getDescriptor().getVersion())) {
+                    throw new PluginRuntimeException("Staged plugin {} {} is gone", plugin.pluginId,
+                            plugin.version);
+                }
+                plugin.pluginState = previous.getPluginState();
+                return;
+            }
+            doSwap(plugin, previous);
+            FileSystemUtils.deleteRecursively(plugin.file.getParent());
+        }
+    }
+
+    private void doSwap(StagedPlugin plugin, PluginWrapper previous) throws IOException {
+        Path pluginsRoot = pluginManager.getPluginsRoots().get(0);
+        Path target = pluginsRoot.resolve(plugin.file.getFileName());
+
+        Path previousArtifact = null;
+        Path backup = null;
+        // unloading a plugin unloads its dependents too, they are loaded again once swapped
+        Map<String, PluginWrapper> loadedPlugins = new LinkedHashMap<>();
+        Map<String, PluginState> pluginStates = new LinkedHashMap<>();
+        if (previous != null) {
+            for (PluginWrapper loadedPlugin : pluginManager.getResolvedPlugins()) {
+                loadedPlugins.put(loadedPlugin.getPluginId(), loadedPlugin);
+                pluginStates.put(loadedPlugin.getPluginId(), loadedPlugin.getPluginState());
+            }
+            previousArtifact = getArtifact(previous.getPluginPath());
+            backup = plugin.file.resolveSibling(previousArtifact.getFileName() + BACKUP_FILE_EXTENSION);
+            FileSystemUtils.deleteRecursively(backup);
+            FileSystemUtils.copyRecursively(previousArtifact, backup);
+            // deleted by the plugin repository, along with the directory a zip is expanded to
+            if (!pluginManager.deletePlugin(plugin.pluginId)) {
+                throw new PluginRuntimeException("Failed to delete plugin {} before installing {}",
+                        plugin.pluginId, plugin.version);
+            }
+        }
+
+        move(plugin.file, target);
+        try {
+            String pluginId = pluginManager.loadPlugin(target);
+            plugin.pluginState = pluginManager.startPlugin(pluginId);
+            // failures to start are recorded instead of thrown by some plugin managers
+            if (plugin.pluginState != PluginState.STARTED) {
+                throw new PluginRuntimeException("Plugin {} {} is {} after starting", plugin.pluginId,
+                        plugin.version, plugin.pluginState);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to install plugin '{}' {}, roll back", plugin.pluginId, plugin.version, e);
+            if (pluginManager.getPlugin(plugin.pluginId) != null) {
+                pluginManager.deletePlugin(plugin.pluginId);
+            }
+            FileSystemUtils.deleteRecursively(target);
+            plugin.pluginState = null;
+            if (backup != null) {
+                Path restored = pluginsRoot.resolve(previousArtifact.getFileName());
+                move(backup, restored);
+                String pluginId = pluginManager.loadPlugin(restored);
+                if (pluginStates.get(plugin.pluginId) == PluginState.STARTED) {
+                    plugin.pluginState = pluginManager.startPlugin(pluginId);
+                }
+                reloadDependents(plugin.pluginId, loadedPlugins, pluginStates);
+            }
+            throw e;
+        }
+        reloadDependents(plugin.pluginId, loadedPlugins, pluginStates);
+
+        log.info("Installed plugin '{}' {}", plugin.pluginId, plugin.version);
+    }
+
+    /**
+     * Get the file a plugin was installed from, the archive a plugin directory was expanded
+     * from if any.
+     */
+    private static Path getArtifact(Path pluginPath) {
+        if (Files.isDirectory(pluginPath)) {
+            Path archive = FileUtils.findWithEnding(pluginPath, ".zip", ".ZIP", ".Zip");
+            if (archive != null) return archive;
+        }
+        return pluginPath;
+    }
+
+    private void reloadDependents(String pluginId, Map<String, PluginWrapper> loadedPlugins,
+                                  Map<String, PluginState> pluginStates) {
+        for (PluginWrapper loadedPlugin : loadedPlugins.values()) {
+            String dependentId = loadedPlugin.getPluginId();
+            if (dependentId.equals(pluginId) || pluginManager.getPlugin(dependentId) != null) continue;
+            try {
+                pluginManager.loadPlugin(loadedPlugin.getPluginPath());
+                if (pluginStates.get(dependentId) == PluginState.STARTED) {
+                    pluginManager.startPlugin(dependentId);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to reload plugin '{}' depending on plugin '{}'", dependentId, pluginId, e);
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Sort the staged plugins so that the dependencies of a plugin in the same batch come
+     * before it.
+     */
+    private static List<StagedPlugin> sortByDependencies(Collection<StagedPlugin> plugins) {
+        Map<String, StagedPlugin> staged = new LinkedHashMap<>();
+        for (StagedPlugin plugin : plugins) {
+            if (plugin.error == null) staged.put(plugin.pluginId, plugin);
+        }
+        List<StagedPlugin> sorted = new ArrayList<>(staged.size());
+        Map<String, Boolean> visited = new LinkedHashMap<>();
+        for (String pluginId : staged.keySet()) {
+            visit(pluginId, staged, visited, sorted);
+        }
+        return sorted;
+    }
+
+    private static void visit(String pluginId, Map<String, StagedPlugin> staged, Map<String, Boolean> visited,
+                              List<StagedPlugin> sorted) {
+        StagedPlugin plugin = staged.get(pluginId);
+        // not in the batch, or visiting a dependency cycle left to the plugin manager
+        if (plugin == null || visited.putIfAbsent(pluginId, Boolean.TRUE) != null) return;
+        if (plugin.descriptor != null) {
+            for (PluginDependency dependency : plugin.descriptor.getDependencies()) {
+                visit(dependency.getPluginId(), staged, visited, sorted);
+            }
+        }
+        sorted.add(plugin);
+    }
+
+    private static class StagedPlugin {
+
+        private final String pluginId;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private volatile String version;
+
+        private volatile Path file;
+
+        private volatile PluginDescriptor descriptor;
+
+        private volatile long downloadedBytes;
+
+        private volatile boolean resumed;
+
+        private volatile PluginState pluginState;
+
+        private volatile String error;
+
+        private StagedPlugin(String pluginId, String version) {
+            this.pluginId = pluginId;
+            this.version = StringUtils.hasText(version) ? version : null;
+        }
+
+        private void fail(Throwable e) {
+            log.warn("Failed to install plugin '{}'", pluginId, e);
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+
+        private PluginInstallResult toResult() {
+            return new PluginInstallResult(pluginId, version, pluginState, downloadedBytes, resumed, error,
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+}
@@ -15,24 +15,49 @@
  */
 package org.javaloong.kongmink.pf4j.spring.boot;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginEventBroadcaster;
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginLifecycleEvent;
 import org.javaloong.kongmink.pf4j.spring.boot.model.PluginInfo;
+import org.javaloong.kongmink.pf4j.spring.boot.model.PluginPage;
 import org.pf4j.PluginDescriptor;
 import org.pf4j.PluginRuntimeException;
 import org.pf4j.PluginState;
 import org.pf4j.PluginWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * @author <a href="https://github.com/hank-cp">Hank CP</a>
@@ -42,37 +67,44 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping(value = "${spring.pf4j.controller.base-path:/pf4j}/plugins")
 public class PluginManagerController {
 
+    public static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private SpringBootPluginManager pluginManager;
 
+    @Autowired
+    private PluginLifecycleJobManager jobManager;
+
+    @Autowired
+    private PluginEventBroadcaster eventBroadcaster;
+
+    @Value("${spring.pf4j.controller.base-path:/pf4j}")
+    private String basePath;
+
+    /**
+     * Index of the plugins sorted by plugin id, rebuilt when the registry changes.
+     */
+    private volatile PluginIndex pluginIndex;
+
     @GetMapping
     public List<PluginInfo> list() {
         List<PluginWrapper> loadedPlugins = pluginManager.getPlugins();
 
         // loaded plugins
         List<PluginInfo> plugins = loadedPlugins.stream().map(pluginWrapper -> {
-                    PluginDescriptor descriptor = pluginWrapper.getDescriptor();
-                    PluginDescriptor latestDescriptor = null;
-                    try {
-                        latestDescriptor = pluginManager.getPluginDescriptorFinder()
-                                .find(pluginWrapper.getPluginPath());
-                    } catch (PluginRuntimeException ignored) {}
-                    String newVersion = null;
-                    if (latestDescriptor != null && !descriptor.getVersion().equals(latestDescriptor.getVersion())) {
-                        newVersion = latestDescriptor.getVersion();
+                    PluginInfo pluginInfo = buildPluginInfo(pluginWrapper);
+                    if (pluginWrapper.getPluginState() == PluginState.STARTED
+                            && pluginWrapper.getPlugin() instanceof SpringBootPlugin) {
+                        pluginInfo.inFlightRequests = ((SpringBootPlugin) pluginWrapper.getPlugin())
+                                .getRequestTracker().getInFlightRequests();
                     }
-
-                    return PluginInfo.build(descriptor,
-                            pluginWrapper.getPluginState(), newVersion,
-                            pluginManager.getPluginStartingError(pluginWrapper.getPluginId()),
-                            latestDescriptor == null);
+                    return pluginInfo;
                 }).collect(Collectors.toList());
 
         // yet not loaded plugins
+        Set<Path> loadedPaths = getLoadedPaths(loadedPlugins);
         List<Path> pluginPaths = pluginManager.getPluginRepository().getPluginPaths();
-        plugins.addAll(pluginPaths.stream().filter(path ->
-            loadedPlugins.stream().noneMatch(plugin -> plugin.getPluginPath().equals(path))
-        ).map(path -> {
+        plugins.addAll(pluginPaths.stream().filter(path -> !loadedPaths.contains(path)).map(path -> {
             PluginDescriptor descriptor = pluginManager
                     .getPluginDescriptorFinder().find(path);
             return PluginInfo.build(descriptor, null, null, null, false);
@@ -80,7 +112,158 @@ public class PluginManagerController {
 
         return plugins;
     }
-    
+
+    /**
+     * List a page of the plugins, loaded or not.
+     *
+     * <p>The response carries an ETag derived from the registry version of the plugin manager
+     * and the plugin repository content, a request with a matching {@code If-None-Match}
+     * header is answered with 304 without listing the plugins.
+     * @param state only the plugins in this state
+     * @param idPrefix only the plugins whose id starts with this prefix
+     * @param error only the plugins that failed, or did not fail, to start or stop
+     * @param sort {@code id} or {@code startTime}
+     * @param desc whether to sort in descending order
+     * @param page the zero-based page index
+     * @param size the page size, at most {@link #MAX_PAGE_SIZE}
+     * @param ifNoneMatch the ETag of the listing held by the client
+     * @return the page of plugins
+     */
+    @GetMapping("/page")
+    public ResponseEntity<PluginPage> page(@RequestParam(required = false) PluginState state,
+                                           @RequestParam(required = false) String idPrefix,
+                                           @RequestParam(required = false) Boolean error,
+                                           @RequestParam(defaultValue = "id") String sort,
+                                           @RequestParam(defaultValue = "false") boolean desc,
+                                           @RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "50") int size,
+                                           @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                   String ifNoneMatch) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        String eTag = getListingETag();
+        if (matchesETag(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        NavigableMap<String, PluginEntry> entries = getPluginIndex(eTag).entries;
+        if (idPrefix != null && !idPrefix.isEmpty()) {
+            entries = entries.subMap(idPrefix, true, idPrefix + Character.MAX_VALUE, false);
+        }
+        List<PluginEntry> matches = new ArrayList<>();
+        for (PluginEntry entry : desc ? entries.descendingMap().values() : entries.values()) {
+            if (state != null && entry.getPluginState() != state) continue;
+            if (error != null && error != (entry.getPluginId() != null
+                    && pluginManager.getPluginStartingError(entry.getPluginId()) != null)) continue;
+            matches.add(entry);
+        }
+        if ("startTime".equals(sort)) {
+            Comparator<Long> order = desc ? Comparator.reverseOrder() : Comparator.naturalOrder();
+            // stable sort, plugins started at the same time or not started keep the id order
+            matches.sort(Comparator.comparing(PluginEntry::getStartTime, Comparator.nullsLast(order)));
+        } else if (!"id".equals(sort)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int fromIndex = (int) Math.min((long) page * size, matches.size());
+        List<PluginEntry> pageEntries = matches.subList(fromIndex, Math.min(fromIndex + size, matches.size()));
+        // plugin infos are built while the response is written
+        Iterable<PluginInfo> items = () -> new Iterator<PluginInfo>() {
+
+            private final Iterator<PluginEntry> iterator = pageEntries.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public PluginInfo next() {
+                return iterator.next().toPluginInfo();
+            }
+        };
+        return ResponseEntity.ok().eTag(eTag)
+                .body(PluginPage.build(page, size, matches.size(), items));
+    }
+
+    private PluginInfo buildPluginInfo(PluginWrapper pluginWrapper) {
+        PluginDescriptor descriptor = pluginWrapper.getDescriptor();
+        PluginDescriptor latestDescriptor = null;
+        try {
+            latestDescriptor = pluginManager.getPluginDescriptorFinder()
+                    .find(pluginWrapper.getPluginPath());
+        } catch (PluginRuntimeException ignored) {}
+        String newVersion = null;
+        if (latestDescriptor != null && !descriptor.getVersion().equals(latestDescriptor.getVersion())) {
+            newVersion = latestDescriptor.getVersion();
+        }
+
+        PluginInfo pluginInfo = PluginInfo.build(descriptor,
+                pluginWrapper.getPluginState(), newVersion,
+                pluginManager.getPluginStartingError(pluginWrapper.getPluginId()),
+                latestDescriptor == null);
+        pluginInfo.startTime = pluginManager.getPluginStartTime(pluginWrapper.getPluginId());
+        return pluginInfo;
+    }
+
+    private String getListingETag() {
+        long hash = pluginManager.getRegistryVersion();
+        for (Path path : pluginManager.getPluginRepository().getPluginPaths()) {
+            hash = 31 * hash + path.hashCode();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                hash = 31 * hash + attributes.lastModifiedTime().toMillis();
+                hash = 31 * hash + attributes.size();
+            } catch (IOException ignored) {}
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(eTag)) return true;
+        }
+        return false;
+    }
+
+    private PluginIndex getPluginIndex(String eTag) {
+        PluginIndex index = pluginIndex;
+        if (index != null && index.eTag.equals(eTag)) return index;
+
+        List<PluginWrapper> loadedPlugins = pluginManager.getPlugins();
+        NavigableMap<String, PluginEntry> entries = new TreeMap<>();
+        for (PluginWrapper pluginWrapper : loadedPlugins) {
+            PluginEntry entry = new PluginEntry(pluginWrapper, pluginWrapper.getPluginPath(), null);
+            entries.put(entry.getKey(), entry);
+        }
+        Set<Path> loadedPaths = getLoadedPaths(loadedPlugins);
+        for (Path path : pluginManager.getPluginRepository().getPluginPaths()) {
+            if (loadedPaths.contains(path)) continue;
+            PluginDescriptor descriptor = null;
+            try {
+                descriptor = pluginManager.getPluginDescriptorFinder().find(path);
+            } catch (PluginRuntimeException ignored) {}
+            if (descriptor == null) continue;
+            PluginEntry entry = new PluginEntry(null, path, descriptor);
+            entries.put(entry.getKey(), entry);
+        }
+        index = new PluginIndex(eTag, Collections.unmodifiableNavigableMap(entries));
+        pluginIndex = index;
+        return index;
+    }
+
+    private static Set<Path> getLoadedPaths(List<PluginWrapper> loadedPlugins) {
+        Set<Path> loadedPaths = new HashSet<>(loadedPlugins.size() * 2);
+        for (PluginWrapper pluginWrapper : loadedPlugins) {
+            loadedPaths.add(pluginWrapper.getPluginPath());
+        }
+        return loadedPaths;
+    }
+
     @GetMapping("/{pluginId}/config")
     public Map<String, Object> getConfig(@PathVariable String pluginId) {
         return pluginManager.getConfigurationRepository().get(pluginId);
@@ -97,27 +280,204 @@ public class PluginManagerController {
         return Collections.singletonMap("result", result);
     }
 
+    // the blocking operations wait for their turn on the lifecycle thread, behind pending jobs
+
     @PostMapping("/{pluginId}/start")
     public Object start(@PathVariable String pluginId) {
-        PluginState pluginState = pluginManager.startPlugin(pluginId);
+        PluginState pluginState = jobManager.execute(() -> pluginManager.startPlugin(pluginId));
         return Collections.singletonMap("state", pluginState);
     }
 
     @PostMapping("/{pluginId}/stop")
     public Object stop(@PathVariable String pluginId) {
-        PluginState pluginState = pluginManager.stopPlugin(pluginId);
+        PluginState pluginState = jobManager.execute(() -> pluginManager.stopPlugin(pluginId));
         return Collections.singletonMap("state", pluginState);
     }
 
     @PostMapping("/{pluginId}/reload")
     public Object reload(@PathVariable String pluginId) {
-        PluginState pluginState = pluginManager.reloadPlugins(pluginId);
+        PluginState pluginState = jobManager.execute(() -> pluginManager.reloadPlugins(pluginId));
         return Collections.singletonMap("state", pluginState);
     }
 
     @PostMapping("/reload")
     public void reloadAll() {
-        pluginManager.reloadPlugins(false);
+        jobManager.execute(() -> {
+            pluginManager.reloadPlugins(false);
+            return null;
+        });
+    }
+
+    /**
+     * Apply a lifecycle operation to several plugins, publishing a single state change.
+     * @param operation {@code start}, {@code stop}, {@code restart} or {@code reload}
+     * @param pluginIds the ids of the plugins
+     * @return the result of each plugin
+     */
+    @PostMapping("/bulk/{operation}")
+    public ResponseEntity<List<PluginLifecycleResult>> bulk(@PathVariable String operation,
+                                                            @RequestBody List<String> pluginIds) {
+        PluginLifecycleJob.Operation bulkOperation;
+        try {
+            bulkOperation = PluginLifecycleJob.Operation.valueOf(operation.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        PluginLifecycleJob.Operation lifecycleOperation = bulkOperation;
+        if (bulkOperation != PluginLifecycleJob.Operation.START && bulkOperation != PluginLifecycleJob.Operation.STOP
+                && bulkOperation != PluginLifecycleJob.Operation.RESTART
+                && bulkOperation != PluginLifecycleJob.Operation.RELOAD) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(jobManager.execute(
+                () -> pluginManager.applyToPlugins(lifecycleOperation, pluginIds)));
+    }
+
+    /**
+     * Stream plugin state changes and starting errors as server-sent events, named after the
+     * event type and identified by the event sequence number. A {@code RESET} event is sent
+     * first if events to resume from are no longer available. The stream ends if the client
+     * falls behind, so that it reconnects and resumes from the last event it received.
+     * @param lastEventId the sequence number to resume from, sent by reconnecting clients
+     * @param since the sequence number to resume from, when not reconnecting
+     * @return the event stream
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+                             @RequestParam(required = false) Long since) {
+        long afterSequence = lastEventId != null ? lastEventId
+                : since != null ? since : eventBroadcaster.getLastSequence();
+        SseEmitter emitter = new SseEmitter();
+        PluginEventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(afterSequence,
+                new PluginEventBroadcaster.Subscriber() {
+
+                    @Override
+                    public void onEvent(PluginLifecycleEvent event) throws Exception {
+                        emitter.send(SseEmitter.event().id(String.valueOf(event.getSequence()))
+                                .name(event.getType().name()).data(event, MediaType.APPLICATION_JSON));
+                    }
+
+                    @Override
+                    public void onBacklogIncomplete() throws Exception {
+                        emitter.send(SseEmitter.event().name("RESET")
+                                .data(eventBroadcaster.getLastSequence()));
+                    }
+
+                    @Override
+                    public void onCancelled() {
+                        // ends the stream, so that the client reconnects with the Last-Event-ID
+                        emitter.complete();
+                    }
+                });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(ex -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * @param since the sequence number of the last event seen
+     * @return the backlogged plugin events following the sequence number
+     */
+    @GetMapping("/events/backlog")
+    public List<PluginLifecycleEvent> eventBacklog(@RequestParam(defaultValue = "0") long since) {
+        return eventBroadcaster.getEvents(since);
+    }
+
+    @PostMapping("/jobs/{pluginId}/start")
+    public ResponseEntity<PluginLifecycleJob> startAsync(@PathVariable String pluginId) {
+        return accepted(jobManager.submit(PluginLifecycleJob.Operation.START, pluginId));
+    }
+
+    @PostMapping("/jobs/{pluginId}/stop")
+    public ResponseEntity<PluginLifecycleJob> stopAsync(@PathVariable String pluginId) {
+        return accepted(jobManager.submit(PluginLifecycleJob.Operation.STOP, pluginId));
     }
 
+    @PostMapping("/jobs/{pluginId}/reload")
+    public ResponseEntity<PluginLifecycleJob> reloadAsync(@PathVariable String pluginId) {
+        return accepted(jobManager.submit(PluginLifecycleJob.Operation.RELOAD, pluginId));
+    }
+
+    @PostMapping("/jobs/reload")
+    public ResponseEntity<PluginLifecycleJob> reloadAllAsync() {
+        return accepted(jobManager.submit(PluginLifecycleJob.Operation.RELOAD_ALL, null));
+    }
+
+    @GetMapping("/jobs")
+    public List<PluginLifecycleJob> jobs() {
+        return jobManager.getJobs();
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<PluginLifecycleJob> job(@PathVariable String jobId) {
+        PluginLifecycleJob job = jobManager.getJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    private ResponseEntity<PluginLifecycleJob> accepted(PluginLifecycleJob job) {
+        return accepted(basePath, job);
+    }
+
+    /**
+     * @return a 202 response of a submitted job, located at the job endpoint
+     */
+    static ResponseEntity<PluginLifecycleJob> accepted(String basePath, PluginLifecycleJob job) {
+        // the base path might be configured without a leading slash
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path(basePath.startsWith("/") ? basePath : "/" + basePath)
+                .path("/plugins/jobs/{jobId}").buildAndExpand(job.getId()).toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    private static class PluginIndex {
+
+        private final String eTag;
+
+        private final NavigableMap<String, PluginEntry> entries;
+
+        private PluginIndex(String eTag, NavigableMap<String, PluginEntry> entries) {
+            this.eTag = eTag;
+            this.entries = entries;
+        }
+    }
+
+    private class PluginEntry {
+
+        private final PluginWrapper pluginWrapper;
+
+        private final Path path;
+
+        private final PluginDescriptor descriptor;
+
+        private PluginEntry(PluginWrapper pluginWrapper, Path path, PluginDescriptor descriptor) {
+            this.pluginWrapper = pluginWrapper;
+            this.path = path;
+            this.descriptor = descriptor;
+        }
+
+        String getPluginId() {
+            return pluginWrapper != null ? pluginWrapper.getPluginId() : descriptor.getPluginId();
+        }
+
+        /**
+         * Sorted by plugin id, a plugin not loaded may share its id with a loaded one.
+         */
+        String getKey() {
+            return getPluginId() + '\0' + path;
+        }
+
+        PluginState getPluginState() {
+            return pluginWrapper != null ? pluginWrapper.getPluginState() : null;
+        }
+
+        Long getStartTime() {
+            return pluginWrapper != null ? pluginManager.getPluginStartTime(getPluginId()) : null;
+        }
+
+        PluginInfo toPluginInfo() {
+            return pluginWrapper != null ? buildPluginInfo(pluginWrapper)
+                    : PluginInfo.build(descriptor, null, null, null, false);
+        }
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.javaloong.kongmink.pf4j.spring.boot.metrics.PluginResourceCacheMetrics;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceCache;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceIndex;
+import org.pf4j.PluginState;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.web.ResourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Plugin static resource beans shared by the servlet and the reactive web stack.
+ *
+ * @author Xu Cheng
+ * @see Pf4jMvcPatchAutoConfiguration
+ * @see Pf4jWebFluxPatchAutoConfiguration
+ */
+@Configuration
+class PluginResourceConfiguration {
+
+	private static final String WEBJARS_LOCATION = "classpath:/META-INF/resources/webjars/";
+
+	private static final String RESOURCE_CACHE_NAME = "plugin-resource-chain-cache";
+
+	@Bean
+	@ConditionalOnMissingBean
+	public PluginResourceIndex pluginResourceIndex(SpringBootPluginManager pluginManager,
+												   ObjectProvider<ResourceProperties> resourceProperties) {
+		List<String> locations = new ArrayList<>(Arrays.asList(
+				resourceProperties.getIfAvailable(ResourceProperties::new).getStaticLocations()));
+		locations.add(WEBJARS_LOCATION);
+		PluginResourceIndex resourceIndex = new PluginResourceIndex(locations.toArray(new String[0]));
+		pluginManager.getPlugins(PluginState.STARTED).forEach(resourceIndex::addPlugin);
+		pluginManager.addPluginStateListener(resourceIndex);
+		return resourceIndex;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(name = "pluginResourceCache")
+	public PluginResourceCache pluginResourceCache(SpringBootPluginManager pluginManager, Pf4jProperties properties) {
+		PluginResourceCache resourceCache = new PluginResourceCache(RESOURCE_CACHE_NAME,
+				properties.getResource().getCacheMaxSize().toBytes());
+		pluginManager.getPlugins(PluginState.STARTED).forEach(resourceCache::addPlugin);
+		pluginManager.addPluginStateListener(resourceCache);
+		return resourceCache;
+	}
+
+	@Configuration
+	@ConditionalOnClass(MeterRegistry.class)
+	@ConditionalOnBean(MeterRegistry.class)
+	static class PluginResourceCacheMetricsConfiguration {
+
+		@Bean
+		public MeterBinder pluginResourceCacheMetrics(ObjectProvider<PluginResourceCache> resourceCache) {
+			// the cache might be replaced by a user defined one of another type
+			return registry -> resourceCache.ifAvailable(
+					cache -> new PluginResourceCacheMetrics(cache).bindTo(registry));
+		}
+	}
+}
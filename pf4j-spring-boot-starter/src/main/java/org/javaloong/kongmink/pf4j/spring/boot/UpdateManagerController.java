@@ -18,6 +18,7 @@ package org.javaloong.kongmink.pf4j.spring.boot;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.javaloong.kongmink.pf4j.spring.boot.model.UpdatePluginInfo;
 import org.pf4j.PluginManager;
@@ -25,10 +26,14 @@ import org.pf4j.PluginState;
 import org.pf4j.PluginWrapper;
 import org.pf4j.update.PluginInfo;
 import org.pf4j.update.UpdateManager;
+import org.pf4j.update.UpdateRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -44,6 +49,15 @@ public class UpdateManagerController {
 
     @Autowired
     private PluginManager pluginManager;
+
+    @Autowired
+    private PluginInstaller pluginInstaller;
+
+    @Autowired
+    private PluginLifecycleJobManager jobManager;
+
+    @Value("${spring.pf4j.controller.base-path:/pf4j}")
+    private String basePath;
     
     @GetMapping(value = "/available-plugins")
     public List<PluginInfo> getAvailablePlugins() {
@@ -64,15 +78,46 @@ public class UpdateManagerController {
         return updatePlugins;
     }
     
+    /**
+     * Expire the cached plugins of the remote repositories, so that they are fetched again
+     * on the next listing instead of once the cache time to live expires.
+     */
+    @PostMapping(value = "/refresh")
+    public ResponseEntity<Void> refresh() {
+        for (UpdateRepository repository : updateManager.getRepositories()) {
+            if (repository instanceof CachingUpdateRepository) {
+                ((CachingUpdateRepository) repository).invalidate();
+            }
+        }
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping(value = "/install/{pluginId}/{version}")
     public Object install(@PathVariable("pluginId") String pluginId, @PathVariable("version") String version) {
-        boolean result = updateManager.installPlugin(pluginId, version);
+        boolean result = jobManager.execute(() -> updateManager.installPlugin(pluginId, version));
         return Collections.singletonMap("result", result);
     }
 
+    /**
+     * Install or update plugins in a batch, the body maps plugin ids to versions, an empty
+     * version standing for the last release. The batch runs as a plugin lifecycle job, whose
+     * result is the list of {@link PluginInstallResult}s once done.
+     */
+    @PostMapping(value = "/install")
+    public ResponseEntity<PluginLifecycleJob> install(@RequestBody Map<String, String> pluginVersions) {
+        return PluginManagerController.accepted(basePath, jobManager.submit(PluginLifecycleJob.Operation.INSTALL,
+                null, () -> pluginInstaller.install(pluginVersions)));
+    }
+
+    @PostMapping(value = "/update")
+    public ResponseEntity<PluginLifecycleJob> updateAll() {
+        return PluginManagerController.accepted(basePath, jobManager.submit(PluginLifecycleJob.Operation.UPDATE_ALL,
+                null, pluginInstaller::updateAll));
+    }
+
     @PostMapping(value = "/uninstall/{pluginId}")
     public Object uninstall(@PathVariable("pluginId") String pluginId) {
-        boolean result = updateManager.uninstallPlugin(pluginId);
+        boolean result = jobManager.execute(() -> updateManager.uninstallPlugin(pluginId));
         return Collections.singletonMap("result", result);
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginBulkhead;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginRequestMetrics;
+import org.springframework.web.method.HandlerMethod;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link PluginRequestMetrics} recording a {@link Timer} per plugin handler method and outcome,
+ * tagged with the plugin id and version. The meters of a plugin are removed from the registry
+ * when its controllers are unregistered.
+ *
+ * @author Xu Cheng
+ */
+public class MicrometerPluginRequestMetrics implements PluginRequestMetrics {
+
+    public static final String METRIC_NAME = "pf4j.plugin.requests";
+
+    public static final String BULKHEAD_METRIC_NAME = "pf4j.plugin.bulkhead";
+
+    private final MeterRegistry registry;
+
+    private final Map<String, List<Meter>> pluginMeters = new ConcurrentHashMap<>();
+
+    private boolean percentileHistogram = true;
+
+    public MicrometerPluginRequestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Whether to publish a latency histogram, usable for aggregable percentiles.
+     * @param percentileHistogram true to publish the histogram
+     */
+    public void setPercentileHistogram(boolean percentileHistogram) {
+        this.percentileHistogram = percentileHistogram;
+    }
+
+    @Override
+    public Recorder register(String pluginId, String pluginVersion, HandlerMethod handlerMethod) {
+        Tags tags = Tags.of("plugin", pluginId,
+                "version", pluginVersion != null ? pluginVersion : "unknown",
+                "handler", handlerMethod.getBeanType().getSimpleName() + "#" + handlerMethod.getMethod().getName());
+        Timer success = registerTimer(tags.and("outcome", "SUCCESS"));
+        Timer error = registerTimer(tags.and("outcome", "ERROR"));
+        List<Meter> meters = pluginMeters.computeIfAbsent(pluginId, key -> new CopyOnWriteArrayList<>());
+        meters.add(success);
+        meters.add(error);
+        return (durationNanos, failed) -> (failed ? error : success).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void registerBulkhead(String pluginId, PluginBulkhead bulkhead) {
+        Tags tags = Tags.of("plugin", pluginId);
+        List<Meter> meters = pluginMeters.computeIfAbsent(pluginId, key -> new CopyOnWriteArrayList<>());
+        meters.add(Gauge.builder(BULKHEAD_METRIC_NAME + ".active", bulkhead, PluginBulkhead::getActiveRequests)
+                .description("Requests being handled by plugin controllers")
+                .tags(tags).register(registry));
+        meters.add(Gauge.builder(BULKHEAD_METRIC_NAME + ".queued", bulkhead, PluginBulkhead::getQueuedRequests)
+                .description("Requests waiting for plugin controllers")
+                .tags(tags).register(registry));
+        meters.add(FunctionCounter.builder(BULKHEAD_METRIC_NAME + ".queued.total", bulkhead,
+                PluginBulkhead::getQueuedCount)
+                .description("Requests that waited for plugin controllers")
+                .tags(tags).register(registry));
+        meters.add(FunctionCounter.builder(BULKHEAD_METRIC_NAME + ".rejected", bulkhead,
+                PluginBulkhead::getRejectedCount)
+                .description("Requests rejected by the plugin bulkhead")
+                .tags(tags).register(registry));
+    }
+
+    @Override
+    public void registerRequestTracker(String pluginId, PluginRequestTracker requestTracker) {
+        pluginMeters.computeIfAbsent(pluginId, key -> new CopyOnWriteArrayList<>())
+                .add(Gauge.builder(METRIC_NAME + ".active", requestTracker, PluginRequestTracker::getInFlightRequests)
+                        .description("Requests in flight in plugin controllers")
+                        .tags(Tags.of("plugin", pluginId)).register(registry));
+    }
+
+    @Override
+    public void remove(String pluginId) {
+        List<Meter> meters = pluginMeters.remove(pluginId);
+        if (meters != null) meters.forEach(registry::remove);
+    }
+
+    private Timer registerTimer(Tags tags) {
+        return Timer.builder(METRIC_NAME)
+                .description("Requests handled by plugin controllers")
+                .tags(tags)
+                .publishPercentileHistogram(percentileHistogram)
+                .register(registry);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.metrics;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * {@link MeterBinder} publishing the hits, misses and evictions of a {@link PluginResourceCache},
+ * together with its size and estimated weight, tagged with the cache name.
+ *
+ * @author Xu Cheng
+ */
+public class PluginResourceCacheMetrics implements MeterBinder {
+
+    public static final String METRIC_NAME = "pf4j.resource.cache";
+
+    private final PluginResourceCache resourceCache;
+
+    private final Tags tags;
+
+    public PluginResourceCacheMetrics(PluginResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+        this.tags = Tags.of("cache", resourceCache.getName());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(METRIC_NAME + ".gets", resourceCache, PluginResourceCache::getHitCount)
+                .description("Resource resolutions served from the cache")
+                .tags(tags).tag("result", "hit").register(registry);
+        FunctionCounter.builder(METRIC_NAME + ".gets", resourceCache, PluginResourceCache::getMissCount)
+                .description("Resource resolutions not found in the cache")
+                .tags(tags).tag("result", "miss").register(registry);
+        FunctionCounter.builder(METRIC_NAME + ".evictions", resourceCache, PluginResourceCache::getEvictionCount)
+                .description("Entries evicted from the cache")
+                .tags(tags).register(registry);
+        Gauge.builder(METRIC_NAME + ".size", resourceCache, PluginResourceCache::size)
+                .description("Entries in the cache")
+                .tags(tags).register(registry);
+        Gauge.builder(METRIC_NAME + ".weight", resourceCache, PluginResourceCache::getWeight)
+                .description("Estimated weight of the cached entries")
+                .baseUnit("bytes")
+                .tags(tags).register(registry);
+    }
+}
@@ -52,6 +52,10 @@ public class PluginInfo implements PluginDescriptor {
 
     public PluginStartingError startingError;
 
+    public Integer inFlightRequests;
+
+    public Long startTime;
+
     public String getPluginId() {
         return pluginId;
     }
@@ -100,6 +104,14 @@ public class PluginInfo implements PluginDescriptor {
         return startingError;
     }
 
+    public Integer getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    public Long getStartTime() {
+        return startTime;
+    }
+
     public static PluginInfo build(PluginDescriptor descriptor,
                                    PluginState pluginState,
                                    String newVersion,
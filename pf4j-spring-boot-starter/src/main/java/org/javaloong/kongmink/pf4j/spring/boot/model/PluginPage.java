@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.model;
+
+/**
+ * A page of a plugin listing. The items are serialized one by one while the response is
+ * written, so a page of plugin infos is never held in memory at once.
+ *
+ * @author Xu Cheng
+ */
+public class PluginPage {
+
+    public int page;
+
+    public int size;
+
+    public int total;
+
+    public Iterable<PluginInfo> items;
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public Iterable<PluginInfo> getItems() {
+        return items;
+    }
+
+    public static PluginPage build(int page, int size, int total, Iterable<PluginInfo> items) {
+        PluginPage pluginPage = new PluginPage();
+        pluginPage.page = page;
+        pluginPage.size = size;
+        pluginPage.total = total;
+        pluginPage.items = items;
+        return pluginPage;
+    }
+}
@@ -15,8 +15,13 @@
  */
 package org.springframework.boot.autoconfigure.web.servlet;
 
+import org.javaloong.kongmink.pf4j.spring.boot.Pf4jProperties;
 import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStateChangedEvent;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginContentVersionStrategy;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceCache;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceIndex;
 import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceResolver;
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.web.ResourceProperties;
@@ -39,6 +44,8 @@ public class PluginResourceHandlerRegistrationCustomizer implements
 
     private static final String DEFAULT_CACHE_NAME = "plugin-resource-chain-cache";
 
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
     @Autowired
     private ResourceProperties resourceProperties = new ResourceProperties();
 
@@ -46,6 +53,15 @@ public class PluginResourceHandlerRegistrationCustomizer implements
     @Qualifier("pluginResourceCache")
     private Cache pluginResourceCache;
 
+    @Autowired(required = false)
+    private PluginResourceIndex pluginResourceIndex;
+
+    @Autowired(required = false)
+    private PluginResourceStore pluginResourceStore;
+
+    @Autowired(required = false)
+    private Pf4jProperties pf4jProperties;
+
     @Override
     public void customize(ResourceHandlerRegistration registration) {
         if (pluginResourceCache == null) {
@@ -54,8 +70,6 @@ public class PluginResourceHandlerRegistrationCustomizer implements
         ResourceProperties.Chain properties = this.resourceProperties.getChain();
         ResourceChainRegistration chain = registration.resourceChain(properties.isCache(), pluginResourceCache);
 
-        chain.addResolver(new PluginResourceResolver());
-
         ResourceProperties.Strategy strategy = properties.getStrategy();
         if (properties.isCompressed()) {
             chain.addResolver(new EncodedResourceResolver());
@@ -63,6 +77,14 @@ public class PluginResourceHandlerRegistrationCustomizer implements
         if (strategy.getFixed().isEnabled() || strategy.getContent().isEnabled()) {
             chain.addResolver(getVersionResourceResolver(strategy));
         }
+
+        // PluginResourceResolver does not delegate to the rest of the chain, so it goes last
+        PluginResourceResolver resourceResolver = new PluginResourceResolver(pluginResourceIndex);
+        resourceResolver.setResourceStore(pluginResourceStore);
+        if (pf4jProperties != null && pf4jProperties.getResource().isImmutable()) {
+            resourceResolver.setVersionedCacheControl(IMMUTABLE_CACHE_CONTROL);
+        }
+        chain.addResolver(resourceResolver);
         if (properties.isHtmlApplicationCache()) {
             chain.addTransformer(new AppCacheManifestTransformer());
         }
@@ -77,14 +99,15 @@ public class PluginResourceHandlerRegistrationCustomizer implements
         }
         if (properties.getContent().isEnabled()) {
             String[] paths = properties.getContent().getPaths();
-            resolver.addContentVersionStrategy(paths);
+            resolver.addVersionStrategy(new PluginContentVersionStrategy(), paths);
         }
         return resolver;
     }
 
     @Override
     public void onApplicationEvent(PluginStateChangedEvent event) {
-        if (pluginResourceCache == null) return;
+        // PluginResourceCache evicts the entries of the affected plugin by itself
+        if (pluginResourceCache == null || pluginResourceCache instanceof PluginResourceCache) return;
         pluginResourceCache.clear();
     }
 }
@@ -0,0 +1,171 @@
+package org.javaloong.kongmink.pf4j.spring.boot.test;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.javaloong.kongmink.pf4j.spring.boot.CachingUpdateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.update.PluginInfo;
+import org.springframework.util.FileSystemUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class CachingUpdateRepositoryTest {
+
+    private static final String PLUGINS_JSON = "[{\"id\":\"plugin1\",\"releases\":"
+            + "[{\"version\":\"1.0.0\",\"date\":\"2020-12-01\",\"url\":\"plugin1-1.0.0.jar\"}]}]";
+
+    private Path cacheDirectory;
+    private HttpServer server;
+    private URL url;
+    private volatile String etag = "\"v1\"";
+    private volatile boolean available = true;
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+
+    @BeforeEach
+    void init() throws Exception {
+        File cacheDir = new File("build", "update-cache");
+        cacheDirectory = Paths.get(cacheDir.getAbsolutePath());
+
+        // local stand-in of a plugin repository, supporting conditional requests
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/repo/plugins.json", exchange -> {
+            if (!available) {
+                exchange.sendResponseHeaders(503, -1);
+            } else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                fetchCount.incrementAndGet();
+                byte[] body = PLUGINS_JSON.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", etag);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        url = new URL("http://localhost:" + server.getAddress().getPort() + "/repo/");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop(0);
+        FileSystemUtils.deleteRecursively(cacheDirectory);
+    }
+
+    @Test
+    public void getPlugins_WithinTimeToLive_ShouldServeFromCache() {
+        CachingUpdateRepository repository = createRepository(60000);
+
+        PluginInfo plugin = repository.getPlugins().get("plugin1");
+        assertThat(plugin.releases.get(0).url, is(url + "plugin1-1.0.0.jar"));
+        assertThat(plugin.getRepositoryId(), is("repo"));
+        repository.refresh();
+        repository.getPlugins();
+        assertThat(repository.getPlugin("plugin1"), sameInstance(plugin));
+        assertThat(fetchCount.get(), is(1));
+        assertThat(notModifiedCount.get(), is(0));
+    }
+
+    @Test
+    public void getPlugins_Expired_ShouldRevalidateOnceForConcurrentCallers() throws Exception {
+        CachingUpdateRepository repository = createRepository(60000);
+        repository.getPlugins();
+        repository.invalidate();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return repository.getPlugins();
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertThat(fetchCount.get(), is(1));
+        assertThat(notModifiedCount.get(), is(1));
+    }
+
+    @Test
+    public void getPlugins_Restarted_ShouldRevalidateCopyOnDisk() {
+        createRepository(60000).getPlugins();
+
+        CachingUpdateRepository restarted = createRepository(60000);
+        assertNotNull(restarted.getPlugin("plugin1"));
+        assertThat(fetchCount.get(), is(1));
+        assertThat(notModifiedCount.get(), is(1));
+
+        available = false;
+        restarted.invalidate();
+        assertNotNull(restarted.getPlugin("plugin1"));
+    }
+
+    @Test
+    public void getPlugins_Changed_ShouldFetchAgain() {
+        CachingUpdateRepository repository = createRepository(0);
+        repository.getPlugins();
+        repository.getPlugins();
+        etag = "\"v2\"";
+        repository.getPlugins();
+
+        assertThat(fetchCount.get(), is(2));
+        assertThat(notModifiedCount.get(), is(1));
+    }
+
+    @Test
+    public void getPlugins_FirstFetchFails_ShouldRetryAfterDelay() throws Exception {
+        CachingUpdateRepository repository = createRepository(60000);
+        repository.setRetryDelay(200);
+        available = false;
+        assertThat(repository.getPlugins().size(), is(0));
+
+        available = true;
+        assertThat(repository.getPlugins().size(), is(0));
+        Thread.sleep(300);
+        assertNotNull(repository.getPlugin("plugin1"));
+        assertThat(fetchCount.get(), is(1));
+    }
+
+    @Test
+    public void invalidate_FetchFailed_ShouldFetchAgain() {
+        CachingUpdateRepository repository = createRepository(60000);
+        available = false;
+        repository.getPlugins();
+
+        available = true;
+        repository.invalidate();
+        assertNotNull(repository.getPlugin("plugin1"));
+    }
+
+    private CachingUpdateRepository createRepository(long timeToLive) {
+        return new CachingUpdateRepository("repo", url, "plugins.json", cacheDirectory, timeToLive);
+    }
+}
@@ -0,0 +1,325 @@
+package org.javaloong.kongmink.pf4j.spring.boot.test;
+
+import static org.hamcrest.Matchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.javaloong.kongmink.pf4j.spring.boot.PluginInstallResult;
+import org.javaloong.kongmink.pf4j.spring.boot.PluginInstaller;
+import org.javaloong.kongmink.pf4j.spring.boot.SpringBootPluginManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.Plugin;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+import org.pf4j.update.PluginInfo;
+import org.pf4j.update.PluginInfo.PluginRelease;
+import org.pf4j.update.UpdateManager;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class PluginInstallerTest {
+
+    private Path root;
+    private Path pluginsRoot;
+    private HttpServer server;
+    private Map<String, byte[]> files;
+    private Map<String, PluginInfo> plugins;
+    private PluginManager pluginManager;
+    private UpdateManager updateManager;
+    private PluginInstaller pluginInstaller;
+    private GenericApplicationContext applicationContext;
+
+    @BeforeEach
+    void init() throws Exception {
+        File rootDir = new File("build", "plugin-installer");
+        root = Paths.get(rootDir.getAbsolutePath());
+        pluginsRoot = root.resolve("plugins");
+        Files.createDirectories(pluginsRoot);
+
+        // local stand-in of a plugin repository, supporting range requests
+        files = new HashMap<>();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] content = files.get(exchange.getRequestURI().getPath());
+            if (content == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int offset = range != null ? Integer.parseInt(range.substring(6, range.length() - 1)) : 0;
+            if (range != null) {
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + offset + "-" + (content.length - 1) + "/" + content.length);
+            }
+            exchange.sendResponseHeaders(range != null ? 206 : 200, content.length - offset);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(content, offset, content.length - offset);
+            }
+        });
+        server.start();
+
+        plugins = new HashMap<>();
+        pluginManager = mock(PluginManager.class);
+        when(pluginManager.getPluginsRoots()).thenReturn(Collections.singletonList(pluginsRoot));
+        when(pluginManager.loadPlugin(any())).thenAnswer(invocation -> {
+            String fileName = invocation.<Path>getArgument(0).getFileName().toString();
+            return fileName.substring(0, fileName.indexOf('-'));
+        });
+        when(pluginManager.startPlugin(anyString())).thenReturn(PluginState.STARTED);
+        updateManager = mock(UpdateManager.class);
+        when(updateManager.getPluginsMap()).thenReturn(plugins);
+        pluginInstaller = new PluginInstaller(pluginManager, updateManager, root.resolve("staging"), 2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pluginInstaller.destroy();
+        if (applicationContext != null) {
+            pluginManager.stopPlugins();
+            pluginManager.unloadPlugins();
+            applicationContext.close();
+        }
+        server.stop(0);
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void install_ShouldDownloadConcurrentlyAndInstallEachPlugin() throws Exception {
+        byte[] plugin1 = addRelease("plugin1", "1.0.0", true);
+        addRelease("plugin2", "2.0.0", false);
+        Map<String, String> pluginVersions = new HashMap<>();
+        pluginVersions.put("plugin1", "1.0.0");
+        pluginVersions.put("plugin2", "2.0.0");
+
+        List<PluginInstallResult> results = pluginInstaller.install(pluginVersions);
+        assertThat(results, hasSize(2));
+        for (PluginInstallResult result : results) {
+            assertTrue(result.isSuccess(), result.getError());
+            assertThat(result.getPluginState(), is(PluginState.STARTED));
+        }
+        assertThat(Files.readAllBytes(pluginsRoot.resolve("plugin1-1.0.0.jar")), is(plugin1));
+        assertTrue(Files.exists(pluginsRoot.resolve("plugin2-2.0.0.jar")));
+        verify(pluginManager).loadPlugin(pluginsRoot.resolve("plugin1-1.0.0.jar"));
+        verify(pluginManager).startPlugin("plugin2");
+    }
+
+    @Test
+    public void install_PartialDownload_ShouldResumeFromLastByte() throws Exception {
+        byte[] content = addRelease("plugin1", "1.0.0", true);
+        Path partFile = root.resolve("staging").resolve("plugin1-1.0.0").resolve("plugin1-1.0.0.jar.part");
+        Files.createDirectories(partFile.getParent());
+        Files.write(partFile, Arrays.copyOf(content, 100));
+
+        PluginInstallResult result = pluginInstaller.install(Collections.singletonMap("plugin1", "1.0.0")).get(0);
+        assertTrue(result.isSuccess(), result.getError());
+        assertTrue(result.isResumed());
+        assertThat(result.getDownloadedBytes(), is((long) content.length - 100));
+        assertThat(Files.readAllBytes(pluginsRoot.resolve("plugin1-1.0.0.jar")), is(content));
+    }
+
+    @Test
+    public void install_ChecksumMismatch_ShouldNotInstall() throws Exception {
+        addRelease("plugin1", "1.0.0", true);
+        plugins.get("plugin1").releases.get(0).sha512sum = "00";
+
+        PluginInstallResult result = pluginInstaller.install(Collections.singletonMap("plugin1", "1.0.0")).get(0);
+        assertFalse(result.isSuccess());
+        assertThat(result.getError(), containsString("Checksum"));
+        assertFalse(Files.exists(pluginsRoot.resolve("plugin1-1.0.0.jar")));
+        verify(pluginManager, never()).loadPlugin(any());
+    }
+
+    @Test
+    public void install_UnknownRelease_ShouldReportError() {
+        PluginInstallResult result = pluginInstaller.install(Collections.singletonMap("plugin1", "1.0.0")).get(0);
+        assertFalse(result.isSuccess());
+        assertThat(result.getVersion(), is("1.0.0"));
+    }
+
+    @Test
+    public void install_ZipPluginUpdate_ShouldDeletePreviousArchive() throws Exception {
+        useSpringBootPluginManager();
+        installLocally("plugin1", "1.0.0", TestPlugin.class, null, "zip");
+        addRelease("plugin1", "2.0.0", true, TestPlugin.class, null, "zip");
+
+        PluginInstallResult result = pluginInstaller.install(Collections.singletonMap("plugin1", "2.0.0")).get(0);
+        assertTrue(result.isSuccess(), result.getError());
+        assertThat(result.getPluginState(), is(PluginState.STARTED));
+        assertThat(pluginManager.getPlugin("plugin1").getDescriptor().getVersion(), is("2.0.0"));
+        assertTrue(Files.exists(pluginsRoot.resolve("plugin1-2.0.0.zip")));
+        assertFalse(Files.exists(pluginsRoot.resolve("plugin1-1.0.0.zip")));
+        assertFalse(Files.exists(pluginsRoot.resolve("plugin1-1.0.0")));
+    }
+
+    @Test
+    public void install_DependencyInSameBatch_ShouldInstallDependencyFirst() throws Exception {
+        useSpringBootPluginManager();
+        addRelease("plugin2", "1.0.0", true, TestPlugin.class, "plugin1", "jar");
+        addRelease("plugin1", "1.0.0", true, TestPlugin.class, null, "jar");
+        Map<String, String> pluginVersions = new LinkedHashMap<>();
+        pluginVersions.put("plugin2", "1.0.0");
+        pluginVersions.put("plugin1", "1.0.0");
+
+        List<PluginInstallResult> results = pluginInstaller.install(pluginVersions);
+        for (PluginInstallResult result : results) {
+            assertTrue(result.isSuccess(), result.getError());
+            assertThat(result.getPluginState(), is(PluginState.STARTED));
+        }
+        assertThat(pluginManager.getPlugin("plugin2").getPluginState(), is(PluginState.STARTED));
+    }
+
+    @Test
+    public void install_StartFails_ShouldRollBackToPreviousVersion() throws Exception {
+        useSpringBootPluginManager();
+        installLocally("plugin1", "1.0.0", TestPlugin.class, null, "jar");
+        addRelease("plugin1", "2.0.0", true, FailingPlugin.class, null, "jar");
+
+        PluginInstallResult result = pluginInstaller.install(Collections.singletonMap("plugin1", "2.0.0")).get(0);
+        assertFalse(result.isSuccess());
+        PluginWrapper plugin = pluginManager.getPlugin("plugin1");
+        assertThat(plugin.getDescriptor().getVersion(), is("1.0.0"));
+        assertThat(plugin.getPluginState(), is(PluginState.STARTED));
+        assertTrue(Files.exists(pluginsRoot.resolve("plugin1-1.0.0.jar")));
+        assertFalse(Files.exists(pluginsRoot.resolve("plugin1-2.0.0.jar")));
+    }
+
+    @Test
+    public void install_DependencyUpdate_ShouldReloadDependents() throws Exception {
+        useSpringBootPluginManager();
+        installLocally("plugin1", "1.0.0", TestPlugin.class, null, "jar");
+        installLocally("plugin2", "1.0.0", TestPlugin.class, "plugin1", "jar");
+        addRelease("plugin1", "2.0.0", true, TestPlugin.class, null, "jar");
+
+        PluginInstallResult result = pluginInstaller.install(Collections.singletonMap("plugin1", "2.0.0")).get(0);
+        assertTrue(result.isSuccess(), result.getError());
+        assertThat(pluginManager.getPlugin("plugin1").getDescriptor().getVersion(), is("2.0.0"));
+        PluginWrapper dependent = pluginManager.getPlugin("plugin2");
+        assertNotNull(dependent);
+        assertThat(dependent.getPluginState(), is(PluginState.STARTED));
+    }
+
+    @Test
+    public void install_ConcurrentBatchesOfSameRelease_ShouldBothInstall() throws Exception {
+        useSpringBootPluginManager();
+        byte[] content = addRelease("plugin1", "1.0.0", true, TestPlugin.class, null, "jar");
+
+        CompletableFuture<List<PluginInstallResult>> batch1 = CompletableFuture.supplyAsync(
+                () -> pluginInstaller.install(Collections.singletonMap("plugin1", "1.0.0")));
+        CompletableFuture<List<PluginInstallResult>> batch2 = CompletableFuture.supplyAsync(
+                () -> pluginInstaller.install(Collections.singletonMap("plugin1", "1.0.0")));
+        for (CompletableFuture<List<PluginInstallResult>> batch : Arrays.asList(batch1, batch2)) {
+            PluginInstallResult result = batch.get(30, TimeUnit.SECONDS).get(0);
+            assertTrue(result.isSuccess(), result.getError());
+        }
+        assertThat(Files.readAllBytes(pluginsRoot.resolve("plugin1-1.0.0.jar")), is(content));
+        assertThat(pluginManager.getPlugin("plugin1").getPluginState(), is(PluginState.STARTED));
+    }
+
+    /**
+     * Replace the mocked plugin manager with a plugin manager loading the plugins root.
+     */
+    private void useSpringBootPluginManager() {
+        pluginInstaller.destroy();
+        applicationContext = new GenericApplicationContext();
+        applicationContext.refresh();
+        SpringBootPluginManager springBootPluginManager = new SpringBootPluginManager(pluginsRoot);
+        springBootPluginManager.setApplicationContext(applicationContext);
+        pluginManager = springBootPluginManager;
+        pluginInstaller = new PluginInstaller(pluginManager, updateManager, root.resolve("staging"), 2);
+    }
+
+    private void installLocally(String pluginId, String version, Class<?> pluginClass, String dependencies,
+                                String extension) throws Exception {
+        Path file = pluginsRoot.resolve(pluginId + "-" + version + "." + extension);
+        Files.write(file, createArchive(pluginId, version, pluginClass, dependencies));
+        pluginManager.startPlugin(pluginManager.loadPlugin(file));
+    }
+
+    private byte[] addRelease(String pluginId, String version, boolean checksum) throws Exception {
+        return addRelease(pluginId, version, checksum, TestPlugin.class, null, "jar");
+    }
+
+    private byte[] addRelease(String pluginId, String version, boolean checksum, Class<?> pluginClass,
+                              String dependencies, String extension) throws Exception {
+        byte[] content = createArchive(pluginId, version, pluginClass, dependencies);
+        String path = "/" + pluginId + "/" + pluginId + "-" + version + "." + extension;
+        files.put(path, content);
+
+        PluginRelease release = new PluginRelease();
+        release.version = version;
+        release.url = "http://localhost:" + server.getAddress().getPort() + path;
+        if (checksum) {
+            StringBuilder sum = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-512").digest(content)) {
+                sum.append(String.format("%02x", b));
+            }
+            release.sha512sum = sum.toString();
+        }
+        PluginInfo info = new PluginInfo();
+        info.id = pluginId;
+        info.releases = Collections.singletonList(release);
+        plugins.put(pluginId, info);
+        return content;
+    }
+
+    private static byte[] createArchive(String pluginId, String version, Class<?> pluginClass,
+                                        String dependencies) throws Exception {
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (JarOutputStream output = new JarOutputStream(jar)) {
+            output.putNextEntry(new JarEntry("plugin.properties"));
+            output.write(("plugin.id=" + pluginId + "\nplugin.version=" + version + "\nplugin.class="
+                    + pluginClass.getName() + "\nplugin.dependencies=" + (dependencies != null ? dependencies : "")
+                    + "\n").getBytes("UTF-8"));
+            output.closeEntry();
+            output.putNextEntry(new JarEntry("data.bin"));
+            output.write(new byte[4096]);
+            output.closeEntry();
+        }
+        return jar.toByteArray();
+    }
+
+    public static class TestPlugin extends Plugin {
+
+        public TestPlugin(PluginWrapper wrapper) {
+            super(wrapper);
+        }
+    }
+
+    public static class FailingPlugin extends Plugin {
+
+        public FailingPlugin(PluginWrapper wrapper) {
+            super(wrapper);
+        }
+
+        @Override
+        public void start() {
+            throw new IllegalStateException("failed to start");
+        }
+    }
+}
@@ -8,15 +8,25 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
+import org.javaloong.kongmink.pf4j.spring.boot.PluginLifecycleJob;
+import org.javaloong.kongmink.pf4j.spring.boot.PluginLifecycleJobManager;
+import org.javaloong.kongmink.pf4j.spring.boot.PluginLifecycleResult;
 import org.javaloong.kongmink.pf4j.spring.boot.PluginManagerController;
 import org.javaloong.kongmink.pf4j.spring.boot.SpringBootPluginManager;
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginEventBroadcaster;
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartingError;
 import org.javaloong.kongmink.pf4j.spring.boot.env.ConfigurationRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.pf4j.DefaultPluginDescriptor;
 import org.pf4j.PluginDescriptor;
 import org.pf4j.PluginDescriptorFinder;
@@ -30,6 +40,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(PluginManagerController.class)
 public class PluginManagerControllerTest {
@@ -40,6 +51,18 @@ public class PluginManagerControllerTest {
     @MockBean
     private SpringBootPluginManager pluginManager;
     
+    @MockBean
+    private PluginLifecycleJobManager jobManager;
+    
+    @MockBean
+    private PluginEventBroadcaster eventBroadcaster;
+    
+    @BeforeEach
+    void init() {
+        // blocking lifecycle operations run at once
+        when(jobManager.execute(any())).thenAnswer(invocation -> invocation.<Callable<?>>getArgument(0).call());
+    }
+    
     @Test
     public void list_ShouldReturnPluginInfoItems() throws Exception{
         PluginWrapper pluginWrapper = mock(PluginWrapper.class);
@@ -61,6 +84,78 @@ public class PluginManagerControllerTest {
             .andExpect(jsonPath("$[0].pluginId", is("plugin1")));
     }
     
+    @Test
+    public void events_SubscriptionCancelled_ShouldCompleteStream() throws Exception{
+        PluginEventBroadcaster.Subscription subscription = mock(PluginEventBroadcaster.Subscription.class);
+        ArgumentCaptor<PluginEventBroadcaster.Subscriber> subscriber =
+                ArgumentCaptor.forClass(PluginEventBroadcaster.Subscriber.class);
+        when(eventBroadcaster.subscribe(eq(3L), subscriber.capture())).thenReturn(subscription);
+        
+        MvcResult result = mockMvc.perform(get("/api/plugins/events").header("Last-Event-ID", "3"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        subscriber.getValue().onCancelled();
+        
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk());
+    }
+    
+    @Test
+    public void page_ShouldReturnFilteredAndSortedPage() throws Exception{
+        List<PluginWrapper> plugins = Arrays.asList(
+                mockPlugin("order-b", PluginState.STARTED, 2000L),
+                mockPlugin("order-a", PluginState.STARTED, 3000L),
+                mockPlugin("order-c", PluginState.STOPPED, null),
+                mockPlugin("user", PluginState.STARTED, 1000L));
+        PluginRepository pluginRepository = mock(PluginRepository.class);
+        when(pluginManager.getPlugins()).thenReturn(plugins);
+        when(pluginManager.getPluginDescriptorFinder()).thenReturn(mock(PluginDescriptorFinder.class));
+        when(pluginManager.getPluginRepository()).thenReturn(pluginRepository);
+        when(pluginRepository.getPluginPaths()).thenReturn(new ArrayList<>());
+        
+        mockMvc.perform(get("/api/plugins/page")
+                .param("idPrefix", "order-")
+                .param("state", "STARTED")
+                .param("sort", "startTime")
+                .param("desc", "true")
+                .param("size", "1"))
+            .andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andExpect(jsonPath("$.total", is(2)))
+            .andExpect(jsonPath("$.items", hasSize(1)))
+            .andExpect(jsonPath("$.items[0].pluginId", is("order-a")))
+            .andExpect(jsonPath("$.items[0].startTime", is(3000)));
+        
+        mockMvc.perform(get("/api/plugins/page").param("page", "1").param("size", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total", is(4)))
+            .andExpect(jsonPath("$.items[*].pluginId", contains("order-c", "user")));
+    }
+    
+    @Test
+    public void page_MatchingETag_ShouldReturnNotModified() throws Exception{
+        PluginRepository pluginRepository = mock(PluginRepository.class);
+        List<PluginWrapper> plugins = Arrays.asList(mockPlugin("plugin1", PluginState.STARTED, null));
+        when(pluginManager.getPlugins()).thenReturn(plugins);
+        when(pluginManager.getPluginDescriptorFinder()).thenReturn(mock(PluginDescriptorFinder.class));
+        when(pluginManager.getPluginRepository()).thenReturn(pluginRepository);
+        when(pluginRepository.getPluginPaths()).thenReturn(new ArrayList<>());
+        when(pluginManager.getRegistryVersion()).thenReturn(1L);
+        
+        String eTag = mockMvc.perform(get("/api/plugins/page"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+        
+        mockMvc.perform(get("/api/plugins/page").header("If-None-Match", eTag))
+            .andExpect(status().isNotModified());
+        
+        when(pluginManager.getRegistryVersion()).thenReturn(2L);
+        mockMvc.perform(get("/api/plugins/page").header("If-None-Match", eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", not(eTag)));
+    }
+    
     @Test
     public void getConfig_ShouldReturnPluginConfigProperties() throws Exception{
         Map<String, Object> map = Collections.singletonMap("key1", "value1");
@@ -106,6 +201,7 @@ public class PluginManagerControllerTest {
         mockMvc.perform(post("/api/plugins/plugin1/start"))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.state", is("STARTED")));
+        verify(jobManager).execute(any());
     }
     
     @Test
@@ -134,6 +230,64 @@ public class PluginManagerControllerTest {
             .andExpect(status().isOk());
     }
     
+    @Test
+    public void bulk_ShouldReturnResultPerPlugin() throws Exception{
+        when(pluginManager.applyToPlugins(PluginLifecycleJob.Operation.RESTART, Arrays.asList("plugin1", "plugin2")))
+            .thenReturn(Arrays.asList(
+                    new PluginLifecycleResult("plugin1", PluginState.STARTED, null, 10),
+                    new PluginLifecycleResult("plugin2", null,
+                            new PluginStartingError("plugin2", "Unknown plugin 'plugin2'", null), 0)));
+        
+        mockMvc.perform(post("/api/plugins/bulk/restart")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.convertObjectToJsonBytes(Arrays.asList("plugin1", "plugin2"))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(jsonPath("$[0].pluginState", is("STARTED")))
+            .andExpect(jsonPath("$[0].success", is(true)))
+            .andExpect(jsonPath("$[1].success", is(false)));
+    }
+    
+    @Test
+    public void bulk_UnsupportedOperation_ShouldReturnHttpStatusBadRequest() throws Exception{
+        mockMvc.perform(post("/api/plugins/bulk/reload_all")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.convertObjectToJsonBytes(Arrays.asList("plugin1"))))
+            .andExpect(status().isBadRequest());
+        verify(pluginManager, never()).applyToPlugins(any(), any());
+    }
+    
+    @Test
+    public void startAsync_ShouldReturnHttpStatusAcceptedAndJob() throws Exception{
+        PluginLifecycleJob job = new PluginLifecycleJob("job1", "plugin1", PluginLifecycleJob.Operation.START);
+        when(jobManager.submit(PluginLifecycleJob.Operation.START, "plugin1")).thenReturn(job);
+        
+        mockMvc.perform(post("/api/plugins/jobs/plugin1/start"))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Location", "http://localhost/api/plugins/jobs/job1"))
+            .andExpect(jsonPath("$.id", is("job1")))
+            .andExpect(jsonPath("$.status", is("PENDING")));
+    }
+    
+    @Test
+    public void job_UnknownJob_ShouldReturnHttpStatusNotFound() throws Exception{
+        when(jobManager.getJob("job1")).thenReturn(null);
+        
+        mockMvc.perform(get("/api/plugins/jobs/job1"))
+            .andExpect(status().isNotFound());
+    }
+    
+    private PluginWrapper mockPlugin(String pluginId, PluginState state, Long startTime) {
+        PluginWrapper pluginWrapper = mock(PluginWrapper.class);
+        when(pluginWrapper.getPluginId()).thenReturn(pluginId);
+        when(pluginWrapper.getPluginState()).thenReturn(state);
+        when(pluginWrapper.getPluginPath()).thenReturn(Paths.get("plugins", pluginId));
+        when(pluginWrapper.getDescriptor()).thenReturn(new DefaultPluginDescriptor(
+                pluginId, "", pluginId + "Class", "1.0.0", null, null, null));
+        when(pluginManager.getPluginStartTime(pluginId)).thenReturn(startTime);
+        return pluginWrapper;
+    }
+    
     @TestConfiguration
     @Import(PluginManagerController.class)
     static class Config {
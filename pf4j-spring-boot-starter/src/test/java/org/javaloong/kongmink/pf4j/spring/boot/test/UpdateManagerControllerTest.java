@@ -1,5 +1,6 @@
 package org.javaloong.kongmink.pf4j.spring.boot.test;
 
+import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -7,20 +8,32 @@ import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
+import org.javaloong.kongmink.pf4j.spring.boot.CachingUpdateRepository;
+import org.javaloong.kongmink.pf4j.spring.boot.PluginInstallResult;
+import org.javaloong.kongmink.pf4j.spring.boot.PluginInstaller;
+import org.javaloong.kongmink.pf4j.spring.boot.PluginLifecycleJob;
+import org.javaloong.kongmink.pf4j.spring.boot.PluginLifecycleJobManager;
 import org.javaloong.kongmink.pf4j.spring.boot.UpdateManagerController;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
 import org.pf4j.PluginWrapper;
 import org.pf4j.update.PluginInfo;
 import org.pf4j.update.PluginInfo.PluginRelease;
 import org.pf4j.update.UpdateManager;
+import org.pf4j.update.UpdateRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 @WebMvcTest(UpdateManagerController.class)
@@ -35,6 +48,18 @@ public class UpdateManagerControllerTest {
     @MockBean
     private PluginManager pluginManager;
     
+    @MockBean
+    private PluginInstaller pluginInstaller;
+
+    @MockBean
+    private PluginLifecycleJobManager jobManager;
+    
+    @BeforeEach
+    void init() {
+        // blocking lifecycle operations run at once
+        when(jobManager.execute(any())).thenAnswer(invocation -> invocation.<Callable<?>>getArgument(0).call());
+    }
+    
     @Test
     public void getAvailablePlugins_ShouldReturnPluginInfoItems() throws Exception{
         when(updateManager.getAvailablePlugins()).thenReturn(createPlugins());
@@ -59,6 +84,16 @@ public class UpdateManagerControllerTest {
             .andExpect(jsonPath("$[0].state", is("UNINSTALLED")));
     }
     
+    @Test
+    public void refresh_ShouldInvalidateCachingRepositories() throws Exception{
+        CachingUpdateRepository repository = mock(CachingUpdateRepository.class);
+        when(updateManager.getRepositories()).thenReturn(Arrays.asList(repository, mock(UpdateRepository.class)));
+
+        mockMvc.perform(post("/api/updates/refresh"))
+            .andExpect(status().isNoContent());
+        verify(repository).invalidate();
+    }
+    
     @Test
     public void install_ShouldReturnHttpStatusOk() throws Exception{
         when(updateManager.installPlugin(anyString(), anyString())).thenReturn(true);
@@ -68,6 +103,32 @@ public class UpdateManagerControllerTest {
             .andExpect(jsonPath("$.result", is(true)));
     }
     
+    @Test
+    public void installBatch_ShouldReturnResultOfEachPlugin() throws Exception{
+        Map<String, String> pluginVersions = new LinkedHashMap<>();
+        pluginVersions.put("plugin1", "1.0.0");
+        pluginVersions.put("plugin2", "");
+        List<PluginInstallResult> results = Arrays.asList(
+                new PluginInstallResult("plugin1", "1.0.0", PluginState.STARTED, 1024, false, null, 10),
+                new PluginInstallResult("plugin2", null, null, 0, false, "Release latest of plugin plugin2 not found", 5));
+        when(pluginInstaller.install(pluginVersions)).thenReturn(results);
+        PluginLifecycleJob job = new PluginLifecycleJob("job1", null, PluginLifecycleJob.Operation.INSTALL);
+        when(jobManager.submit(eq(PluginLifecycleJob.Operation.INSTALL), isNull(), any())).thenAnswer(invocation -> {
+            assertThat(invocation.<Callable<?>>getArgument(2).call(), sameInstance((Object) results));
+            return job;
+        });
+        
+        mockMvc.perform(post("/api/updates/install")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"plugin1\":\"1.0.0\",\"plugin2\":\"\"}"))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Location", "http://localhost/api/plugins/jobs/job1"))
+            .andExpect(jsonPath("$.id", is("job1")))
+            .andExpect(jsonPath("$.operation", is("INSTALL")))
+            .andExpect(jsonPath("$.status", is("PENDING")));
+        verify(pluginInstaller).install(pluginVersions);
+    }
+    
     @Test
     public void uninstall_ShouldReturnHttpStatusOk() throws Exception{
         when(updateManager.uninstallPlugin(anyString())).thenReturn(true);
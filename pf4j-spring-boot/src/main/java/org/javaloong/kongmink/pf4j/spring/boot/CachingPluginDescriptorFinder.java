@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pf4j.PluginDescriptor;
+import org.pf4j.PluginDescriptorFinder;
+import org.pf4j.PluginRuntimeException;
+import org.springframework.util.Assert;
+
+/**
+ * {@link PluginDescriptorFinder} caching the descriptors found by another finder.
+ *
+ * <p>Descriptors of plugin files are cached by path together with a fingerprint of the file,
+ * its last modified time, size and file key (the inode on most file systems). A lookup only
+ * reads the file attributes, and the descriptor is read again once the file is modified or
+ * replaced. Failures are cached the same way. Plugin directories, as used in development mode,
+ * are not cached since their descriptor files might be modified without changing the
+ * directory itself.
+ *
+ * @author Xu Cheng
+ */
+public class CachingPluginDescriptorFinder implements PluginDescriptorFinder {
+
+    private final PluginDescriptorFinder delegate;
+
+    private final Map<Path, CachedDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    public CachingPluginDescriptorFinder(PluginDescriptorFinder delegate) {
+        Assert.notNull(delegate, "delegate must not be null");
+        this.delegate = delegate;
+    }
+
+    public PluginDescriptorFinder getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isApplicable(Path pluginPath) {
+        return delegate.isApplicable(pluginPath);
+    }
+
+    @Override
+    public PluginDescriptor find(Path pluginPath) {
+        Fingerprint fingerprint;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(pluginPath, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) return delegate.find(pluginPath);
+            fingerprint = new Fingerprint(attributes);
+        } catch (NoSuchFileException e) {
+            evict(pluginPath);
+            return delegate.find(pluginPath);
+        } catch (IOException e) {
+            return delegate.find(pluginPath);
+        }
+
+        CachedDescriptor cached = descriptors.get(pluginPath);
+        if (cached != null && cached.fingerprint.equals(fingerprint)) {
+            hitCount.incrementAndGet();
+            return cached.get();
+        }
+        missCount.incrementAndGet();
+        try {
+            PluginDescriptor descriptor = delegate.find(pluginPath);
+            descriptors.put(pluginPath, new CachedDescriptor(fingerprint, descriptor, null));
+            return descriptor;
+        } catch (PluginRuntimeException e) {
+            descriptors.put(pluginPath, new CachedDescriptor(fingerprint, null, e));
+            throw e;
+        }
+    }
+
+    /**
+     * Evict the cached descriptor of a plugin path.
+     * @param pluginPath the plugin path
+     */
+    public void evict(Path pluginPath) {
+        descriptors.remove(pluginPath);
+    }
+
+    public void clear() {
+        descriptors.clear();
+    }
+
+    public int size() {
+        return descriptors.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static class Fingerprint {
+
+        private final long lastModified;
+
+        private final long size;
+
+        private final Object fileKey;
+
+        private Fingerprint(BasicFileAttributes attributes) {
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.size = attributes.size();
+            this.fileKey = attributes.fileKey();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Fingerprint)) return false;
+            Fingerprint that = (Fingerprint) o;
+            return lastModified == that.lastModified && size == that.size && Objects.equals(fileKey, that.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModified, size, fileKey);
+        }
+    }
+
+    private static class CachedDescriptor {
+
+        private final Fingerprint fingerprint;
+
+        private final PluginDescriptor descriptor;
+
+        private final PluginRuntimeException failure;
+
+        private CachedDescriptor(Fingerprint fingerprint, PluginDescriptor descriptor,
+                                 PluginRuntimeException failure) {
+            this.fingerprint = fingerprint;
+            this.descriptor = descriptor;
+            this.failure = failure;
+        }
+
+        private PluginDescriptor get() {
+            if (failure != null) throw failure;
+            return descriptor;
+        }
+    }
+}
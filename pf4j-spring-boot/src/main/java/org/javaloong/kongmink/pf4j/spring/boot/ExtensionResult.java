@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of invoking a single extension through
+ * {@link SpringBootPluginManager#invokeExtensions(Class, java.util.function.Function, long, TimeUnit)}.
+ *
+ * @param <R> the type of the invocation result
+ * @author Xu Cheng
+ */
+public class ExtensionResult<R> {
+
+    private final Object extension;
+
+    private final String pluginId;
+
+    private final R value;
+
+    private final Throwable error;
+
+    private final boolean timedOut;
+
+    private final long elapsedNanos;
+
+    ExtensionResult(Object extension, String pluginId, R value, Throwable error,
+                    boolean timedOut, long elapsedNanos) {
+        this.extension = extension;
+        this.pluginId = pluginId;
+        this.value = value;
+        this.error = error;
+        this.timedOut = timedOut;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Object getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return the id of the plugin providing the extension, or {@code null} for system extensions
+     */
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public R getValue() {
+        return value;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public boolean isSuccess() {
+        return error == null && !timedOut;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartingError;
+import org.pf4j.PluginState;
+
+/**
+ * A plugin lifecycle operation run asynchronously by the {@link PluginLifecycleJobManager}.
+ *
+ * @author Xu Cheng
+ */
+public class PluginLifecycleJob {
+
+    public enum Operation {
+        START, STOP, RESTART, RELOAD, RELOAD_ALL, INSTALL, UPDATE_ALL
+    }
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+
+    private final String pluginId;
+
+    private final Operation operation;
+
+    private final long submitTime;
+
+    private volatile Status status = Status.PENDING;
+
+    private volatile long startTime;
+
+    private volatile long endTime;
+
+    private volatile PluginState pluginState;
+
+    private volatile PluginStartingError error;
+
+    private volatile Object result;
+
+    public PluginLifecycleJob(String id, String pluginId, Operation operation) {
+        this.id = id;
+        this.pluginId = pluginId;
+        this.operation = operation;
+        this.submitTime = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the id of the plugin, or {@code null} if the operation applies to all plugins
+     */
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isDone() {
+        Status current = status;
+        return current == Status.COMPLETED || current == Status.FAILED;
+    }
+
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * @return the time the operation started in epoch milliseconds, or {@code null} if pending
+     */
+    public Long getStartTime() {
+        return startTime != 0 ? startTime : null;
+    }
+
+    /**
+     * @return the time the operation ended in epoch milliseconds, or {@code null} if not done
+     */
+    public Long getEndTime() {
+        return endTime != 0 ? endTime : null;
+    }
+
+    /**
+     * @return the milliseconds the operation has been running, or {@code null} if pending
+     */
+    public Long getDuration() {
+        long start = startTime;
+        if (start == 0) return null;
+        long end = endTime;
+        return (end != 0 ? end : System.currentTimeMillis()) - start;
+    }
+
+    /**
+     * @return the state of the plugin after the operation, or {@code null} if not done
+     */
+    public PluginState getPluginState() {
+        return pluginState;
+    }
+
+    /**
+     * @return the error the operation failed with, or {@code null} if it did not fail
+     */
+    public PluginStartingError getError() {
+        return error;
+    }
+
+    /**
+     * @return the result of an operation run as a task, such as the install results of an
+     * {@link Operation#INSTALL}, or {@code null}
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    void started() {
+        startTime = System.currentTimeMillis();
+        status = Status.RUNNING;
+    }
+
+    void completed(PluginState pluginState) {
+        this.pluginState = pluginState;
+        endTime = System.currentTimeMillis();
+        status = Status.COMPLETED;
+    }
+
+    void completed(PluginState pluginState, Object result) {
+        this.result = result;
+        completed(pluginState);
+    }
+
+    void failed(PluginState pluginState, PluginStartingError error) {
+        this.pluginState = pluginState;
+        this.error = error;
+        endTime = System.currentTimeMillis();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartingError;
+import org.pf4j.PluginRuntimeException;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Run plugin lifecycle operations asynchronously, so that callers do not wait for the
+ * application context of a plugin to be refreshed or closed.
+ *
+ * <p>Operations run one at a time on a dedicated lifecycle thread, in the order they are
+ * submitted. An operation submitted while the same operation on the same plugin is pending
+ * or running is not run again, the job already submitted is returned instead. Finished jobs
+ * are kept up to the {@link #setMaxRetainedJobs(int) retained job limit}.
+ *
+ * <p>Callers that wait for a lifecycle operation run it through {@link #execute(Callable)},
+ * so that it is serialized with the jobs as well.
+ *
+ * @author Xu Cheng
+ */
+public class PluginLifecycleJobManager implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginLifecycleJobManager.class);
+
+    private final SpringBootPluginManager pluginManager;
+
+    private final ExecutorService executor;
+
+    private final Map<String, PluginLifecycleJob> jobs = new LinkedHashMap<>();
+
+    private final Map<String, PluginLifecycleJob> activeJobs = new HashMap<>();
+
+    private final Deque<String> finishedJobIds = new ArrayDeque<>();
+
+    private volatile int maxRetainedJobs = 100;
+
+    /**
+     * Set while the current thread runs a job or task of this manager.
+     */
+    private final ThreadLocal<Boolean> lifecycleThread = new ThreadLocal<>();
+
+    public PluginLifecycleJobManager(SpringBootPluginManager pluginManager) {
+        this(pluginManager, newLifecycleExecutor());
+    }
+
+    public PluginLifecycleJobManager(SpringBootPluginManager pluginManager, ExecutorService executor) {
+        Assert.notNull(pluginManager, "pluginManager must not be null");
+        Assert.notNull(executor, "executor must not be null");
+        this.pluginManager = pluginManager;
+        this.executor = executor;
+    }
+
+    public void setMaxRetainedJobs(int maxRetainedJobs) {
+        Assert.isTrue(maxRetainedJobs >= 0, "maxRetainedJobs must not be negative");
+        this.maxRetainedJobs = maxRetainedJobs;
+    }
+
+    public int getMaxRetainedJobs() {
+        return maxRetainedJobs;
+    }
+
+    /**
+     * Submit a lifecycle operation.
+     * @param operation the operation
+     * @param pluginId the id of the plugin, ignored for {@link PluginLifecycleJob.Operation#RELOAD_ALL}
+     * @return the job running the operation, or the pending or running job of the same operation
+     */
+    public PluginLifecycleJob submit(PluginLifecycleJob.Operation operation, String pluginId) {
+        Assert.notNull(operation, "operation must not be null");
+        Assert.isTrue(operation != PluginLifecycleJob.Operation.INSTALL
+                && operation != PluginLifecycleJob.Operation.UPDATE_ALL, "operation " + operation + " runs a task");
+        if (operation == PluginLifecycleJob.Operation.RELOAD_ALL) {
+            pluginId = null;
+        } else {
+            Assert.hasText(pluginId, "pluginId must not be empty");
+        }
+        String key = operation + ":" + pluginId;
+        PluginLifecycleJob job;
+        synchronized (jobs) {
+            PluginLifecycleJob activeJob = activeJobs.get(key);
+            if (activeJob != null) return activeJob;
+
+            job = new PluginLifecycleJob(UUID.randomUUID().toString(), pluginId, operation);
+            jobs.put(job.getId(), job);
+            activeJobs.put(key, job);
+        }
+        PluginLifecycleJob submittedJob = job;
+        try {
+            executor.execute(() -> run(key, submittedJob));
+        } catch (RejectedExecutionException e) {
+            submittedJob.failed(null, new PluginStartingError(pluginId, e.getMessage(), e.toString()));
+            finish(key, submittedJob);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Submit an operation run by a task, such as installing plugins. Tasks run on the
+     * lifecycle thread like the other operations, and are not deduplicated.
+     * @param operation the operation, reported by the job
+     * @param pluginId the id of the plugin, or {@code null} if the task applies to several plugins
+     * @param task the task, its return value is the {@link PluginLifecycleJob#getResult() result}
+     * of the job
+     * @return the job running the task
+     */
+    public PluginLifecycleJob submit(PluginLifecycleJob.Operation operation, String pluginId, Callable<?> task) {
+        Assert.notNull(operation, "operation must not be null");
+        Assert.notNull(task, "task must not be null");
+        PluginLifecycleJob job = new PluginLifecycleJob(UUID.randomUUID().toString(), pluginId, operation);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+        }
+        try {
+            executor.execute(() -> run(null, job, task));
+        } catch (RejectedExecutionException e) {
+            job.failed(null, new PluginStartingError(pluginId, e.getMessage(), e.toString()));
+            finish(null, job);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Run a task on the lifecycle thread and wait for it. A task called from a job, already
+     * on the lifecycle thread, runs at once.
+     * @param task the task
+     * @param <T> the type of the task result
+     * @return the result of the task
+     * @throws PluginRuntimeException if the task throws a checked exception or the wait is interrupted
+     */
+    public <T> T execute(Callable<T> task) {
+        Assert.notNull(task, "task must not be null");
+        if (Boolean.TRUE.equals(lifecycleThread.get())) {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new PluginRuntimeException(e);
+            }
+        }
+        Future<T> future = executor.submit(() -> {
+            lifecycleThread.set(Boolean.TRUE);
+            try {
+                return task.call();
+            } finally {
+                lifecycleThread.remove();
+            }
+        });
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginRuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new PluginRuntimeException(cause);
+        }
+    }
+
+    /**
+     * @param jobId the id of the job
+     * @return the job, or {@code null} if unknown or no longer retained
+     */
+    public PluginLifecycleJob getJob(String jobId) {
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    /**
+     * @return the pending, running and retained finished jobs in submission order
+     */
+    public List<PluginLifecycleJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void run(String key, PluginLifecycleJob job) {
+        String pluginId = job.getPluginId();
+        lifecycleThread.set(Boolean.TRUE);
+        job.started();
+        // starting errors are kept until the plugins are started again, only a new one is ours
+        PluginStartingError previousError = pluginId != null ? pluginManager.getPluginStartingError(pluginId) : null;
+        try {
+            PluginState pluginState = null;
+            switch (job.getOperation()) {
+                case START:
+                    pluginState = pluginManager.startPlugin(pluginId);
+                    break;
+                case STOP:
+                    pluginState = pluginManager.stopPlugin(pluginId);
+                    break;
+                case RESTART:
+                    // restartPlugin returns the state after stopping, report the state it ended in
+                    pluginManager.restartPlugin(pluginId);
+                    pluginState = getPluginState(pluginId);
+                    break;
+                case RELOAD:
+                    pluginState = pluginManager.reloadPlugins(pluginId);
+                    break;
+                case RELOAD_ALL:
+                    pluginManager.reloadPlugins(false);
+                    break;
+            }
+            PluginStartingError error = pluginId != null ? pluginManager.getPluginStartingError(pluginId) : null;
+            if (error != null && error != previousError) {
+                job.failed(pluginState, error);
+            } else {
+                job.completed(pluginState);
+            }
+        } catch (Exception e) {
+            log.error("Plugin lifecycle job {} {} of '{}' failed", job.getId(), job.getOperation(), pluginId, e);
+            job.failed(null, new PluginStartingError(pluginId, e.getMessage(), e.toString()));
+        } finally {
+            lifecycleThread.remove();
+            finish(key, job);
+        }
+    }
+
+    private PluginState getPluginState(String pluginId) {
+        PluginWrapper pluginWrapper = pluginManager.getPlugin(pluginId);
+        return pluginWrapper != null ? pluginWrapper.getPluginState() : null;
+    }
+
+    private void run(String key, PluginLifecycleJob job, Callable<?> task) {
+        lifecycleThread.set(Boolean.TRUE);
+        job.started();
+        try {
+            Object result = task.call();
+            job.completed(job.getPluginId() != null ? getPluginState(job.getPluginId()) : null, result);
+        } catch (Exception e) {
+            log.error("Plugin lifecycle job {} {} failed", job.getId(), job.getOperation(), e);
+            job.failed(null, new PluginStartingError(job.getPluginId(), e.getMessage(), e.toString()));
+        } finally {
+            lifecycleThread.remove();
+            finish(key, job);
+        }
+    }
+
+    private void finish(String key, PluginLifecycleJob job) {
+        synchronized (jobs) {
+            if (key != null) activeJobs.remove(key, job);
+            finishedJobIds.addLast(job.getId());
+            while (finishedJobIds.size() > maxRetainedJobs) {
+                jobs.remove(finishedJobIds.removeFirst());
+            }
+        }
+    }
+
+    private static ExecutorService newLifecycleExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pf4j-lifecycle-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+}
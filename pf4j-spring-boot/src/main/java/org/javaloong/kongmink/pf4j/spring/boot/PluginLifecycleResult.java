@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartingError;
+import org.pf4j.PluginState;
+
+/**
+ * Result of a lifecycle operation on one plugin of a bulk operation.
+ *
+ * @author Xu Cheng
+ * @see SpringBootPluginManager#applyToPlugins(PluginLifecycleJob.Operation, java.util.Collection)
+ */
+public class PluginLifecycleResult {
+
+    private final String pluginId;
+
+    private final PluginState pluginState;
+
+    private final PluginStartingError error;
+
+    private final long duration;
+
+    public PluginLifecycleResult(String pluginId, PluginState pluginState, PluginStartingError error,
+                                 long duration) {
+        this.pluginId = pluginId;
+        this.pluginState = pluginState;
+        this.error = error;
+        this.duration = duration;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * @return the state of the plugin after the operation, or {@code null} if the plugin is not loaded
+     */
+    public PluginState getPluginState() {
+        return pluginState;
+    }
+
+    /**
+     * @return the error the operation failed with, or {@code null} if it did not fail
+     */
+    public PluginStartingError getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the milliseconds spent on the operation of this plugin
+     */
+    public long getDuration() {
+        return duration;
+    }
+}
@@ -16,27 +16,35 @@
 package org.javaloong.kongmink.pf4j.spring.boot;
 
 import java.security.cert.Extension;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginConfigurationChangedEvent;
 import org.javaloong.kongmink.pf4j.spring.boot.context.PluginRestartedEvent;
 import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartedEvent;
 import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStoppedEvent;
-import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginRequestMappingHandlerMapping;
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginHandlerMapping;
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
 import org.javaloong.kongmink.pf4j.spring.util.ApplicationContextProvider;
 import org.pf4j.Plugin;
 import org.pf4j.PluginState;
 import org.pf4j.PluginWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBean;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBindingPostProcessor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -58,6 +66,8 @@ import org.springframework.web.bind.annotation.RestController;
  *
  * <p>### And following actions will be taken when plugin is stopped:
  * <ul>
+ * <li>Refuse new requests to plugin controllers, and wait for the in-flight requests
+ *     to complete within the drain timeout of {@link SpringBootPluginManager}
  * <li>Unregister {@link Extension} in main {@link ApplicationContext}
  * <li>Unregister controller beans from main RequestMapping
  * <li>Close plugin {@link ApplicationContext}
@@ -74,14 +84,25 @@ public abstract class SpringBootPlugin extends Plugin {
     private final SpringBootstrap springBootstrap;
     private ApplicationContext applicationContext;
     private final Set<String> injectedExtensionNames = new HashSet<>();
+    private final PluginRequestTracker requestTracker;
+
+    private volatile long startDuration;
+
+    private volatile long stopDuration;
+
+    /**
+     * Whether the configuration can be refreshed, guarded by this plugin.
+     */
+    private boolean running;
 
     public SpringBootPlugin(PluginWrapper wrapper) {
         super(wrapper);
         springBootstrap = createSpringBootstrap();
+        requestTracker = new PluginRequestTracker(wrapper.getPluginId());
     }
 
-    private PluginRequestMappingHandlerMapping getMainRequestMapping() {
-        return (PluginRequestMappingHandlerMapping)
+    private PluginHandlerMapping getMainRequestMapping() {
+        return (PluginHandlerMapping)
                 getMainApplicationContext().getBean("requestMappingHandlerMapping");
     }
 
@@ -98,6 +119,7 @@ public abstract class SpringBootPlugin extends Plugin {
         long startTs = System.currentTimeMillis();
         log.debug("Starting plugin {} ......", getWrapper().getPluginId());
 
+        requestTracker.reset();
         applicationContext = springBootstrap.run();
         getMainRequestMapping().registerControllers(this);
 
@@ -126,14 +148,27 @@ public abstract class SpringBootPlugin extends Plugin {
             applicationContext.publishEvent(new PluginRestartedEvent(applicationContext));
         }
 
-        log.debug("Plugin {} is started in {}ms", getWrapper().getPluginId(), System.currentTimeMillis() - startTs);
+        synchronized (this) {
+            running = true;
+        }
+        startDuration = System.currentTimeMillis() - startTs;
+        log.debug("Plugin {} is started in {}ms", getWrapper().getPluginId(), startDuration);
     }
 
     @Override
     public void stop() {
         if (getWrapper().getPluginState() != PluginState.STARTED) return;
 
+        long stopTs = System.currentTimeMillis();
         log.debug("Stopping plugin {} ......", getWrapper().getPluginId());
+        // waits for a refresh of the configuration in progress, later ones are skipped
+        synchronized (this) {
+            running = false;
+        }
+        if (!requestTracker.drain(getPluginManager().getDrainTimeout(), TimeUnit.MILLISECONDS)) {
+            log.warn("Plugin {} is stopped with {} requests in flight", getWrapper().getPluginId(),
+                    requestTracker.getInFlightRequests());
+        }
         releaseAdditionalResources();
         // unregister Extension beans
         for (String extensionName : injectedExtensionNames) {
@@ -147,7 +182,58 @@ public abstract class SpringBootPlugin extends Plugin {
         injectedExtensionNames.clear();
         ((ConfigurableApplicationContext) applicationContext).close();
 
-        log.debug("Plugin {} is stopped", getWrapper().getPluginId());
+        stopDuration = System.currentTimeMillis() - stopTs;
+        log.debug("Plugin {} is stopped in {}ms", getWrapper().getPluginId(), stopDuration);
+    }
+
+    /**
+     * Refresh the configuration properties of the running plugin from the configuration
+     * repository without restarting it. The plugin configuration property source is
+     * replaced, the {@code @ConfigurationProperties} beans bound through setters are rebound,
+     * and a {@link PluginConfigurationChangedEvent} is published to the plugin application
+     * context. Properties removed from the configuration are back to their defaults once
+     * rebound. Beans bound through their constructor keep their values until the plugin is
+     * restarted. Refreshes are skipped once the plugin is stopping, so that the plugin
+     * application context is not used while being closed.
+     * @return the names of the properties added, changed or removed
+     */
+    public synchronized Set<String> refreshConfiguration() {
+        if (!running || applicationContext == null) {
+            return Collections.emptySet();
+        }
+        ConfigurableApplicationContext context = (ConfigurableApplicationContext) applicationContext;
+        Set<String> changedPropertyNames = springBootstrap.refreshPluginPropertySources(context.getEnvironment());
+        if (changedPropertyNames.isEmpty()) return changedPropertyNames;
+
+        log.debug("Refresh configuration properties {} of plugin {}", changedPropertyNames,
+                getWrapper().getPluginId());
+        rebindConfigurationProperties(context);
+        context.publishEvent(new PluginConfigurationChangedEvent(context, changedPropertyNames));
+        return changedPropertyNames;
+    }
+
+    /**
+     * Rebind the {@code @ConfigurationProperties} beans bound through setters. Binding only
+     * sets the properties present, so a bean is bound onto a fresh instance of its class,
+     * whose properties are then copied to the bean, resetting the properties removed.
+     */
+    static void rebindConfigurationProperties(ConfigurableApplicationContext context) {
+        ConfigurationPropertiesBindingPostProcessor bindingPostProcessor = context
+                .getBeanProvider(ConfigurationPropertiesBindingPostProcessor.class).getIfAvailable();
+        if (bindingPostProcessor == null) return;
+        ConfigurationPropertiesBean.getAll(context).forEach((beanName, bean) -> {
+            if (bean.getBindMethod() != ConfigurationPropertiesBean.BindMethod.JAVA_BEAN) return;
+            Object instance = bean.getInstance();
+            Class<?> type = ClassUtils.getUserClass(instance);
+            if (ClassUtils.hasConstructor(type)) {
+                Object freshInstance = BeanUtils.instantiateClass(type);
+                bindingPostProcessor.postProcessBeforeInitialization(freshInstance, beanName);
+                BeanUtils.copyProperties(freshInstance, instance);
+            } else {
+                // removed properties keep their values without a default constructor
+                bindingPostProcessor.postProcessBeforeInitialization(instance, beanName);
+            }
+        });
     }
 
     public static void releaseRegisteredResources(PluginWrapper plugin,
@@ -166,7 +252,7 @@ public abstract class SpringBootPlugin extends Plugin {
             }
 
             // unregister Controller beans
-            PluginRequestMappingHandlerMapping requestMapping = (PluginRequestMappingHandlerMapping)
+            PluginHandlerMapping requestMapping = (PluginHandlerMapping)
                     mainAppCtx.getBean("requestMappingHandlerMapping");
             Stream.concat(mainAppCtx.getBeansWithAnnotation(Controller.class).values().stream(),
                 mainAppCtx.getBeansWithAnnotation(RestController.class).values().stream())
@@ -186,6 +272,35 @@ public abstract class SpringBootPlugin extends Plugin {
         return (GenericApplicationContext) applicationContext;
     }
 
+    /**
+     * @return the URL path prefix declared by this plugin, or {@code null}
+     * @see SpringBootstrap#getUrlPrefix()
+     */
+    public String getUrlPrefix() {
+        return springBootstrap.getUrlPrefix();
+    }
+
+    /**
+     * @return the tracker of the requests being handled by the controllers of this plugin
+     */
+    public PluginRequestTracker getRequestTracker() {
+        return requestTracker;
+    }
+
+    /**
+     * @return the milliseconds the last start of the plugin took
+     */
+    public long getStartDuration() {
+        return startDuration;
+    }
+
+    /**
+     * @return the milliseconds the last stop of the plugin took
+     */
+    public long getStopDuration() {
+        return stopDuration;
+    }
+
     public SpringBootPluginManager getPluginManager() {
         return (SpringBootPluginManager) getWrapper().getPluginManager();
     }
@@ -16,9 +16,14 @@
 package org.javaloong.kongmink.pf4j.spring.boot;
 
 import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartingError;
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartingErrorListener;
 import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStateChangedEvent;
 import org.javaloong.kongmink.pf4j.spring.boot.env.ConfigurationRepository;
 import org.javaloong.kongmink.pf4j.spring.boot.env.DefaultConfigurationRepository;
+import org.javaloong.kongmink.pf4j.spring.boot.env.LogConfigurationRepository;
+import org.javaloong.kongmink.pf4j.spring.boot.env.PresetPropertySource;
+import org.javaloong.kongmink.pf4j.spring.boot.env.WriteBehindConfigurationRepository;
+import org.javaloong.kongmink.pf4j.spring.util.ExecutorUtils;
 import org.pf4j.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,11 +31,18 @@ import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * PluginManager to hold the main ApplicationContext
@@ -42,14 +54,38 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
 
     private static final Logger log = LoggerFactory.getLogger(SpringBootPluginManager.class);
 
+    /**
+     * The store of plugin configuration properties, {@code files} for a properties file per
+     * plugin, {@code log} for a single log file, or {@code jdbc} for a database table when
+     * {@link #createConfigurationStore()} is overridden with a data source.
+     */
+    public static final String CONFIG_STORE_PROPERTY_NAME = "pf4j.pluginsConfigStore";
+    public static final String LOG_CONFIG_STORE = "log";
+    public static final String JDBC_CONFIG_STORE = "jdbc";
+    public static final String CONFIG_LOG_FILE_NAME = "plugins-config.log";
+    /**
+     * The interval in milliseconds between two flushes of plugin configuration writes, writes
+     * are applied synchronously unless greater than 0.
+     */
+    public static final String CONFIG_FLUSH_INTERVAL_PROPERTY_NAME = "pf4j.pluginsConfigFlushInterval";
+
     private boolean mainApplicationStarted;
     private GenericApplicationContext mainApplicationContext;
-    public Map<String, Object> presetProperties = new HashMap<>();
+    private final Map<String, Object> presetProperties = new HashMap<>();
+    private PresetPropertySource presetPropertySource;
     private boolean autoStartPlugin = true;
     private String[] profiles;
     private PluginRepository pluginRepository;
     private ConfigurationRepository configurationRepository;
-    private final Map<String, PluginStartingError> startingErrors = new HashMap<>();
+    private final Map<String, PluginStartingError> startingErrors = new ConcurrentHashMap<>();
+    private Executor extensionExecutor;
+    private ExecutorService defaultExtensionExecutor;
+    private long drainTimeout = 30000;
+    private boolean configurationRefreshEnabled = true;
+    private int lifecycleParallelism = Runtime.getRuntime().availableProcessors();
+    private final AtomicLong registryVersion = new AtomicLong();
+    private final Map<String, Long> startTimes = new ConcurrentHashMap<>();
+    private final List<PluginStartingErrorListener> startingErrorListeners = new CopyOnWriteArrayList<>();
 
     public SpringBootPluginManager() {
         super();
@@ -74,6 +110,15 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
         return super.getPluginDescriptorFinder();
     }
 
+    /**
+     * Descriptors are cached by plugin file, since they are looked up again and again
+     * to detect new plugin versions.
+     */
+    @Override
+    protected PluginDescriptorFinder createPluginDescriptorFinder() {
+        return new CachingPluginDescriptorFinder(super.createPluginDescriptorFinder());
+    }
+
     @Override
     protected PluginRepository createPluginRepository() {
         this.pluginRepository = super.createPluginRepository();
@@ -85,6 +130,19 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
     }
 
     protected ConfigurationRepository createConfigurationRepository() {
+        ConfigurationRepository repository = createConfigurationStore();
+        long flushInterval = Long.getLong(CONFIG_FLUSH_INTERVAL_PROPERTY_NAME, 0);
+        if (flushInterval > 0) {
+            repository = new WriteBehindConfigurationRepository(repository, flushInterval);
+        }
+        return repository;
+    }
+
+    /**
+     * Create the store of plugin configuration properties, selected by the
+     * {@link #CONFIG_STORE_PROPERTY_NAME} system property.
+     */
+    protected ConfigurationRepository createConfigurationStore() {
         String configDir = System.getProperty(PLUGINS_DIR_CONFIG_PROPERTY_NAME);
         Path configPath = configDir != null
             ? Paths.get(configDir)
@@ -92,6 +150,9 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
             .findFirst()
             .orElseThrow(() -> new IllegalArgumentException("No pluginsRoot configured"));
 
+        if (LOG_CONFIG_STORE.equalsIgnoreCase(System.getProperty(CONFIG_STORE_PROPERTY_NAME))) {
+            return new LogConfigurationRepository(configPath.resolve(CONFIG_LOG_FILE_NAME));
+        }
         return new DefaultConfigurationRepository(configPath);
     }
 
@@ -107,6 +168,66 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
         return autoStartPlugin;
     }
 
+    /**
+     * Set the maximum time a stopping plugin waits for its in-flight requests to complete
+     * before its ApplicationContext is closed.
+     * @param drainTimeout the timeout in milliseconds, 0 to not wait
+     */
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * Set whether changes to the configuration of a started plugin are applied to it at
+     * once, rather than when it is restarted.
+     * @param configurationRefreshEnabled whether to refresh plugin configuration
+     * @see SpringBootPlugin#refreshConfiguration()
+     */
+    public void setConfigurationRefreshEnabled(boolean configurationRefreshEnabled) {
+        this.configurationRefreshEnabled = configurationRefreshEnabled;
+    }
+
+    public boolean isConfigurationRefreshEnabled() {
+        return configurationRefreshEnabled;
+    }
+
+    /**
+     * Refresh the configuration properties of a started plugin.
+     * @param pluginId the id of the plugin, case insensitive
+     * @return the names of the properties added, changed or removed
+     */
+    public Set<String> refreshPluginConfiguration(String pluginId) {
+        PluginWrapper plugin = getPlugin(pluginId);
+        if (plugin == null) {
+            // plugin ids might be lower cased by the configuration repository
+            plugin = getPlugins().stream().filter(p -> p.getPluginId().equalsIgnoreCase(pluginId))
+                    .findFirst().orElse(null);
+        }
+        if (plugin == null || plugin.getPluginState() != PluginState.STARTED
+                || !(plugin.getPlugin() instanceof SpringBootPlugin)) {
+            return Collections.emptySet();
+        }
+        return ((SpringBootPlugin) plugin.getPlugin()).refreshConfiguration();
+    }
+
+    /**
+     * Set the maximum number of plugins started or stopped concurrently by a bulk operation.
+     * @param lifecycleParallelism the parallelism, {@code 1} to operate on plugins one by one
+     * @see #applyToPlugins(PluginLifecycleJob.Operation, Collection)
+     */
+    public void setLifecycleParallelism(int lifecycleParallelism) {
+        if (lifecycleParallelism < 1) throw new IllegalArgumentException("lifecycleParallelism must be at least 1");
+        this.lifecycleParallelism = lifecycleParallelism;
+    }
+
+    public int getLifecycleParallelism() {
+        return lifecycleParallelism;
+    }
+
     public void setMainApplicationStarted(boolean mainApplicationStarted) {
         this.mainApplicationStarted = mainApplicationStarted;
     }
@@ -119,16 +240,29 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
         return profiles;
     }
 
-    public void presetProperties(Map<String, Object> presetProperties) {
+    public synchronized void presetProperties(Map<String, Object> presetProperties) {
         this.presetProperties.putAll(presetProperties);
+        this.presetPropertySource = null;
     }
 
-    public void presetProperties(String name, Object value) {
+    public synchronized void presetProperties(String name, Object value) {
         this.presetProperties.put(name, value);
+        this.presetPropertySource = null;
     }
 
-    public Map<String, Object> getPresetProperties() {
-        return presetProperties;
+    public synchronized Map<String, Object> getPresetProperties() {
+        return Collections.unmodifiableMap(new HashMap<>(presetProperties));
+    }
+
+    /**
+     * Get the preset properties as a property source shared by all plugin environments,
+     * created again only when the preset properties change.
+     */
+    public synchronized PresetPropertySource getPresetPropertySource() {
+        if (presetPropertySource == null) {
+            presetPropertySource = new PresetPropertySource(presetProperties);
+        }
+        return presetPropertySource;
     }
 
     public ApplicationContext getMainApplicationContext() {
@@ -147,16 +281,206 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
         loadPlugins();
     }
 
+    @PreDestroy
+    public void destroy() {
+        synchronized (this) {
+            if (defaultExtensionExecutor != null) {
+                defaultExtensionExecutor.shutdownNow();
+                defaultExtensionExecutor = null;
+            }
+        }
+        if (configurationRepository instanceof Closeable) {
+            try {
+                ((Closeable) configurationRepository).close();
+            } catch (IOException e) {
+                log.warn("Failed to close configuration repository", e);
+            }
+        }
+    }
+
     public PluginStartingError getPluginStartingError(String pluginId) {
         return startingErrors.get(pluginId);
     }
 
+    public void addPluginStartingErrorListener(PluginStartingErrorListener listener) {
+        startingErrorListeners.add(listener);
+    }
+
+    public void removePluginStartingErrorListener(PluginStartingErrorListener listener) {
+        startingErrorListeners.remove(listener);
+    }
+
+    private void addStartingError(String pluginId, Exception e) {
+        PluginStartingError startingError = new PluginStartingError(pluginId, e.getMessage(), e.toString());
+        startingErrors.put(pluginId, startingError);
+        registryVersion.incrementAndGet();
+        for (PluginStartingErrorListener listener : startingErrorListeners) {
+            listener.pluginStartingFailed(startingError);
+        }
+    }
+
+    /**
+     * Get the version of the plugin registry, which is increased whenever a plugin is loaded,
+     * unloaded, changes state or fails to start or stop. Listings of the plugins can be
+     * validated against it.
+     * @return the registry version
+     */
+    public long getRegistryVersion() {
+        return registryVersion.get();
+    }
+
+    /**
+     * @param pluginId the id of the plugin
+     * @return the time the plugin was started in epoch milliseconds, or {@code null} if not started
+     */
+    public Long getPluginStartTime(String pluginId) {
+        return startTimes.get(pluginId);
+    }
+
+    @Override
+    protected PluginWrapper loadPluginFromPath(Path pluginPath) {
+        PluginWrapper pluginWrapper = super.loadPluginFromPath(pluginPath);
+        registryVersion.incrementAndGet();
+        return pluginWrapper;
+    }
+
+    @Override
+    public boolean unloadPlugin(String pluginId) {
+        boolean unloaded = super.unloadPlugin(pluginId);
+        registryVersion.incrementAndGet();
+        return unloaded;
+    }
+
+    @Override
+    protected synchronized void firePluginStateEvent(PluginStateEvent event) {
+        String pluginId = event.getPlugin().getPluginId();
+        if (event.getPluginState() == PluginState.STARTED) {
+            startTimes.put(pluginId, System.currentTimeMillis());
+        } else {
+            startTimes.remove(pluginId);
+        }
+        registryVersion.incrementAndGet();
+        super.firePluginStateEvent(event);
+    }
+
+    //*************************************************************************
+    // Extension Invocation
+    //*************************************************************************
+
+    /**
+     * Set the executor used by {@link #invokeExtensions(Class, Function, long, TimeUnit)}.
+     * If not set, extensions run on virtual threads where the JDK supports them,
+     * otherwise on a bounded pool of platform threads.
+     * @param extensionExecutor the executor
+     */
+    public void setExtensionExecutor(Executor extensionExecutor) {
+        this.extensionExecutor = extensionExecutor;
+    }
+
+    public Executor getExtensionExecutor() {
+        if (extensionExecutor != null) return extensionExecutor;
+        synchronized (this) {
+            if (defaultExtensionExecutor == null) {
+                defaultExtensionExecutor = ExecutorUtils.newExecutorService("pf4j-extension-",
+                        Runtime.getRuntime().availableProcessors() * 2);
+            }
+            return defaultExtensionExecutor;
+        }
+    }
+
+    /**
+     * Invoke a function on all extensions of the given extension point concurrently.
+     * A failing or slow extension does not affect the others: its error or timeout is
+     * reported in its own {@link ExtensionResult}. Results are returned in the order of
+     * {@link #getExtensions(Class)}.
+     *
+     * @param type the extension point
+     * @param function the function to invoke on each extension
+     * @param timeout the time each extension is given, measured from the invocation start
+     * @param unit the unit of the timeout
+     * @param <T> the type of the extension point
+     * @param <R> the type of the function result
+     * @return the result of each extension
+     */
+    public <T, R> List<ExtensionResult<R>> invokeExtensions(Class<T> type, Function<? super T, ? extends R> function,
+                                                            long timeout, TimeUnit unit) {
+        List<T> extensions = getExtensions(type);
+        if (extensions.isEmpty()) return Collections.emptyList();
+
+        Executor executor = getExtensionExecutor();
+        long startTs = System.nanoTime();
+        long[] elapsed = new long[extensions.size()];
+        RejectedExecutionException[] rejections = new RejectedExecutionException[extensions.size()];
+        List<FutureTask<R>> tasks = new ArrayList<>(extensions.size());
+        for (int i = 0; i < extensions.size(); i++) {
+            T extension = extensions.get(i);
+            int index = i;
+            FutureTask<R> task = new FutureTask<>(() -> {
+                long ts = System.nanoTime();
+                try {
+                    return function.apply(extension);
+                } finally {
+                    elapsed[index] = System.nanoTime() - ts;
+                }
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejections[i] = e;
+                task.cancel(false);
+            }
+        }
+
+        long deadline = startTs + unit.toNanos(timeout);
+        List<ExtensionResult<R>> results = new ArrayList<>(extensions.size());
+        for (int i = 0; i < extensions.size(); i++) {
+            T extension = extensions.get(i);
+            FutureTask<R> task = tasks.get(i);
+            PluginWrapper pluginWrapper = whichPlugin(extension.getClass());
+            String pluginId = pluginWrapper != null ? pluginWrapper.getPluginId() : null;
+            ExtensionResult<R> result;
+            if (rejections[i] != null) {
+                result = new ExtensionResult<>(extension, pluginId, null, rejections[i], false, 0L);
+            } else try {
+                R value = task.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                result = new ExtensionResult<>(extension, pluginId, value, null, false, elapsed[i]);
+            } catch (TimeoutException e) {
+                task.cancel(true);
+                result = new ExtensionResult<>(extension, pluginId, null, null, true,
+                        System.nanoTime() - startTs);
+            } catch (ExecutionException e) {
+                result = new ExtensionResult<>(extension, pluginId, null, e.getCause(), false, elapsed[i]);
+            } catch (CancellationException e) {
+                result = new ExtensionResult<>(extension, pluginId, null, e, false, 0L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+                result = new ExtensionResult<>(extension, pluginId, null, e, false,
+                        System.nanoTime() - startTs);
+            }
+            if (result.isTimedOut()) {
+                log.warn("Extension '{}' of '{}' timed out after {}ms", extension.getClass().getName(),
+                        type.getName(), result.getElapsed(TimeUnit.MILLISECONDS));
+            } else if (result.getError() != null) {
+                log.warn("Extension '{}' of '{}' failed: {}", extension.getClass().getName(),
+                        type.getName(), result.getError().toString());
+            } else if (log.isDebugEnabled()) {
+                log.debug("Extension '{}' of '{}' completed in {}ms", extension.getClass().getName(),
+                        type.getName(), result.getElapsed(TimeUnit.MILLISECONDS));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
     //*************************************************************************
     // Plugin State Manipulation
     //*************************************************************************
 
     private void doStartPlugins() {
         startingErrors.clear();
+        registryVersion.incrementAndGet();
         long ts = System.currentTimeMillis();
 
         for (PluginWrapper pluginWrapper : resolvedPlugins) {
@@ -170,8 +494,7 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
                     firePluginStateEvent(new PluginStateEvent(this, pluginWrapper, pluginState));
                 } catch (Exception e) {
                     log.error(e.getMessage(), e);
-                    startingErrors.put(pluginWrapper.getPluginId(), new PluginStartingError(
-                            pluginWrapper.getPluginId(), e.getMessage(), e.toString()));
+                    addStartingError(pluginWrapper.getPluginId(), e);
                     SpringBootPlugin.releaseRegisteredResources(pluginWrapper, mainApplicationContext);
                 }
             }
@@ -183,6 +506,7 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
 
     private void doStopPlugins() {
         startingErrors.clear();
+        registryVersion.incrementAndGet();
         // stop started plugins in reverse order
         Collections.reverse(startedPlugins);
         Iterator<PluginWrapper> itr = startedPlugins.iterator();
@@ -199,8 +523,7 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
                     firePluginStateEvent(new PluginStateEvent(this, pluginWrapper, pluginState));
                 } catch (PluginRuntimeException e) {
                     log.error(e.getMessage(), e);
-                    startingErrors.put(pluginWrapper.getPluginId(), new PluginStartingError(
-                            pluginWrapper.getPluginId(), e.getMessage(), e.toString()));
+                    addStartingError(pluginWrapper.getPluginId(), e);
                 }
             }
         }
@@ -217,8 +540,7 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
             return pluginState;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            startingErrors.put(plugin.getPluginId(), new PluginStartingError(
-                    plugin.getPluginId(), e.getMessage(), e.toString()));
+            addStartingError(plugin.getPluginId(), e);
             SpringBootPlugin.releaseRegisteredResources(plugin, mainApplicationContext);
         }
         return plugin.getPluginState();
@@ -235,8 +557,7 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
             return pluginState;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            startingErrors.put(plugin.getPluginId(), new PluginStartingError(
-                    plugin.getPluginId(), e.getMessage(), e.toString()));
+            addStartingError(plugin.getPluginId(), e);
         }
         return plugin.getPluginState();
     }
@@ -312,11 +633,212 @@ public class SpringBootPluginManager extends DefaultPluginManager implements App
         return doStartPlugin(pluginId, true);
     }
 
+    /**
+     * Apply a lifecycle operation to several plugins at once, publishing a single
+     * {@link PluginStateChangedEvent} when done.
+     *
+     * <p>Plugins are grouped by their depth in the dependency graph, and the plugins of a
+     * group, which can not depend on each other, are operated on concurrently. Groups are
+     * processed dependencies first, or dependents first when stopping. Stopping, restarting
+     * or reloading a plugin stops its started dependents too, restarting and reloading start
+     * them again. Starting a plugin starts its dependencies too.
+     * @param operation {@code START}, {@code STOP}, {@code RESTART} or {@code RELOAD}
+     * @param pluginIds the ids of the plugins
+     * @return the result of each requested plugin, in request order
+     */
+    public List<PluginLifecycleResult> applyToPlugins(PluginLifecycleJob.Operation operation,
+                                                      Collection<String> pluginIds) {
+        if (operation != PluginLifecycleJob.Operation.START && operation != PluginLifecycleJob.Operation.STOP
+                && operation != PluginLifecycleJob.Operation.RESTART && operation != PluginLifecycleJob.Operation.RELOAD) {
+            throw new IllegalArgumentException("Operation " + operation + " does not apply to single plugins");
+        }
+        Set<String> requestedIds = new LinkedHashSet<>(pluginIds);
+        Map<String, PluginStartingError> previousErrors = new HashMap<>(startingErrors);
+        Map<String, Long> durations = new ConcurrentHashMap<>();
+        Map<String, PluginLifecycleResult> results = new HashMap<>();
+        for (String pluginId : requestedIds) {
+            if (getPlugin(pluginId) == null) {
+                results.put(pluginId, new PluginLifecycleResult(pluginId, null, new PluginStartingError(
+                        pluginId, "Unknown plugin '" + pluginId + "'", null), 0));
+            }
+        }
+        Set<String> pluginIdsToOperate = new LinkedHashSet<>(requestedIds);
+        pluginIdsToOperate.removeAll(results.keySet());
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(lifecycleParallelism, getPlugins().size())),
+                new CustomizableThreadFactory("pf4j-lifecycle-bulk-"));
+        try {
+            if (operation == PluginLifecycleJob.Operation.START) {
+                Set<String> toStart = new LinkedHashSet<>();
+                for (String pluginId : pluginIdsToOperate) {
+                    collectPlugins(pluginId, this::getDependencyIds, PluginState.STARTED, false, toStart);
+                }
+                applyInWaves(toStart, false, executor, durations, pluginId -> doStartPlugin(pluginId, false));
+            } else {
+                // dependents are stopped first, and started again afterwards unless stopping
+                Set<String> toStop = new LinkedHashSet<>();
+                for (String pluginId : pluginIdsToOperate) {
+                    collectPlugins(pluginId, this::getDependentIds, PluginState.STARTED, true, toStop);
+                }
+                Set<String> toStart = new LinkedHashSet<>(toStop);
+                toStart.addAll(pluginIdsToOperate);
+                applyInWaves(toStop, true, executor, durations, pluginId -> doStopPlugin(pluginId, false));
+                if (operation == PluginLifecycleJob.Operation.RELOAD) {
+                    // loading resolves every plugin, it can not run concurrently
+                    for (String pluginId : pluginIdsToOperate) {
+                        long startTime = System.currentTimeMillis();
+                        reloadStoppedPlugin(pluginId);
+                        durations.merge(pluginId, System.currentTimeMillis() - startTime, Long::sum);
+                    }
+                }
+                if (operation != PluginLifecycleJob.Operation.STOP) {
+                    toStart.removeIf(pluginId -> getPlugin(pluginId) == null);
+                    applyInWaves(toStart, false, executor, durations, pluginId -> doStartPlugin(pluginId, false));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        mainApplicationContext.publishEvent(new PluginStateChangedEvent(mainApplicationContext));
+
+        List<PluginLifecycleResult> orderedResults = new ArrayList<>(requestedIds.size());
+        for (String pluginId : requestedIds) {
+            PluginLifecycleResult result = results.get(pluginId);
+            if (result == null) {
+                PluginWrapper plugin = getPlugin(pluginId);
+                PluginStartingError error = startingErrors.get(pluginId);
+                if (error != null && error == previousErrors.get(pluginId)) error = null;
+                if (plugin == null && error == null) {
+                    error = new PluginStartingError(pluginId, "Plugin '" + pluginId + "' could not be reloaded", null);
+                }
+                result = new PluginLifecycleResult(pluginId, plugin != null ? plugin.getPluginState() : null,
+                        error, durations.getOrDefault(pluginId, 0L));
+            }
+            orderedResults.add(result);
+        }
+        return orderedResults;
+    }
+
+    private void reloadStoppedPlugin(String pluginId) {
+        PluginWrapper plugin = getPlugin(pluginId);
+        unloadPlugin(pluginId, false);
+        try {
+            loadPlugin(plugin.getPluginPath());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            addStartingError(pluginId, e);
+        }
+    }
+
+    /**
+     * Apply an operation to plugins, concurrently for the plugins at the same depth in the
+     * dependency graph. When starting, a plugin whose dependencies did not start fails
+     * without being submitted, starting it would start those dependencies again from every
+     * dependent concurrently.
+     */
+    private void applyInWaves(Set<String> pluginIds, boolean dependentsFirst, ExecutorService executor,
+                              Map<String, Long> durations, Function<String, PluginState> action) {
+        if (pluginIds.isEmpty()) return;
+        Map<String, Integer> depths = new HashMap<>();
+        TreeMap<Integer, List<String>> waves = new TreeMap<>();
+        for (String pluginId : pluginIds) {
+            waves.computeIfAbsent(getDependencyDepth(pluginId, depths), k -> new ArrayList<>()).add(pluginId);
+        }
+        for (List<String> wave : dependentsFirst ? waves.descendingMap().values() : waves.values()) {
+            List<Callable<PluginState>> tasks = new ArrayList<>(wave.size());
+            for (String pluginId : wave) {
+                if (!dependentsFirst) {
+                    String dependencyId = getNotStartedDependencyId(pluginId);
+                    if (dependencyId != null) {
+                        addStartingError(pluginId, new PluginRuntimeException(
+                                "Dependency '{}' of plugin '{}' is not started", dependencyId, pluginId));
+                        continue;
+                    }
+                }
+                tasks.add(() -> {
+                    long startTime = System.currentTimeMillis();
+                    try {
+                        return action.apply(pluginId);
+                    } finally {
+                        durations.merge(pluginId, System.currentTimeMillis() - startTime, Long::sum);
+                    }
+                });
+            }
+            try {
+                executor.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PluginRuntimeException(e, "Interrupted while applying lifecycle operation to {}", wave);
+            }
+        }
+    }
+
+    private String getNotStartedDependencyId(String pluginId) {
+        for (String dependencyId : getDependencyIds(pluginId)) {
+            PluginWrapper dependency = getPlugin(dependencyId);
+            if (dependency == null || dependency.getPluginState() != PluginState.STARTED) return dependencyId;
+        }
+        return null;
+    }
+
+    private int getDependencyDepth(String pluginId, Map<String, Integer> depths) {
+        Integer depth = depths.get(pluginId);
+        if (depth != null) return depth;
+        depth = 0;
+        for (String dependencyId : getDependencyIds(pluginId)) {
+            depth = Math.max(depth, getDependencyDepth(dependencyId, depths) + 1);
+        }
+        depths.put(pluginId, depth);
+        return depth;
+    }
+
+    /**
+     * Collect a plugin and the plugins it reaches, skipping plugins whose state matches
+     * {@code inState} or not, along with the plugins reached through them.
+     */
+    private void collectPlugins(String pluginId, Function<String, List<String>> neighbors, PluginState state,
+                                boolean inState, Set<String> collected) {
+        PluginWrapper plugin = getPlugin(pluginId);
+        if (plugin == null || (plugin.getPluginState() == state) != inState || !collected.add(pluginId)) return;
+        for (String neighborId : neighbors.apply(pluginId)) {
+            collectPlugins(neighborId, neighbors, state, inState, collected);
+        }
+    }
+
+    private List<String> getDependencyIds(String pluginId) {
+        PluginWrapper plugin = getPlugin(pluginId);
+        if (plugin == null || plugin.getDescriptor().getDependencies() == null) return Collections.emptyList();
+        List<String> dependencyIds = new ArrayList<>();
+        for (PluginDependency dependency : plugin.getDescriptor().getDependencies()) {
+            if (getPlugin(dependency.getPluginId()) != null) dependencyIds.add(dependency.getPluginId());
+        }
+        return dependencyIds;
+    }
+
+    private List<String> getDependentIds(String pluginId) {
+        List<String> dependentIds = new ArrayList<>();
+        for (PluginWrapper plugin : getPlugins()) {
+            if (getDependencyIds(plugin.getPluginId()).contains(pluginId)) dependentIds.add(plugin.getPluginId());
+        }
+        return dependentIds;
+    }
+
     @Override
     protected void initialize() {
         super.initialize();
+        // bulk operations start and stop plugins concurrently
+        startedPlugins = Collections.synchronizedList(startedPlugins);
 
         this.configurationRepository = createConfigurationRepository();
+        this.configurationRepository.addChangeListener(pluginId -> {
+            if (!configurationRefreshEnabled) return;
+            try {
+                refreshPluginConfiguration(pluginId);
+            } catch (Exception e) {
+                log.error("Failed to refresh configuration of plugin '{}'", pluginId, e);
+            }
+        });
     }
 
 }
@@ -35,6 +35,8 @@ import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ReflectionUtils;
@@ -203,6 +205,8 @@ public class SpringBootstrap extends SpringApplication {
             "org.springframework.cloud.context.restart.RestartListener",
     };
 
+    public static final String PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME = "Plugin Configurations";
+
     private final SpringBootPlugin plugin;
 
     private final ApplicationContext mainApplicationContext;
@@ -223,6 +227,8 @@ public class SpringBootstrap extends SpringApplication {
 
     private boolean pluginConfigEnabled;
 
+    private String urlPrefix;
+
     /**
      * Constructor should be the only thing need to take care for this Class.
      * Generally new an instance and {@link #run(String...)} it
@@ -236,9 +242,6 @@ public class SpringBootstrap extends SpringApplication {
         this.plugin = plugin;
         this.mainApplicationContext = plugin.getMainApplicationContext();
         this.pluginClassLoader = plugin.getWrapper().getPluginClassLoader();
-        Map<String, Object> presetProperties = ((SpringBootPluginManager)
-                plugin.getWrapper().getPluginManager()).getPresetProperties();
-        if (presetProperties != null) this.presetProperties.putAll(presetProperties);
         this.presetProperties.put(PROPERTY_NAME_AUTOCONFIGURE_EXCLUDE,
                 getExcludeConfigurations());
     }
@@ -281,10 +284,12 @@ public class SpringBootstrap extends SpringApplication {
     protected void configurePropertySources(ConfigurableEnvironment environment,
                                             String[] args) {
         super.configurePropertySources(environment, args);
-        String[] profiles = ((SpringBootPluginManager)
-                plugin.getWrapper().getPluginManager()).getProfiles();
+        SpringBootPluginManager pluginManager = (SpringBootPluginManager) plugin.getWrapper().getPluginManager();
+        String[] profiles = pluginManager.getProfiles();
         if (!ArrayUtils.isEmpty(profiles)) environment.setActiveProfiles(profiles);
         environment.getPropertySources().addLast(new ExcludeConfigurations());
+        // shared by all plugins, overridden by the preset properties of this plugin
+        environment.getPropertySources().addLast(pluginManager.getPresetPropertySource());
     }
 
     @Override
@@ -311,6 +316,8 @@ public class SpringBootstrap extends SpringApplication {
             }
         } while (pluginOnlyResourcesProp != null);
 
+        urlPrefix = getProperties(environment, "urlPrefix", String.class, null);
+
         pluginConfigEnabled = getProperties(environment, "pluginConfigEnabled", Boolean.class, false);
         // load external plugin configuration properties
         if (pluginConfigEnabled) {
@@ -325,8 +332,58 @@ public class SpringBootstrap extends SpringApplication {
         Map<String, Object> pluginProperties = configurationRepository.get(pluginId);
         if(!pluginProperties.isEmpty()) {
             environment.getPropertySources().addFirst(new MapPropertySource(
-                "Plugin Configurations", pluginProperties));
+                PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME, pluginProperties));
+        }
+    }
+
+    /**
+     * Replace the plugin configuration property source of the running plugin with the
+     * current properties of the configuration repository.
+     * @param environment the environment of the plugin application context
+     * @return the names of the properties added, changed or removed
+     */
+    protected Set<String> refreshPluginPropertySources(ConfigurableEnvironment environment) {
+        if (!pluginConfigEnabled) return Collections.emptySet();
+
+        String pluginId = plugin.getWrapper().getPluginId();
+        ConfigurationRepository configurationRepository = ((SpringBootPluginManager)
+            plugin.getWrapper().getPluginManager()).getConfigurationRepository();
+        Map<String, Object> pluginProperties = configurationRepository.get(pluginId);
+        MutablePropertySources propertySources = environment.getPropertySources();
+        PropertySource<?> propertySource = propertySources.get(PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME);
+        Map<String, Object> currentProperties = propertySource instanceof MapPropertySource
+            ? ((MapPropertySource) propertySource).getSource() : Collections.emptyMap();
+
+        Set<String> changedPropertyNames = new HashSet<>();
+        for (Map.Entry<String, Object> entry : pluginProperties.entrySet()) {
+            if (!Objects.equals(entry.getValue(), currentProperties.get(entry.getKey()))) {
+                changedPropertyNames.add(entry.getKey());
+            }
+        }
+        for (String name : currentProperties.keySet()) {
+            if (!pluginProperties.containsKey(name)) changedPropertyNames.add(name);
         }
+        if (changedPropertyNames.isEmpty()) return changedPropertyNames;
+
+        if (pluginProperties.isEmpty()) {
+            propertySources.remove(PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME);
+        } else if (propertySource != null) {
+            propertySources.replace(PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME, new MapPropertySource(
+                PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME, pluginProperties));
+        } else {
+            propertySources.addFirst(new MapPropertySource(
+                PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME, pluginProperties));
+        }
+        return changedPropertyNames;
+    }
+
+    /**
+     * URL path prefix owned by this plugin's controllers, bound from
+     * {@code pf4j-plugin.url-prefix} once the application is run.
+     * @return the url prefix, or {@code null} if not declared
+     */
+    public String getUrlPrefix() {
+        return urlPrefix;
     }
 
     /**
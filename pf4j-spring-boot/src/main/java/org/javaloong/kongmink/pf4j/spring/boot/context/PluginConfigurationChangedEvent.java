@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.context;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * This event will be published to <b>plugin application context</b> once the configuration
+ * properties of the running plugin are refreshed, after its {@code @ConfigurationProperties}
+ * beans are rebound. Beans depending on configuration in other ways, such as {@code @Value}
+ * fields, can listen to it to pick up the changes.
+ * 
+ * @author Xu Cheng
+ */
+public class PluginConfigurationChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = -2046915329471650297L;
+
+    private final Set<String> changedPropertyNames;
+
+    public PluginConfigurationChangedEvent(ApplicationContext pluginApplicationContext,
+                                           Set<String> changedPropertyNames) {
+        super(pluginApplicationContext);
+        this.changedPropertyNames = Collections.unmodifiableSet(changedPropertyNames);
+    }
+
+    /**
+     * @return the names of the properties added, changed or removed
+     */
+    public Set<String> getChangedPropertyNames() {
+        return changedPropertyNames;
+    }
+}
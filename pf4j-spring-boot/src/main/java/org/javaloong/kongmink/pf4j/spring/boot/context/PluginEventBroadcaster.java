@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.javaloong.kongmink.pf4j.spring.boot.SpringBootPlugin;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Record plugin state changes and starting errors as {@link PluginLifecycleEvent}s, and
+ * deliver them to subscribers as they happen.
+ *
+ * <p>The latest events are kept in a backlog of bounded size, so that a subscriber can
+ * resume from the sequence number of the last event it has seen. Each subscriber has its
+ * own queue of events, delivered in sequence order on the delivery executor, so that
+ * publishing never waits for a subscriber. A subscriber falling behind is cancelled once its
+ * queue exceeds the backlog size, and notified of it, like a failing subscriber.
+ *
+ * @author Xu Cheng
+ */
+public class PluginEventBroadcaster implements PluginStateListener, PluginStartingErrorListener, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginEventBroadcaster.class);
+
+    private final PluginLifecycleEvent[] backlog;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    private final Executor deliveryExecutor;
+
+    private final ExecutorService defaultDeliveryExecutor;
+
+    private long lastSequence;
+
+    /**
+     * @param backlogSize the maximum number of events kept for subscribers to resume from
+     */
+    public PluginEventBroadcaster(int backlogSize) {
+        this(backlogSize, null);
+    }
+
+    /**
+     * @param backlogSize the maximum number of events kept for subscribers to resume from
+     * @param deliveryExecutor the executor delivering events to subscribers, one task per
+     * subscriber at a time, or {@code null} for a thread pool of the broadcaster
+     */
+    public PluginEventBroadcaster(int backlogSize, Executor deliveryExecutor) {
+        Assert.isTrue(backlogSize > 0, "backlogSize must be greater than 0");
+        this.backlog = new PluginLifecycleEvent[backlogSize];
+        if (deliveryExecutor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pf4j-events-");
+            threadFactory.setDaemon(true);
+            this.defaultDeliveryExecutor = Executors.newCachedThreadPool(threadFactory);
+            this.deliveryExecutor = defaultDeliveryExecutor;
+        } else {
+            this.defaultDeliveryExecutor = null;
+            this.deliveryExecutor = deliveryExecutor;
+        }
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        PluginWrapper plugin = event.getPlugin();
+        PluginState pluginState = event.getPluginState();
+        Long duration = null;
+        if (plugin.getPlugin() instanceof SpringBootPlugin) {
+            SpringBootPlugin springBootPlugin = (SpringBootPlugin) plugin.getPlugin();
+            if (pluginState == PluginState.STARTED) {
+                duration = springBootPlugin.getStartDuration();
+            } else if (event.getOldState() == PluginState.STARTED) {
+                duration = springBootPlugin.getStopDuration();
+            }
+        }
+        publish(PluginLifecycleEvent.Type.STATE_CHANGED, plugin.getPluginId(), event.getOldState(),
+                pluginState, duration, null);
+    }
+
+    @Override
+    public void pluginStartingFailed(PluginStartingError startingError) {
+        publish(PluginLifecycleEvent.Type.STARTING_ERROR, startingError.getPluginId(), null, null, null,
+                startingError);
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public int getBacklogSize() {
+        return backlog.length;
+    }
+
+    /**
+     * Get the events of the backlog following a sequence number.
+     * @param afterSequence the sequence number of the last event seen, {@code 0} for all
+     * @return the events in sequence order
+     */
+    public synchronized List<PluginLifecycleEvent> getEvents(long afterSequence) {
+        long from = Math.max(afterSequence + 1, lastSequence - backlog.length + 1);
+        if (from > lastSequence) return Collections.emptyList();
+        List<PluginLifecycleEvent> events = new ArrayList<>((int) (lastSequence - from + 1));
+        for (long sequence = from; sequence <= lastSequence; sequence++) {
+            events.add(backlog[(int) (sequence % backlog.length)]);
+        }
+        return events;
+    }
+
+    /**
+     * Subscribe to the events following a sequence number, the backlogged events are
+     * delivered first.
+     * @param afterSequence the sequence number of the last event seen, {@code 0} for all
+     * @param subscriber the subscriber
+     * @return the subscription
+     */
+    public Subscription subscribe(long afterSequence, Subscriber subscriber) {
+        Assert.notNull(subscriber, "subscriber must not be null");
+        Subscription subscription;
+        synchronized (this) {
+            List<PluginLifecycleEvent> events = getEvents(afterSequence);
+            // a sequence number ahead of ours was issued before a restart
+            boolean complete = afterSequence >= lastSequence - backlog.length && afterSequence <= lastSequence;
+            subscription = new Subscription(subscriber, complete);
+            subscription.queue.addAll(events);
+            subscriptions.add(subscription);
+        }
+        subscription.deliver();
+        return subscription;
+    }
+
+    private void publish(PluginLifecycleEvent.Type type, String pluginId, PluginState oldState,
+                         PluginState pluginState, Long duration, PluginStartingError error) {
+        List<Subscription> targets;
+        synchronized (this) {
+            PluginLifecycleEvent event = new PluginLifecycleEvent(++lastSequence, type, pluginId, oldState,
+                    pluginState, duration, error);
+            backlog[(int) (event.getSequence() % backlog.length)] = event;
+            if (subscriptions.isEmpty()) return;
+            targets = new ArrayList<>(subscriptions);
+            for (Subscription subscription : targets) {
+                subscription.enqueue(event);
+            }
+        }
+        for (Subscription subscription : targets) {
+            subscription.deliver();
+        }
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    @Override
+    public void destroy() {
+        List<Subscription> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(subscriptions);
+        }
+        for (Subscription subscription : cancelled) {
+            subscription.cancelAndNotify();
+        }
+        if (defaultDeliveryExecutor != null) {
+            defaultDeliveryExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Receiver of plugin lifecycle events.
+     */
+    @FunctionalInterface
+    public interface Subscriber {
+
+        void onEvent(PluginLifecycleEvent event) throws Exception;
+
+        /**
+         * Called before any event if events following the requested sequence number are
+         * no longer in the backlog, the subscriber should then reload the plugin states.
+         */
+        default void onBacklogIncomplete() throws Exception {
+        }
+
+        /**
+         * Called once if the subscription is cancelled by the broadcaster, because the
+         * subscriber fell behind, failed, or events could no longer be delivered.
+         */
+        default void onCancelled() {
+        }
+    }
+
+    public class Subscription {
+
+        private final Subscriber subscriber;
+
+        private final boolean backlogComplete;
+
+        private final Queue<PluginLifecycleEvent> queue = new ArrayDeque<>();
+
+        private boolean delivering;
+
+        private boolean incompleteNotified;
+
+        private volatile boolean cancelled;
+
+        private final AtomicBoolean cancelNotified = new AtomicBoolean();
+
+        private Subscription(Subscriber subscriber, boolean backlogComplete) {
+            this.subscriber = subscriber;
+            this.backlogComplete = backlogComplete;
+        }
+
+        /**
+         * @return false if events following the requested sequence number were dropped
+         * from the backlog before subscribing, or the sequence number is unknown
+         */
+        public boolean isBacklogComplete() {
+            return backlogComplete;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+            synchronized (queue) {
+                queue.clear();
+            }
+        }
+
+        private void cancelAndNotify() {
+            boolean wasCancelled = cancelled;
+            cancel();
+            // not notified of a cancellation of its own
+            if (wasCancelled || !cancelNotified.compareAndSet(false, true)) return;
+            try {
+                subscriber.onCancelled();
+            } catch (RuntimeException e) {
+                log.debug("Failed to notify a plugin event subscriber of its cancellation", e);
+            }
+        }
+
+        private void enqueue(PluginLifecycleEvent event) {
+            synchronized (queue) {
+                if (queue.size() < backlog.length) {
+                    queue.add(event);
+                    return;
+                }
+            }
+            log.warn("Cancel the subscription of a slow plugin event subscriber");
+            cancelAndNotify();
+        }
+
+        private void deliver() {
+            if (cancelled) {
+                remove(this);
+                return;
+            }
+            synchronized (queue) {
+                // the task delivering keeps on until the queue is empty
+                if (delivering) return;
+                delivering = true;
+            }
+            try {
+                deliveryExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                log.debug("Cancel the subscription of a plugin event subscriber, delivery was rejected", e);
+                synchronized (queue) {
+                    delivering = false;
+                }
+                cancelAndNotify();
+            }
+        }
+
+        private void drain() {
+            if (!backlogComplete && !incompleteNotified) {
+                incompleteNotified = true;
+                try {
+                    subscriber.onBacklogIncomplete();
+                } catch (Exception e) {
+                    log.debug("Cancel the subscription of a failing plugin event subscriber", e);
+                    cancelAndNotify();
+                }
+            }
+            while (true) {
+                PluginLifecycleEvent event;
+                synchronized (queue) {
+                    event = cancelled ? null : queue.poll();
+                    if (event == null) {
+                        delivering = false;
+                        break;
+                    }
+                }
+                try {
+                    subscriber.onEvent(event);
+                } catch (Exception e) {
+                    log.debug("Cancel the subscription of a failing plugin event subscriber", e);
+                    cancelAndNotify();
+                }
+            }
+            if (cancelled) remove(this);
+        }
+    }
+}
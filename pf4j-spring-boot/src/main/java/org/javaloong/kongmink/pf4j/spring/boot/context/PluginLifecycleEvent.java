@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.context;
+
+import org.pf4j.PluginState;
+
+/**
+ * A plugin state change or starting error recorded by the {@link PluginEventBroadcaster}.
+ *
+ * @author Xu Cheng
+ */
+public class PluginLifecycleEvent {
+
+    public enum Type {
+        STATE_CHANGED, STARTING_ERROR
+    }
+
+    private final long sequence;
+
+    private final long timestamp;
+
+    private final Type type;
+
+    private final String pluginId;
+
+    private final PluginState oldState;
+
+    private final PluginState pluginState;
+
+    private final Long duration;
+
+    private final PluginStartingError error;
+
+    PluginLifecycleEvent(long sequence, Type type, String pluginId, PluginState oldState,
+                         PluginState pluginState, Long duration, PluginStartingError error) {
+        this.sequence = sequence;
+        this.timestamp = System.currentTimeMillis();
+        this.type = type;
+        this.pluginId = pluginId;
+        this.oldState = oldState;
+        this.pluginState = pluginState;
+        this.duration = duration;
+        this.error = error;
+    }
+
+    /**
+     * @return the sequence number, increasing by one for each event
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public PluginState getOldState() {
+        return oldState;
+    }
+
+    public PluginState getPluginState() {
+        return pluginState;
+    }
+
+    /**
+     * @return the milliseconds the plugin took to start or stop, or {@code null} if unknown
+     */
+    public Long getDuration() {
+        return duration;
+    }
+
+    public PluginStartingError getError() {
+        return error;
+    }
+}
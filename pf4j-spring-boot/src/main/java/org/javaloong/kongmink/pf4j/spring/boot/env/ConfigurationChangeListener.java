@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import java.util.EventListener;
+
+/**
+ * Listener notified when the configuration properties of a plugin change in a
+ * {@link ConfigurationRepository}.
+ *
+ * @author Xu Cheng
+ */
+@FunctionalInterface
+public interface ConfigurationChangeListener extends EventListener {
+
+    /**
+     * @param id the id of the plugin whose configuration properties changed
+     */
+    void configurationChanged(String id);
+}
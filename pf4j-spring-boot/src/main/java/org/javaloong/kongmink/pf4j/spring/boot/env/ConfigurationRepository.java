@@ -50,4 +50,21 @@ public interface ConfigurationRepository {
      * @throws PluginRuntimeException if something goes wrong
      */
     boolean delete(String id);
+
+    /**
+     * Add a listener notified when the configuration properties of a plugin change,
+     * repositories not able to detect changes ignore it.
+     *
+     * @param listener the listener
+     */
+    default void addChangeListener(ConfigurationChangeListener listener) {
+    }
+
+    /**
+     * Remove a listener added by {@link #addChangeListener(ConfigurationChangeListener)}.
+     *
+     * @param listener the listener
+     */
+    default void removeChangeListener(ConfigurationChangeListener listener) {
+    }
 }
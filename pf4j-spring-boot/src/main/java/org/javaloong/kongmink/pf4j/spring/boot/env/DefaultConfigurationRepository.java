@@ -15,53 +15,158 @@
  */
 package org.javaloong.kongmink.pf4j.spring.boot.env;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.pf4j.PluginRuntimeException;
 import org.pf4j.util.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.DigestUtils;
 
 /**
+ * Repository of plugin configuration properties stored as {@code <plugin id>.properties}
+ * files in a config root directory.
+ *
+ * <p>Parsed properties are cached, and {@link #get(String)} returns an unmodifiable map.
+ * The config root is watched for external edits, which reload the cached properties of a
+ * plugin and notify the {@link ConfigurationChangeListener}s once the file has not been
+ * modified for the debounce window. Until the config root exists and can be watched,
+ * cached properties are validated against the file content on each read.
+ *
  * @author Xu Cheng
  */
-public class DefaultConfigurationRepository implements ConfigurationRepository {
+public class DefaultConfigurationRepository implements ConfigurationRepository, Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultConfigurationRepository.class);
     
     public static final String CONFIG_FILE_EXTENSION = ".properties";
     
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+    
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    
     private final Path configRoot;
     
+    private final long debounceMillis;
+    
+    private final Map<String, CachedProperties> cache = new ConcurrentHashMap<>();
+    
+    /**
+     * Plugin ids by properties file name, since file names are lower case.
+     */
+    private final Map<String, String> pluginIds = new ConcurrentHashMap<>();
+    
+    private final List<ConfigurationChangeListener> listeners = new CopyOnWriteArrayList<>();
+    
+    private volatile WatchService watchService;
+    
+    private volatile boolean closed;
+    
     public DefaultConfigurationRepository(Path configRoot) {
+        this(configRoot, DEFAULT_DEBOUNCE_MILLIS);
+    }
+    
+    /**
+     * @param configRoot the directory of the properties files
+     * @param debounceMillis the time a file must stay unmodified before an external edit
+     * is picked up, or a negative value not to watch the config root
+     */
+    public DefaultConfigurationRepository(Path configRoot, long debounceMillis) {
         this.configRoot = configRoot;
+        this.debounceMillis = debounceMillis;
     }
     
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public Map<String, Object> get(String id) {
         String propertiesFileName = getPropertiesFileName(id);
-        return (Map)readProperties(configRoot, propertiesFileName);
+        pluginIds.putIfAbsent(propertiesFileName, id);
+        boolean watching = startWatching();
+        CachedProperties cached = cache.get(propertiesFileName);
+        if (cached != null && (watching || cached.isCurrent(readFingerprint(propertiesFileName)))) {
+            return cached.properties;
+        }
+        // loaded under the lock of the entry, so that an invalidation waits for the load
+        return cache.compute(propertiesFileName, (name, current) -> {
+            if (current != null && current != cached) return current;
+            Object fingerprint = readFingerprint(name);
+            return new CachedProperties(toMap(readProperties(configRoot, name)), fingerprint);
+        }).properties;
     }
 
     @Override
     public void save(String id, Map<String, Object> properties) {
         String propertiesFileName = getPropertiesFileName(id);
-        writeProperties(configRoot, propertiesFileName, properties);
+        pluginIds.put(propertiesFileName, id);
+        cache.compute(propertiesFileName, (name, current) -> {
+            writeProperties(configRoot, name, properties);
+            return new CachedProperties(Collections.unmodifiableMap(new HashMap<>(properties)),
+                    readFingerprint(name));
+        });
+        startWatching();
+        fireConfigurationChanged(id);
     }
     
     @Override
     public boolean delete(String id) {
         String propertiesFileName = getPropertiesFileName(id);
-        return deleteProperties(configRoot, propertiesFileName);
+        boolean[] deleted = new boolean[1];
+        cache.compute(propertiesFileName, (name, current) -> {
+            deleted[0] = deleteProperties(configRoot, name);
+            return null;
+        });
+        if (deleted[0]) fireConfigurationChanged(id);
+        return deleted[0];
+    }
+    
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        listeners.add(listener);
+        startWatching();
+    }
+    
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Stop watching the config root.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Failed to close the watch service of '{}'", configRoot, e);
+            }
+            watchService = null;
+        }
     }
     
     protected Properties readProperties(Path configPath, String propertiesFileName) {
@@ -95,10 +200,22 @@ public class DefaultConfigurationRepository implements ConfigurationRepository {
                 Files.createDirectories(configPath);
             }
 
-            try (OutputStream output = Files.newOutputStream(propertiesPath)) {
-                Properties properties = new Properties();
-                properties.putAll(map);
-                properties.store(output, null);
+            // written aside and moved in place, so that readers never see a partial file
+            Path tempPath = propertiesPath.resolveSibling(propertiesPath.getFileName() + TEMP_FILE_EXTENSION);
+            try {
+                try (OutputStream output = Files.newOutputStream(tempPath)) {
+                    Properties properties = new Properties();
+                    properties.putAll(map);
+                    properties.store(output, null);
+                }
+                try {
+                    Files.move(tempPath, propertiesPath, StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempPath, propertiesPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempPath);
             }
         } catch (IOException e) {
             throw new PluginRuntimeException(e);
@@ -129,4 +246,162 @@ public class DefaultConfigurationRepository implements ConfigurationRepository {
     protected Path getPropertiesPath(Path configPath, String propertiesFileName) {
         return configPath.resolve(Paths.get(propertiesFileName));
     }
+    
+    /**
+     * Watch the config root for changes if not yet watching.
+     * @return true if watching
+     */
+    private boolean startWatching() {
+        if (watchService != null) return true;
+        if (debounceMillis < 0 || closed || !Files.isDirectory(configRoot)) return false;
+        synchronized (this) {
+            if (watchService != null) return true;
+            if (closed) return false;
+            try {
+                WatchService newWatchService = configRoot.getFileSystem().newWatchService();
+                configRoot.register(newWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                // entries cached before were not watched
+                cache.clear();
+                watchService = newWatchService;
+                Thread thread = new Thread(() -> watch(newWatchService), "pf4j-config-watcher");
+                thread.setDaemon(true);
+                thread.start();
+                return true;
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("Failed to watch plugin configuration directory '{}'", configRoot, e);
+                return false;
+            }
+        }
+    }
+    
+    private void watch(WatchService watchService) {
+        // file names of changed files, mapped to the time they were last changed
+        Map<String, Long> pending = new HashMap<>();
+        try {
+            while (true) {
+                long timeout = Long.MAX_VALUE;
+                long now = System.currentTimeMillis();
+                for (long changeTime : pending.values()) {
+                    timeout = Math.min(timeout, Math.max(0, changeTime + debounceMillis - now));
+                }
+                WatchKey key = pending.isEmpty() ? watchService.take()
+                        : watchService.poll(timeout, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            for (String name : cache.keySet()) {
+                                pending.put(name, System.currentTimeMillis());
+                            }
+                        } else {
+                            String name = event.context().toString();
+                            if (name.endsWith(CONFIG_FILE_EXTENSION)) pending.put(name, System.currentTimeMillis());
+                        }
+                    }
+                    if (!key.reset()) {
+                        log.warn("Plugin configuration directory '{}' is no longer watched", configRoot);
+                        invalidateAll();
+                        resetWatchService(watchService);
+                        return;
+                    }
+                }
+                now = System.currentTimeMillis();
+                for (Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry<String, Long> entry = it.next();
+                    if (entry.getValue() + debounceMillis <= now) {
+                        it.remove();
+                        invalidate(entry.getKey());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+    
+    private synchronized void resetWatchService(WatchService oldWatchService) {
+        if (watchService == oldWatchService) {
+            watchService = null;
+            try {
+                oldWatchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+    
+    private void invalidate(String propertiesFileName) {
+        boolean[] changed = new boolean[1];
+        cache.compute(propertiesFileName, (name, current) -> {
+            Object fingerprint = readFingerprint(name);
+            // our own writes are cached with the fingerprint of the file written
+            if (current != null ? current.isCurrent(fingerprint) : fingerprint == null) return current;
+            changed[0] = true;
+            if (fingerprint == null) return null;
+            // reloaded at once, so that further events of the same edit are recognized
+            try {
+                return new CachedProperties(toMap(readProperties(configRoot, name)), fingerprint);
+            } catch (PluginRuntimeException e) {
+                log.warn("Failed to reload plugin configuration properties '{}'", name, e);
+                return null;
+            }
+        });
+        if (!changed[0]) return;
+        String id = pluginIds.get(propertiesFileName);
+        if (id == null) {
+            id = propertiesFileName.substring(0, propertiesFileName.length() - CONFIG_FILE_EXTENSION.length());
+        }
+        log.debug("Plugin configuration properties '{}' changed", propertiesFileName);
+        fireConfigurationChanged(id);
+    }
+    
+    private void invalidateAll() {
+        for (String name : cache.keySet()) {
+            invalidate(name);
+        }
+    }
+    
+    private void fireConfigurationChanged(String id) {
+        for (ConfigurationChangeListener listener : listeners) {
+            try {
+                listener.configurationChanged(id);
+            } catch (Exception e) {
+                log.error("Failed to notify configuration change of plugin '{}'", id, e);
+            }
+        }
+    }
+    
+    /**
+     * The content is hashed, since an edit keeping the size within the resolution of the
+     * file modification time would go unnoticed otherwise.
+     * @return the MD5 hex digest of a properties file, or {@code null} if not found
+     */
+    private Object readFingerprint(String propertiesFileName) {
+        try {
+            byte[] content = Files.readAllBytes(getPropertiesPath(configRoot, propertiesFileName));
+            return DigestUtils.md5DigestAsHex(content);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, Object> toMap(Properties properties) {
+        return Collections.unmodifiableMap(new HashMap<>((Map) properties));
+    }
+    
+    private static class CachedProperties {
+        
+        private final Map<String, Object> properties;
+        
+        private final Object fingerprint;
+        
+        private CachedProperties(Map<String, Object> properties, Object fingerprint) {
+            this.properties = properties;
+            this.fingerprint = fingerprint;
+        }
+        
+        private boolean isCurrent(Object currentFingerprint) {
+            return Objects.equals(fingerprint, currentFingerprint);
+        }
+    }
 }
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.pf4j.PluginRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Repository of plugin configuration properties stored in a relational table, so that the
+ * nodes of a scaled out application share them without syncing config directories.
+ *
+ * <p>Each row holds the properties of a plugin in the properties file format, with a
+ * version incremented on each write. A delete keeps the row as a tombstone without
+ * properties, so that versions never go back. Properties read are cached, and reads do
+ * not hit the database until a change is detected: the versions of all rows are polled
+ * every poll interval, and only the rows whose version changed are fetched again, which
+ * notifies the {@link ConfigurationChangeListener}s. Reads and writes of a plugin are
+ * serialized by a lock of the plugin, the database is not accessed while holding a lock of
+ * the cache, so that other plugins are not blocked by a slow query.
+ *
+ * <p>Plugin ids are case insensitive, like the file names of
+ * {@link DefaultConfigurationRepository}.
+ *
+ * @author Xu Cheng
+ */
+public class JdbcConfigurationRepository implements ConfigurationRepository, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcConfigurationRepository.class);
+
+    public static final String DEFAULT_TABLE_NAME = "PF4J_PLUGIN_CONFIG";
+
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String tableName;
+
+    private final Map<String, CachedProperties> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Locks by lower case plugin id, serializing the reads and writes of a plugin.
+     */
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Plugin ids by lower case plugin id, to notify listeners with the id read.
+     */
+    private final Map<String, String> pluginIds = new ConcurrentHashMap<>();
+
+    private final List<ConfigurationChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService pollExecutor;
+
+    public JdbcConfigurationRepository(DataSource dataSource) {
+        this(dataSource, DEFAULT_TABLE_NAME, DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param dataSource the data source of the table
+     * @param tableName the name of the table
+     * @param pollIntervalMillis the interval between two polls of the row versions, changes
+     * of other nodes are not detected unless greater than 0
+     */
+    public JdbcConfigurationRepository(DataSource dataSource, String tableName, long pollIntervalMillis) {
+        Assert.notNull(dataSource, "dataSource must not be null");
+        Assert.hasText(tableName, "tableName must not be empty");
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.tableName = tableName;
+        if (pollIntervalMillis > 0) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pf4j-config-poller-");
+            threadFactory.setDaemon(true);
+            this.pollExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            this.pollExecutor.scheduleWithFixedDelay(this::pollQuietly,
+                    pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.pollExecutor = null;
+        }
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Create the table unless it exists.
+     */
+    public void initializeSchema() {
+        Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                tableExists(connection.getMetaData(), connection.getCatalog(), getSchema(connection)));
+        if (!Boolean.TRUE.equals(exists)) {
+            log.info("Create plugin configuration table '{}'", tableName);
+            jdbcTemplate.execute(getCreateTableSql());
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(String id) {
+        String key = getKey(id);
+        pluginIds.putIfAbsent(key, id);
+        CachedProperties cached = cache.get(key);
+        if (cached != null) return cached.properties;
+        synchronized (getLock(key)) {
+            cached = cache.get(key);
+            // loaded by a concurrent caller meanwhile
+            if (cached != null) return cached.properties;
+            cached = load(key);
+            cache.put(key, cached);
+            return cached.properties;
+        }
+    }
+
+    @Override
+    public void save(String id, Map<String, Object> properties) {
+        String key = getKey(id);
+        String text = toText(properties);
+        pluginIds.put(key, id);
+        synchronized (getLock(key)) {
+            try {
+                if (jdbcTemplate.update("UPDATE " + tableName
+                        + " SET VERSION = VERSION + 1, PROPERTIES = ? WHERE PLUGIN_ID = ?", text, key) == 0) {
+                    try {
+                        jdbcTemplate.update("INSERT INTO " + tableName
+                                + " (PLUGIN_ID, VERSION, PROPERTIES) VALUES (?, 1, ?)", key, text);
+                    } catch (DuplicateKeyException e) {
+                        // inserted by another node meanwhile
+                        jdbcTemplate.update("UPDATE " + tableName
+                                + " SET VERSION = VERSION + 1, PROPERTIES = ? WHERE PLUGIN_ID = ?", text, key);
+                    }
+                }
+            } catch (DataAccessException e) {
+                throw new PluginRuntimeException(e);
+            }
+            // read back, another node might have written after us
+            cache.put(key, load(key));
+        }
+        fireConfigurationChanged(id);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        String key = getKey(id);
+        boolean deleted;
+        synchronized (getLock(key)) {
+            try {
+                deleted = jdbcTemplate.update("UPDATE " + tableName
+                        + " SET VERSION = VERSION + 1, PROPERTIES = NULL"
+                        + " WHERE PLUGIN_ID = ? AND PROPERTIES IS NOT NULL", key) > 0;
+            } catch (DataAccessException e) {
+                throw new PluginRuntimeException(e);
+            }
+            cache.put(key, load(key));
+        }
+        if (deleted) fireConfigurationChanged(id);
+        return deleted;
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Fetch again the cached properties whose version changed in the table, and notify the
+     * listeners of the plugins whose properties changed.
+     */
+    public void poll() {
+        if (cache.isEmpty()) return;
+
+        Map<String, Long> versions = new HashMap<>();
+        jdbcTemplate.query("SELECT PLUGIN_ID, VERSION FROM " + tableName,
+                rs -> { versions.put(rs.getString(1), rs.getLong(2)); });
+        for (String key : cache.keySet()) {
+            long version = versions.getOrDefault(key, 0L);
+            CachedProperties current = cache.get(key);
+            if (current == null || current.version >= version) continue;
+            boolean changed;
+            synchronized (getLock(key)) {
+                current = cache.get(key);
+                // versions only increase, a newer one was read meanwhile
+                if (current == null || current.version >= version) continue;
+                CachedProperties loaded = load(key);
+                cache.put(key, loaded);
+                changed = !loaded.properties.equals(current.properties);
+            }
+            if (changed) {
+                log.debug("Plugin configuration properties of '{}' changed", key);
+                fireConfigurationChanged(pluginIds.getOrDefault(key, key));
+            }
+        }
+    }
+
+    /**
+     * Stop polling the table.
+     */
+    @Override
+    public void close() throws IOException {
+        if (pollExecutor != null) {
+            pollExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the statement creating the table, which might be overridden for databases not
+     * supporting the {@code CLOB} type
+     */
+    protected String getCreateTableSql() {
+        return "CREATE TABLE " + tableName + " ("
+                + "PLUGIN_ID VARCHAR(255) NOT NULL PRIMARY KEY, "
+                + "VERSION BIGINT NOT NULL, "
+                + "PROPERTIES CLOB)";
+    }
+
+    /**
+     * @return whether the table exists, looking it up as is, in upper and in lower case, since
+     * databases differ in the case they store unquoted names in
+     */
+    private boolean tableExists(DatabaseMetaData metaData, String catalog, String defaultSchema)
+            throws SQLException {
+        String escape = metaData.getSearchStringEscape();
+        for (String qualifiedName : Arrays.asList(tableName,
+                tableName.toUpperCase(Locale.ROOT), tableName.toLowerCase(Locale.ROOT))) {
+            int index = qualifiedName.lastIndexOf('.');
+            String schema = index >= 0 ? qualifiedName.substring(0, index) : defaultSchema;
+            String name = qualifiedName.substring(index + 1);
+            try (ResultSet tables = metaData.getTables(catalog, escape(schema, escape), escape(name, escape), null)) {
+                while (tables.next()) {
+                    // patterns might match more than the name, depending on the driver escaping
+                    if (name.equals(tables.getString("TABLE_NAME"))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String getSchema(Connection connection) {
+        try {
+            return connection.getSchema();
+        } catch (SQLException | AbstractMethodError e) {
+            // not supported by drivers older than JDBC 4.1
+            return null;
+        }
+    }
+
+    private static String escape(String pattern, String escape) {
+        if (pattern == null || escape == null || escape.isEmpty()) return pattern;
+        return pattern.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    private Object getLock(String key) {
+        return locks.computeIfAbsent(key, k -> new Object());
+    }
+
+    private CachedProperties load(String key) {
+        try {
+            List<CachedProperties> rows = jdbcTemplate.query("SELECT VERSION, PROPERTIES FROM " + tableName
+                    + " WHERE PLUGIN_ID = ?", (rs, rowNum) -> new CachedProperties(rs.getLong(1),
+                    toMap(rs.getString(2))), key);
+            return rows.isEmpty() ? new CachedProperties(0, Collections.emptyMap()) : rows.get(0);
+        } catch (DataAccessException e) {
+            throw new PluginRuntimeException(e);
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll plugin configuration table '{}'", tableName, e);
+        }
+    }
+
+    private void fireConfigurationChanged(String id) {
+        for (ConfigurationChangeListener listener : listeners) {
+            try {
+                listener.configurationChanged(id);
+            } catch (Exception e) {
+                log.error("Failed to notify configuration change of plugin '{}'", id, e);
+            }
+        }
+    }
+
+    private static String getKey(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    private static String toText(Map<String, Object> map) {
+        Properties properties = new Properties();
+        properties.putAll(map);
+        StringWriter writer = new StringWriter();
+        try {
+            properties.store(writer, null);
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Map<String, Object> toMap(String text) {
+        if (text == null) return Collections.emptyMap();
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(text));
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e);
+        }
+        return Collections.unmodifiableMap(new HashMap<>((Map) properties));
+    }
+
+    private static class CachedProperties {
+
+        private final long version;
+
+        private final Map<String, Object> properties;
+
+        private CachedProperties(long version, Map<String, Object> properties) {
+            this.version = version;
+            this.properties = properties;
+        }
+    }
+}
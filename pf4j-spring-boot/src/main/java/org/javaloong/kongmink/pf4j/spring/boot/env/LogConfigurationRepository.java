@@ -0,0 +1,458 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.pf4j.PluginRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repository of plugin configuration properties stored in a single append-only log file,
+ * for applications with too many plugins to keep a properties file for each.
+ *
+ * <p>Each save or delete appends a checksummed record and forces it to disk before
+ * returning, a record torn by a crash is discarded on the next open. An in-memory index
+ * holds the position of the latest record of each plugin, which is read with a positional
+ * read of the log. The log is not memory mapped, since a mapped file can not be truncated
+ * or replaced on Windows. The log is compacted to the latest records once it holds more
+ * superseded records than live ones.
+ *
+ * <p>Plugin ids are case insensitive, like the file names of
+ * {@link DefaultConfigurationRepository}.
+ *
+ * @author Xu Cheng
+ */
+public class LogConfigurationRepository implements ConfigurationRepository, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LogConfigurationRepository.class);
+
+    private static final byte[] MAGIC = "PF4JCFG1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 2;
+
+    /**
+     * Logs smaller than this are not compacted.
+     */
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    private final Path logFile;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Positions of the latest put record of each plugin.
+     */
+    private final Map<String, Record> index = new HashMap<>();
+
+    private final List<ConfigurationChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private FileChannel channel;
+
+    private long size;
+
+    private long liveBytes;
+
+    public LogConfigurationRepository(Path logFile) {
+        this.logFile = logFile;
+        lock.writeLock().lock();
+        try {
+            open();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(String id) {
+        String key = toKey(id);
+        lock.readLock().lock();
+        try {
+            Record record = index.get(key);
+            if (record == null) return Collections.emptyMap();
+            // positional reads do not move the channel position, concurrent ones are safe
+            ByteBuffer buffer = ByteBuffer.allocate(record.length);
+            readFully(buffer, record.position);
+            buffer.flip();
+            return readProperties(buffer, record);
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(String id, Map<String, Object> properties) {
+        String key = toKey(id);
+        byte[] payload = encode(PUT, key, properties);
+        lock.writeLock().lock();
+        try {
+            Record record = append(payload);
+            Record previous = index.put(key, record);
+            if (previous != null) liveBytes -= previous.length;
+            liveBytes += record.length;
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireConfigurationChanged(id);
+        compactIfNeeded();
+    }
+
+    @Override
+    public boolean delete(String id) {
+        String key = toKey(id);
+        lock.writeLock().lock();
+        try {
+            if (!index.containsKey(key)) return false;
+            append(encode(DELETE, key, null));
+            liveBytes -= index.remove(key).length;
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireConfigurationChanged(id);
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Rewrite the log with only the latest record of each plugin.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            doCompact();
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the size of the log file in bytes
+     */
+    public long getSize() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open() {
+        try {
+            if (logFile.getParent() != null) Files.createDirectories(logFile.getParent());
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (channel.size() < MAGIC.length) {
+                // new log, or one torn while the magic was written
+                if (!isMagicPrefix()) {
+                    throw new PluginRuntimeException("'{}' is not a plugin configuration log", logFile);
+                }
+                channel.write(ByteBuffer.wrap(MAGIC), 0);
+                channel.force(true);
+            }
+            size = channel.size();
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            readFully(magic, 0);
+            if (!Arrays.equals(magic.array(), MAGIC)) {
+                throw new PluginRuntimeException("'{}' is not a plugin configuration log", logFile);
+            }
+            long validSize = replay();
+            if (validSize < size) {
+                log.warn("Discard {} bytes of incomplete records at the end of '{}'", size - validSize, logFile);
+                channel.truncate(validSize);
+                channel.force(true);
+                size = validSize;
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+            throw e instanceof PluginRuntimeException ? (PluginRuntimeException) e : new PluginRuntimeException(e);
+        }
+    }
+
+    private boolean isMagicPrefix() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) break;
+        }
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    private void closeQuietly() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.debug("Failed to close '{}'", logFile, ex);
+        }
+        channel = null;
+    }
+
+    /**
+     * Rebuild the index from the records of the log.
+     * @return the size of the log up to the last valid record
+     */
+    private long replay() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long position = MAGIC.length;
+        while (size - position >= RECORD_HEADER_SIZE) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > size - position - RECORD_HEADER_SIZE) return position;
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_SIZE);
+            if (checksum(payload.array()) != checksum) return position;
+
+            payload.flip();
+            byte type = payload.get();
+            String key = readString(payload);
+            Record previous = type == PUT
+                    ? index.put(key, new Record(position, RECORD_HEADER_SIZE + length))
+                    : index.remove(key);
+            if (previous != null) liveBytes -= previous.length;
+            if (type == PUT) liveBytes += RECORD_HEADER_SIZE + length;
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Read the remaining bytes of the buffer from the log, starting at the given position.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of '" + logFile + "' at " + (offset + buffer.position()));
+            }
+        }
+    }
+
+    private Record append(byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        long position = size;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+        Record record = new Record(size, (int) (position - size));
+        size = position;
+        return record;
+    }
+
+    /**
+     * Compact the log if needed. The triggering record is already durable, so a failed
+     * compaction is logged instead of failing the save or delete.
+     */
+    private void compactIfNeeded() {
+        lock.writeLock().lock();
+        try {
+            if (channel != null && size >= MIN_COMPACTION_SIZE && size - MAGIC.length - liveBytes > liveBytes) {
+                doCompact();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to compact '{}'", logFile, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void doCompact() throws IOException {
+        Path compactFile = logFile.resolveSibling(logFile.getFileName() + ".compact");
+        Map<String, Record> compactIndex = new LinkedHashMap<>();
+        long position;
+        try (FileChannel compactChannel = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            compactChannel.write(ByteBuffer.wrap(MAGIC));
+            position = MAGIC.length;
+            for (Map.Entry<String, Record> entry : index.entrySet()) {
+                Record record = entry.getValue();
+                compactIndex.put(entry.getKey(), new Record(position, record.length));
+                long transferred = 0;
+                while (transferred < record.length) {
+                    transferred += channel.transferTo(record.position + transferred,
+                            record.length - transferred, compactChannel);
+                }
+                position += record.length;
+            }
+            compactChannel.force(true);
+        }
+        channel.close();
+        try {
+            // the log is replaced atomically, a crash leaves either the old or the compacted log
+            Files.move(compactFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            throw e;
+        }
+        log.debug("Compact '{}' from {} to {} bytes", logFile, size, position);
+        channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = position;
+        index.clear();
+        index.putAll(compactIndex);
+    }
+
+    private void fireConfigurationChanged(String id) {
+        for (ConfigurationChangeListener listener : listeners) {
+            try {
+                listener.configurationChanged(id);
+            } catch (Exception e) {
+                log.error("Failed to notify configuration change of plugin '{}'", id, e);
+            }
+        }
+    }
+
+    /**
+     * @param buffer the bytes of the record, including its header
+     */
+    private static Map<String, Object> readProperties(ByteBuffer buffer, Record record) {
+        try {
+            buffer.position(RECORD_HEADER_SIZE);
+            buffer.get();
+            readString(buffer);
+            int count = buffer.getInt();
+            Map<String, Object> properties = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                properties.put(readString(buffer), readString(buffer));
+            }
+            return Collections.unmodifiableMap(properties);
+        } catch (BufferUnderflowException e) {
+            throw new PluginRuntimeException(e, "Corrupted plugin configuration record at {}", record.position);
+        }
+    }
+
+    private static byte[] encode(byte type, String key, Map<String, Object> properties) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(type);
+            writeString(output, key);
+            if (type == PUT) {
+                output.writeInt(properties.size());
+                for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                    writeString(output, entry.getKey());
+                    // stored as strings, like in properties files
+                    writeString(output, String.valueOf(entry.getValue()));
+                }
+            }
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new PluginRuntimeException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static String toKey(String id) {
+        return id.toLowerCase();
+    }
+
+    private static class Record {
+
+        private final long position;
+
+        /**
+         * The length of the record, including its header.
+         */
+        private final int length;
+
+        private Record(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
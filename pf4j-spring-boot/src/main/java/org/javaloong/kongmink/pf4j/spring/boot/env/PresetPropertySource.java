@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.util.StringUtils;
+
+/**
+ * Immutable property source of the preset properties of the plugin manager, shared by
+ * reference by the environments of all plugin contexts instead of copied in each of them.
+ *
+ * <p>The properties are copied once when created and their names are computed up front,
+ * a new instance is created when the preset properties change.
+ *
+ * @author Xu Cheng
+ */
+public class PresetPropertySource extends EnumerablePropertySource<Map<String, Object>> {
+
+    public static final String PRESET_PROPERTIES_PROPERTY_SOURCE_NAME = "Preset Properties";
+
+    private final String[] propertyNames;
+
+    public PresetPropertySource(Map<String, Object> properties) {
+        super(PRESET_PROPERTIES_PROPERTY_SOURCE_NAME, Collections.unmodifiableMap(new HashMap<>(properties)));
+        this.propertyNames = StringUtils.toStringArray(getSource().keySet());
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return getSource().get(name);
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        return getSource().containsKey(name);
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return propertyNames.clone();
+    }
+}
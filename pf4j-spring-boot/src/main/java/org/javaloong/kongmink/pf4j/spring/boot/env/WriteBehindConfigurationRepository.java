@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.pf4j.PluginRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Repository applying saves and deletes to an in-memory view at once, and writing them to
+ * a delegate repository in the background, so that bulk configuration pushes do not wait
+ * for the disk.
+ *
+ * <p>Repeated writes of the same plugin before a flush are coalesced to the latest one.
+ * Pending writes are flushed every flush interval, or as soon as the number of pending
+ * plugins reaches the batch size. {@link #flush()} writes them at once, and they are also
+ * flushed on {@link #close()} and by a JVM shutdown hook, so that no acknowledged write is
+ * lost on a graceful shutdown. A write failing is retried on the next flush unless
+ * superseded meanwhile.
+ *
+ * <p>Plugin ids are case insensitive, like the stores of
+ * {@link DefaultConfigurationRepository} and {@link LogConfigurationRepository}.
+ *
+ * @author Xu Cheng
+ */
+public class WriteBehindConfigurationRepository implements ConfigurationRepository, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindConfigurationRepository.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final ConfigurationRepository delegate;
+
+    private final long flushIntervalMillis;
+
+    private final int batchSize;
+
+    /**
+     * Writes not flushed yet, by lower case plugin id in the order of their first write.
+     */
+    private final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+
+    /**
+     * Writes of the flush in progress, still visible until written to the delegate.
+     */
+    private final Map<String, PendingWrite> flushingWrites = new HashMap<>();
+
+    private final Object flushMonitor = new Object();
+
+    private final List<ConfigurationChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService flushExecutor;
+
+    private final Thread shutdownHook;
+
+    private volatile boolean closed;
+
+    public WriteBehindConfigurationRepository(ConfigurationRepository delegate, long flushIntervalMillis) {
+        this(delegate, flushIntervalMillis, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param delegate the repository the writes are flushed to
+     * @param flushIntervalMillis the interval between two flushes of pending writes
+     * @param batchSize the number of pending plugins flushed without waiting for the interval
+     */
+    public WriteBehindConfigurationRepository(ConfigurationRepository delegate, long flushIntervalMillis,
+                                              int batchSize) {
+        Assert.notNull(delegate, "delegate must not be null");
+        Assert.isTrue(flushIntervalMillis > 0, "flushIntervalMillis must be greater than 0");
+        Assert.isTrue(batchSize > 0, "batchSize must be greater than 0");
+        this.delegate = delegate;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.batchSize = batchSize;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pf4j-config-writer-");
+        threadFactory.setDaemon(true);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.flushExecutor.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        this.shutdownHook = new Thread(this::flushQuietly, "pf4j-config-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public ConfigurationRepository getDelegate() {
+        return delegate;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    @Override
+    public Map<String, Object> get(String id) {
+        PendingWrite write = getPendingWrite(id);
+        if (write != null) {
+            return write.properties != null ? write.properties : Collections.emptyMap();
+        }
+        return delegate.get(id);
+    }
+
+    @Override
+    public void save(String id, Map<String, Object> properties) {
+        enqueue(new PendingWrite(id, Collections.unmodifiableMap(new HashMap<>(properties))));
+        fireConfigurationChanged(id);
+    }
+
+    /**
+     * Remove the configuration properties of a plugin, the properties file or record is
+     * removed from the delegate on the next flush.
+     *
+     * @param id the id of the plugin
+     * @return true if the plugin had configuration properties
+     */
+    @Override
+    public boolean delete(String id) {
+        boolean deleted = !get(id).isEmpty();
+        enqueue(new PendingWrite(id, null));
+        if (deleted) fireConfigurationChanged(id);
+        return deleted;
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        listeners.add(listener);
+        // external edits are still detected by the delegate
+        delegate.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
+        delegate.removeChangeListener(listener);
+    }
+
+    /**
+     * Write the pending writes to the delegate repository.
+     *
+     * @throws PluginRuntimeException if a write failed, it is kept pending
+     */
+    public void flush() {
+        synchronized (flushMonitor) {
+            List<PendingWrite> batch;
+            synchronized (pendingWrites) {
+                if (pendingWrites.isEmpty()) return;
+                batch = new ArrayList<>(pendingWrites.values());
+                flushingWrites.putAll(pendingWrites);
+                pendingWrites.clear();
+            }
+            log.debug("Flush {} plugin configuration writes", batch.size());
+            RuntimeException failure = null;
+            for (PendingWrite write : batch) {
+                try {
+                    if (write.properties != null) {
+                        delegate.save(write.id, write.properties);
+                    } else {
+                        delegate.delete(write.id);
+                    }
+                } catch (RuntimeException e) {
+                    if (failure == null) failure = e;
+                    synchronized (pendingWrites) {
+                        // unless written again meanwhile
+                        pendingWrites.putIfAbsent(write.key, write);
+                    }
+                } finally {
+                    synchronized (pendingWrites) {
+                        flushingWrites.remove(write.key, write);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw new PluginRuntimeException(failure, "Failed to flush plugin configuration properties");
+            }
+        }
+    }
+
+    /**
+     * @return the number of plugins with writes not flushed yet
+     */
+    public int getPendingCount() {
+        synchronized (pendingWrites) {
+            return pendingWrites.size() + flushingWrites.size();
+        }
+    }
+
+    /**
+     * Flush the pending writes and close the delegate repository.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // shutting down, the hook is running
+            }
+            if (delegate instanceof Closeable) {
+                ((Closeable) delegate).close();
+            }
+        }
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (closed) throw new IllegalStateException("Configuration repository is closed");
+        int pendingCount;
+        synchronized (pendingWrites) {
+            pendingWrites.put(write.key, write);
+            pendingCount = pendingWrites.size();
+        }
+        if (pendingCount == batchSize) {
+            try {
+                flushExecutor.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // closing, flushed by close()
+            }
+        }
+    }
+
+    private PendingWrite getPendingWrite(String id) {
+        String key = id.toLowerCase(Locale.ROOT);
+        synchronized (pendingWrites) {
+            PendingWrite write = pendingWrites.get(key);
+            return write != null ? write : flushingWrites.get(key);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush plugin configuration properties, retried on the next flush", e);
+        }
+    }
+
+    private void fireConfigurationChanged(String id) {
+        for (ConfigurationChangeListener listener : listeners) {
+            try {
+                listener.configurationChanged(id);
+            } catch (Exception e) {
+                log.error("Failed to notify configuration change of plugin '{}'", id, e);
+            }
+        }
+    }
+
+    private static class PendingWrite {
+
+        private final String id;
+
+        private final String key;
+
+        /**
+         * The properties to save, or {@code null} to delete them.
+         */
+        private final Map<String, Object> properties;
+
+        private PendingWrite(String id, Map<String, Object> properties) {
+            this.id = id;
+            this.key = id.toLowerCase(Locale.ROOT);
+            this.properties = properties;
+        }
+    }
+}
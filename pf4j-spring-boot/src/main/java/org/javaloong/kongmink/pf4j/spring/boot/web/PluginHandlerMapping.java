@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.javaloong.kongmink.pf4j.spring.boot.SpringBootPlugin;
+import org.javaloong.kongmink.pf4j.spring.boot.SpringBootstrap;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Request mapping of the main application, which plugin controllers are registered to
+ * when a plugin is started and unregistered from when it is stopped.
+ *
+ * @author Xu Cheng
+ * @see org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginRequestMappingHandlerMapping
+ * @see org.javaloong.kongmink.pf4j.spring.boot.web.reactive.PluginRequestMappingHandlerMapping
+ */
+public interface PluginHandlerMapping {
+
+    void registerControllers(SpringBootPlugin springBootPlugin);
+
+    void unregisterControllers(SpringBootPlugin springBootPlugin);
+
+    void unregisterController(GenericApplicationContext mainCtx, Object controller);
+
+    @SuppressWarnings("unchecked")
+    default Set<Object> getControllerBeans(SpringBootPlugin springBootPlugin) {
+        LinkedHashSet<Object> beans = new LinkedHashSet<>();
+        ApplicationContext applicationContext = springBootPlugin.getApplicationContext();
+        //no inspection unchecked
+        Set<String> sharedBeanNames = (Set<String>) applicationContext.getBean(
+                SpringBootstrap.BEAN_IMPORTED_BEAN_NAMES);
+        beans.addAll(applicationContext.getBeansWithAnnotation(Controller.class)
+                .entrySet().stream().filter(beanEntry -> !sharedBeanNames.contains(beanEntry.getKey()))
+                .map(Map.Entry::getValue).collect(Collectors.toList()));
+        beans.addAll(applicationContext.getBeansWithAnnotation(RestController.class)
+                .entrySet().stream().filter(beanEntry -> !sharedBeanNames.contains(beanEntry.getKey()))
+                .map(Map.Entry::getValue).collect(Collectors.toList()));
+        return beans;
+    }
+}
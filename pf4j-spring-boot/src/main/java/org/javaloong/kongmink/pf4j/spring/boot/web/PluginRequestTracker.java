@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the requests being handled by the controllers of a plugin, so that a stopping
+ * plugin can refuse new requests and wait for the in-flight ones to complete before its
+ * {@link org.springframework.context.ApplicationContext} is closed.
+ *
+ * @author Xu Cheng
+ * @see org.javaloong.kongmink.pf4j.spring.boot.SpringBootPlugin#stop()
+ */
+public class PluginRequestTracker {
+
+    private final String pluginId;
+
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    private final Object drainMonitor = new Object();
+
+    private volatile boolean draining;
+
+    public PluginRequestTracker(String pluginId) {
+        this.pluginId = pluginId;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * Track a new request, unless the plugin is draining.
+     * A request tracked must {@link #exit() exit}.
+     * @return true if the request is tracked, false if it must be refused
+     */
+    public boolean tryEnter() {
+        if (draining) return false;
+        inFlightRequests.incrementAndGet();
+        // re-check, the drain might have started after the first check
+        if (draining) {
+            exit();
+            return false;
+        }
+        return true;
+    }
+
+    public void exit() {
+        if (inFlightRequests.decrementAndGet() <= 0 && draining) {
+            synchronized (drainMonitor) {
+                drainMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Refuse new requests, and wait for the in-flight requests to complete.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all in-flight requests completed, false if the timeout expired
+     */
+    public boolean drain(long timeout, TimeUnit unit) {
+        draining = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (drainMonitor) {
+            while (inFlightRequests.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(drainMonitor, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accept new requests again, such as when the plugin is restarted.
+     */
+    public void reset() {
+        draining = false;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * @return the number of requests being handled by the plugin
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+}
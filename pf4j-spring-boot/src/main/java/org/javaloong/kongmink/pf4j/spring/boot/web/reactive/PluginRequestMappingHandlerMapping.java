@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.reactive;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.javaloong.kongmink.pf4j.spring.boot.SpringBootPlugin;
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginHandlerMapping;
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.result.method.RequestMappingInfo;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of
+ * {@link org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginRequestMappingHandlerMapping},
+ * registering plugin controllers to the main WebFlux request mapping.
+ *
+ * <p>Plugin handler mappings share the mapping registry of the main application. Requests to a
+ * stopping plugin are refused with 503. When request tracking is enabled, requests matched to
+ * a plugin handler are counted by the {@link PluginRequestTracker} of the plugin until the
+ * {@link PluginRequestTrackingWebFilter} sees the exchange complete.
+ *
+ * @author Xu Cheng
+ */
+public class PluginRequestMappingHandlerMapping extends RequestMappingHandlerMapping
+        implements PluginHandlerMapping {
+
+    /**
+     * Exchange attribute holding the tracker of the plugin handling the request.
+     */
+    public static final String REQUEST_TRACKER_ATTRIBUTE =
+            PluginRequestMappingHandlerMapping.class.getName() + ".REQUEST_TRACKER";
+
+    /**
+     * Mappings registered for each controller instance, so that unregistering a
+     * controller does not need to scan the mappings of the whole application.
+     */
+    private final Map<Object, List<RequestMappingInfo>> controllerMappings =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final Map<String, Set<Object>> pluginControllers = new ConcurrentHashMap<>();
+
+    private final Map<Object, PluginRequestTracker> controllerRequestTrackers =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private boolean requestTrackingEnabled = false;
+
+    /**
+     * Whether to count the in-flight requests of plugins, which requires a
+     * {@link PluginRequestTrackingWebFilter} to release them.
+     * @param requestTrackingEnabled true to count in-flight requests
+     */
+    public void setRequestTrackingEnabled(boolean requestTrackingEnabled) {
+        this.requestTrackingEnabled = requestTrackingEnabled;
+    }
+
+    public boolean isRequestTrackingEnabled() {
+        return requestTrackingEnabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void detectHandlerMethods(Object controller) {
+        super.detectHandlerMethods(controller);
+    }
+
+    @Override
+    protected void registerHandlerMethod(Object handler, Method method, RequestMappingInfo mapping) {
+        super.registerHandlerMethod(handler, method, mapping);
+        // handlers of main application are registered by bean name
+        if (!(handler instanceof String)) {
+            controllerMappings.computeIfAbsent(handler, key -> new CopyOnWriteArrayList<>()).add(mapping);
+        }
+    }
+
+    @Override
+    public Mono<HandlerMethod> getHandlerInternal(ServerWebExchange exchange) {
+        Mono<HandlerMethod> handlerMethod = super.getHandlerInternal(exchange);
+        if (controllerRequestTrackers.isEmpty()) return handlerMethod;
+        return handlerMethod.flatMap(method -> {
+            PluginRequestTracker requestTracker = controllerRequestTrackers.get(method.getBean());
+            if (requestTracker == null) return Mono.just(method);
+            if (!requestTrackingEnabled) {
+                return requestTracker.isDraining() ? Mono.error(refuse(requestTracker)) : Mono.just(method);
+            }
+            if (exchange.getAttribute(REQUEST_TRACKER_ATTRIBUTE) == null) {
+                if (!requestTracker.tryEnter()) return Mono.error(refuse(requestTracker));
+                exchange.getAttributes().put(REQUEST_TRACKER_ATTRIBUTE, requestTracker);
+            }
+            return Mono.just(method);
+        });
+    }
+
+    @Override
+    public void registerControllers(SpringBootPlugin springBootPlugin) {
+        Set<Object> controllers = getControllerBeans(springBootPlugin);
+        for (Object controller : controllers) {
+            // unregister RequestMapping if already registered
+            unregisterController(springBootPlugin.getMainApplicationContext(), controller);
+            springBootPlugin.registerBeanToMainContext(controller.getClass().getName(), controller);
+        }
+        registerHandlerMethods(springBootPlugin.getWrapper().getPluginId(),
+                springBootPlugin.getRequestTracker(), controllers);
+    }
+
+    void registerHandlerMethods(String pluginId, PluginRequestTracker requestTracker,
+                                Collection<Object> controllers) {
+        pluginControllers.put(pluginId, new LinkedHashSet<>(controllers));
+        for (Object controller : controllers) {
+            detectHandlerMethods(controller);
+            if (requestTracker != null) controllerRequestTrackers.put(controller, requestTracker);
+        }
+    }
+
+    @Override
+    public void unregisterControllers(SpringBootPlugin springBootPlugin) {
+        Set<Object> controllers = pluginControllers.remove(springBootPlugin.getWrapper().getPluginId());
+        if (controllers == null) controllers = getControllerBeans(springBootPlugin);
+        controllers.forEach(bean ->
+                unregisterController(springBootPlugin.getMainApplicationContext(), bean));
+    }
+
+    @Override
+    public void unregisterController(GenericApplicationContext mainCtx, Object controller) {
+        List<RequestMappingInfo> mappings = controllerMappings.remove(controller);
+        if (mappings != null) mappings.forEach(this::unregisterMapping);
+        controllerRequestTrackers.remove(controller);
+        SpringBootPlugin.unregisterBeanFromMainContext(mainCtx, controller);
+    }
+
+    private static ResponseStatusException refuse(PluginRequestTracker requestTracker) {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Plugin " + requestTracker.getPluginId() + " is stopping");
+    }
+}
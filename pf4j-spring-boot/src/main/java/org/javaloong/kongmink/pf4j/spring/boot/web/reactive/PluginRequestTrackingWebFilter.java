@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.reactive;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Releases the requests tracked by {@link PluginRequestMappingHandlerMapping} when the
+ * exchange completes, with an error, or is cancelled.
+ *
+ * @author Xu Cheng
+ */
+public class PluginRequestTrackingWebFilter implements WebFilter {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return chain.filter(exchange).doFinally(signal -> {
+            PluginRequestTracker requestTracker = exchange.getAttribute(
+                    PluginRequestMappingHandlerMapping.REQUEST_TRACKER_ATTRIBUTE);
+            if (requestTracker != null) {
+                exchange.getAttributes().remove(PluginRequestMappingHandlerMapping.REQUEST_TRACKER_ATTRIBUTE);
+                requestTracker.exit();
+            }
+        });
+    }
+}
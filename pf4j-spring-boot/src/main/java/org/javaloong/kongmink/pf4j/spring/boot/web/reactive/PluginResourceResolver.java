@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.reactive;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceIndex;
+import org.javaloong.kongmink.pf4j.spring.util.ApplicationContextProvider;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.reactive.resource.PathResourceResolver;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link org.javaloong.kongmink.pf4j.spring.boot.web.servlet.PluginResourceResolver},
+ * resolving static resources from the classpath locations of started plugins first.
+ *
+ * @author Xu Cheng
+ */
+public class PluginResourceResolver extends PathResourceResolver {
+
+    @Autowired @Lazy
+    private PluginManager pluginManager;
+
+    private final PluginResourceIndex resourceIndex;
+
+    public PluginResourceResolver() {
+        this(null);
+    }
+
+    /**
+     * @param resourceIndex index used to resolve resources straight to the owning plugin,
+     *                      or {@code null} to probe every started plugin
+     */
+    public PluginResourceResolver(PluginResourceIndex resourceIndex) {
+        this.resourceIndex = resourceIndex;
+    }
+
+    @Override
+    protected Mono<Resource> getResource(String resourcePath, Resource location) {
+        if (!(location instanceof ClassPathResource)) return Mono.empty();
+        ClassPathResource classPathLocation = (ClassPathResource) location;
+
+        // pluginManager might not be auto wired correctly because resolve bean
+        // is instantiated before PluginManager.
+        if (pluginManager == null) {
+            pluginManager = ApplicationContextProvider.getBean(PluginManager.class);
+        }
+
+        try {
+            if (resourceIndex != null && resourceIndex.isIndexed(classPathLocation.getPath())) {
+                String pluginId = resourceIndex.getOwner(classPathLocation.getPath(), resourcePath);
+                PluginWrapper plugin = pluginId != null ? pluginManager.getPlugin(pluginId) : null;
+                if (plugin != null && plugin.getPluginState() == PluginState.STARTED) {
+                    Resource resource = getPluginResource(plugin, resourcePath, classPathLocation);
+                    if (resource != null) return Mono.just(resource);
+                }
+                return super.getResource(resourcePath, location);
+            }
+
+            for (PluginWrapper plugin : pluginManager.getPlugins(PluginState.STARTED)) {
+                Resource resource = getPluginResource(plugin, resourcePath, classPathLocation);
+                if (resource != null) return Mono.just(resource);
+            }
+        } catch (IOException ex) {
+            logger.trace("Failure checking for relative resource under location " + location, ex);
+            return Mono.empty();
+        }
+        return super.getResource(resourcePath, location);
+    }
+
+    private Resource getPluginResource(PluginWrapper plugin, String resourcePath,
+                                       ClassPathResource location) throws IOException {
+        Resource pluginLocation = new ClassPathResource(location.getPath(), plugin.getPluginClassLoader());
+        Resource resource = pluginLocation.createRelative(resourcePath);
+        if (resource.isReadable()) {
+            if (checkResource(resource, pluginLocation)) {
+                return resource;
+            }
+            else if (logger.isWarnEnabled()) {
+                Resource[] allowedLocations = getAllowedLocations();
+                logger.warn("Resource path \"" + resourcePath + "\" was successfully resolved " +
+                        "but resource \"" + resource.getURL() + "\" is neither under the " +
+                        "current location \"" + location.getURL() + "\" nor under any of the " +
+                        "allowed locations " + (allowedLocations != null ? Arrays.asList(allowedLocations) : "[]"));
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+
+/**
+ * Limits the requests handled concurrently by the controllers of a plugin, so that a
+ * misbehaving plugin can not take every servlet container thread.
+ *
+ * <p>Requests over the limit wait in a queue of {@link #setMaxQueueSize(int) bounded size}
+ * for at most the {@link #setQueueTimeout(long, TimeUnit) queue timeout}, and are rejected
+ * with the {@link #setRejectStatus(HttpStatus) reject status} otherwise. The limits can be
+ * changed while requests are being handled.
+ *
+ * @author Xu Cheng
+ */
+public class PluginBulkhead {
+
+    private static final int UNLIMITED = Integer.MAX_VALUE / 2;
+
+    private final String pluginId;
+
+    private final AdjustableSemaphore semaphore = new AdjustableSemaphore(UNLIMITED);
+
+    private int permits = UNLIMITED;
+
+    private volatile int maxConcurrentRequests = 0;
+
+    private volatile int maxQueueSize = 0;
+
+    private volatile long queueTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private volatile HttpStatus rejectStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+
+    private final LongAdder queuedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public PluginBulkhead(String pluginId) {
+        this.pluginId = pluginId;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * Set the maximum number of requests handled concurrently.
+     * @param maxConcurrentRequests the limit, or {@code 0} for no limit
+     */
+    public synchronized void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        Assert.isTrue(maxConcurrentRequests >= 0, "maxConcurrentRequests must not be negative");
+        int newPermits = maxConcurrentRequests > 0 ? maxConcurrentRequests : UNLIMITED;
+        if (newPermits > permits) {
+            semaphore.release(newPermits - permits);
+        } else if (newPermits < permits) {
+            // requests in flight keep their permits, available permits might go negative
+            semaphore.reducePermits(permits - newPermits);
+        }
+        permits = newPermits;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Set the maximum number of requests waiting for a permit.
+     * @param maxQueueSize the queue size, or {@code 0} to reject requests over the limit at once
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        Assert.isTrue(maxQueueSize >= 0, "maxQueueSize must not be negative");
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setQueueTimeout(long timeout, TimeUnit unit) {
+        Assert.isTrue(timeout >= 0, "timeout must not be negative");
+        this.queueTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    public long getQueueTimeout(TimeUnit unit) {
+        return unit.convert(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Set the status of rejected requests, usually 503 or 429.
+     * @param rejectStatus the status
+     */
+    public void setRejectStatus(HttpStatus rejectStatus) {
+        Assert.notNull(rejectStatus, "rejectStatus must not be null");
+        this.rejectStatus = rejectStatus;
+    }
+
+    public HttpStatus getRejectStatus() {
+        return rejectStatus;
+    }
+
+    /**
+     * Acquire a permit to handle a request, waiting in the queue if needed.
+     * A permit acquired must be {@link #release() released}.
+     * @return true if the permit is acquired, false if the request is rejected
+     */
+    public boolean tryAcquire() {
+        if (semaphore.tryAcquire()) return true;
+
+        int queueSize = maxQueueSize;
+        if (queueSize > 0) {
+            if (queuedRequests.incrementAndGet() <= queueSize) {
+                queuedCount.increment();
+                try {
+                    if (semaphore.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS)) return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    queuedRequests.decrementAndGet();
+                }
+            } else {
+                queuedRequests.decrementAndGet();
+            }
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    public void release() {
+        semaphore.release();
+    }
+
+    /**
+     * @return the number of requests holding a permit
+     */
+    public int getActiveRequests() {
+        int available = semaphore.availablePermits();
+        synchronized (this) {
+            return permits - available;
+        }
+    }
+
+    /**
+     * @return the number of requests currently waiting in the queue
+     */
+    public int getQueuedRequests() {
+        return queuedRequests.get();
+    }
+
+    /**
+     * @return the total number of requests that waited in the queue
+     */
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    /**
+     * @return the total number of rejected requests
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private static class AdjustableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        AdjustableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Interceptor of a single plugin handler method, added to the handler execution chain by
+ * {@link PluginRequestMappingHandlerMapping}.
+ *
+ * <p>Requests are tracked by the {@link PluginRequestTracker} of the plugin, and refused with
+ * 503 while the plugin is draining. Requests rejected by the {@link PluginBulkhead} of the
+ * plugin are answered with its reject status, the permit of a request offloaded to the plugin
+ * executor is held until its async dispatch completes. It is created once when the handler
+ * method is registered. Start times are kept on a per-thread stack, so intercepting a request
+ * does not allocate.
+ *
+ * @author Xu Cheng
+ */
+public class PluginHandlerInterceptor implements AsyncHandlerInterceptor {
+
+    private static final int MAX_DEPTH = 16;
+
+    private static final String START_TIME_ATTRIBUTE = PluginHandlerInterceptor.class.getName() + ".START_TIME";
+
+    private static final String TRACKED_ATTRIBUTE = PluginHandlerInterceptor.class.getName() + ".TRACKED.";
+
+    private static final String PERMIT_ATTRIBUTE = PluginHandlerInterceptor.class.getName() + ".PERMIT.";
+
+    /**
+     * Start times of the plugin requests being handled by the current thread, element 0 holds
+     * the depth, which might exceed the stack size on deeply nested forwards.
+     */
+    private static final ThreadLocal<long[]> START_TIMES = ThreadLocal.withInitial(() -> new long[MAX_DEPTH + 1]);
+
+    private final String pluginId;
+
+    private final Object controller;
+
+    private final PluginRequestMetrics.Recorder recorder;
+
+    private final PluginBulkhead bulkhead;
+
+    private final PluginRequestTracker requestTracker;
+
+    private final String trackedAttribute;
+
+    private final String permitAttribute;
+
+    PluginHandlerInterceptor(String pluginId, Object controller, PluginRequestMetrics.Recorder recorder,
+                             PluginBulkhead bulkhead, PluginRequestTracker requestTracker) {
+        this.pluginId = pluginId;
+        this.controller = controller;
+        this.recorder = recorder;
+        this.bulkhead = bulkhead;
+        this.requestTracker = requestTracker;
+        this.trackedAttribute = TRACKED_ATTRIBUTE + pluginId;
+        this.permitAttribute = PERMIT_ATTRIBUTE + pluginId;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    Object getController() {
+        return controller;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        // tracked until the dispatch entering the plugin completes, or its async dispatch
+        if (requestTracker != null && request.getAttribute(trackedAttribute) == null) {
+            if (!requestTracker.tryEnter()) {
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                return false;
+            }
+            request.setAttribute(trackedAttribute, request.getDispatcherType());
+        }
+        // forwards and dispatches of the same request do not take another permit
+        if (bulkhead != null && request.getDispatcherType() == DispatcherType.REQUEST && !bulkhead.tryAcquire()) {
+            exitRequest(request);
+            response.sendError(bulkhead.getRejectStatus().value());
+            return false;
+        }
+        if (recorder != null) {
+            long startTime = System.nanoTime();
+            if (request.getDispatcherType() == DispatcherType.ASYNC) {
+                // measure from the initial dispatch of an async request
+                Object asyncStartTime = request.getAttribute(START_TIME_ATTRIBUTE);
+                if (asyncStartTime instanceof Long) startTime = (Long) asyncStartTime;
+            }
+            long[] startTimes = START_TIMES.get();
+            int depth = (int) ++startTimes[0];
+            if (depth <= MAX_DEPTH) startTimes[depth] = startTime;
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        if (bulkhead != null && request.getDispatcherType() == DispatcherType.REQUEST) {
+            if (request.getAttribute(PluginRequestMappingHandlerAdapter.OFFLOADED_ATTRIBUTE) != null) {
+                // the handler runs on the plugin executor, the permit is held until it is done
+                request.setAttribute(permitAttribute, Boolean.TRUE);
+            } else {
+                // the container thread is released while the request is processed asynchronously
+                bulkhead.release();
+            }
+        }
+        if (recorder != null) {
+            long startTime = popStartTime();
+            if (startTime != 0) request.setAttribute(START_TIME_ATTRIBUTE, startTime);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (bulkhead != null) {
+            if (request.getDispatcherType() == DispatcherType.REQUEST) {
+                bulkhead.release();
+            } else if (request.getDispatcherType() == DispatcherType.ASYNC && !request.isAsyncStarted()
+                    && request.getAttribute(permitAttribute) != null) {
+                request.removeAttribute(permitAttribute);
+                bulkhead.release();
+            }
+        }
+        if (!request.isAsyncStarted() && (request.getDispatcherType() == DispatcherType.ASYNC
+                || request.getDispatcherType() == request.getAttribute(trackedAttribute))) {
+            exitRequest(request);
+        }
+        if (recorder != null) {
+            long startTime = popStartTime();
+            if (startTime != 0) {
+                recorder.record(System.nanoTime() - startTime, ex != null || response.getStatus() >= 500);
+            }
+        }
+    }
+
+    private void exitRequest(HttpServletRequest request) {
+        if (requestTracker != null && request.getAttribute(trackedAttribute) != null) {
+            request.removeAttribute(trackedAttribute);
+            requestTracker.exit();
+        }
+    }
+
+    private static long popStartTime() {
+        long[] startTimes = START_TIMES.get();
+        int depth = (int) startTimes[0];
+        if (depth <= 0) return 0;
+        startTimes[0] = depth - 1;
+        return depth <= MAX_DEPTH ? startTimes[depth] : 0;
+    }
+}
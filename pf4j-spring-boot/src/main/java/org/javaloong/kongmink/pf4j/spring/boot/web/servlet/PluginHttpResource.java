@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.resource.HttpResource;
+
+/**
+ * A static resource of a plugin served with the content hash computed by
+ * {@link PluginResourceStore} as a strong ETag, optionally in an encoded variant.
+ *
+ * @author Xu Cheng
+ */
+public class PluginHttpResource extends AbstractResource implements HttpResource {
+
+    private final Resource resource;
+
+    private final String pluginId;
+
+    private final String filename;
+
+    private final String contentHash;
+
+    private final String contentEncoding;
+
+    private final long contentLength;
+
+    private final long lastModified;
+
+    private final String cacheControl;
+
+    PluginHttpResource(Resource resource, String pluginId, String filename, String contentHash,
+                       String contentEncoding, long contentLength, long lastModified, String cacheControl) {
+        this.resource = resource;
+        this.pluginId = pluginId;
+        this.filename = filename;
+        this.contentHash = contentHash;
+        this.contentEncoding = contentEncoding;
+        this.contentLength = contentLength;
+        this.lastModified = lastModified;
+        this.cacheControl = cacheControl;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * @return the MD5 hex digest of the unencoded content
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return the content encoding, or {@code null} if not encoded
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the strong ETag of this variant of the resource, quoted
+     */
+    public String getETag() {
+        return contentEncoding != null
+                ? "\"" + contentHash + "-" + contentEncoding + "\""
+                : "\"" + contentHash + "\"";
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(getETag());
+        if (contentEncoding != null) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (cacheControl != null) {
+            headers.setCacheControl(cacheControl);
+        }
+        return headers;
+    }
+
+    @Override
+    public boolean exists() {
+        return resource.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return resource.isReadable();
+    }
+
+    @Override
+    public boolean isFile() {
+        return resource.isFile();
+    }
+
+    @Override
+    public URL getURL() throws IOException {
+        return resource.getURL();
+    }
+
+    @Override
+    public URI getURI() throws IOException {
+        return resource.getURI();
+    }
+
+    @Override
+    public File getFile() throws IOException {
+        return resource.getFile();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return resource.getInputStream();
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public Resource createRelative(String relativePath) throws IOException {
+        return resource.createRelative(relativePath);
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getDescription() {
+        return "plugin [" + pluginId + "] " + resource.getDescription();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.pf4j.PluginClassLoader;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.util.StringUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Handler adapter that can run plugin handler methods off the container threads.
+ *
+ * <p>When a plugin executor is set, handler methods of classes loaded by a plugin are invoked on
+ * that executor through the asynchronous request processing of Spring MVC. Arguments are still
+ * resolved, and the return value is still handled, on container threads. Handler methods that are
+ * asynchronous by themselves are invoked as usual, and so are handler methods writing the
+ * response themselves, returning {@code void} or taking the response or one of its streams.
+ * The request attributes and locale of the request are bound to the executor thread during
+ * the invocation. The executor is usually created with
+ * {@link org.javaloong.kongmink.pf4j.spring.util.ExecutorUtils#newExecutorService(String, int, int)},
+ * so blocking plugin handlers run on virtual threads where the JDK provides them. An offloaded
+ * request keeps its {@link PluginBulkhead} permit until its async dispatch completes.
+ *
+ * @author Xu Cheng
+ */
+public class PluginRequestMappingHandlerAdapter extends RequestMappingHandlerAdapter implements DisposableBean {
+
+    /**
+     * Request attribute set once a handler method of the request is run on the plugin executor.
+     */
+    static final String OFFLOADED_ATTRIBUTE = PluginRequestMappingHandlerAdapter.class.getName() + ".OFFLOADED";
+
+    private ExecutorService pluginExecutor;
+
+    private AsyncTaskExecutor pluginTaskExecutor;
+
+    private Long pluginTimeout;
+
+    /**
+     * Run plugin handler methods on an executor, which is shut down with this adapter.
+     * @param pluginExecutor the executor, or {@code null} to run them on container threads
+     */
+    public void setPluginExecutor(ExecutorService pluginExecutor) {
+        this.pluginExecutor = pluginExecutor;
+        this.pluginTaskExecutor = pluginExecutor != null ? new TaskExecutorAdapter(pluginExecutor) : null;
+    }
+
+    public ExecutorService getPluginExecutor() {
+        return pluginExecutor;
+    }
+
+    /**
+     * Set the timeout of plugin handler methods run on the plugin executor. Offloaded handler
+     * methods are processed as asynchronous requests, so without a timeout of their own they
+     * time out after the async request timeout of Spring MVC, or else of the servlet container,
+     * like any asynchronous handler method would.
+     * @param timeout the timeout, or {@code null} for the default async request timeout
+     * @param unit the unit of the timeout
+     */
+    public void setPluginTimeout(Long timeout, TimeUnit unit) {
+        this.pluginTimeout = timeout != null ? unit.toMillis(timeout) : null;
+    }
+
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        if (pluginTaskExecutor != null && isOffloaded(handlerMethod)) {
+            return new OffloadedInvocableHandlerMethod(handlerMethod, pluginTaskExecutor, pluginTimeout);
+        }
+        return super.createInvocableHandlerMethod(handlerMethod);
+    }
+
+    /**
+     * Whether a handler method runs on the plugin executor.
+     * @param handlerMethod the handler method
+     * @return true if it is a synchronous handler method of a plugin, which leaves writing
+     * the response to Spring MVC
+     */
+    protected boolean isOffloaded(HandlerMethod handlerMethod) {
+        if (!isPluginHandler(handlerMethod)) return false;
+        // handled as having written the response when returning, which has to be on the request thread
+        if (handlerMethod.isVoid()) return false;
+        for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+            Class<?> parameterType = parameter.getParameterType();
+            if (ServletResponse.class.isAssignableFrom(parameterType)
+                    || OutputStream.class.isAssignableFrom(parameterType)
+                    || Writer.class.isAssignableFrom(parameterType)
+                    || InputStream.class.isAssignableFrom(parameterType)
+                    || Reader.class.isAssignableFrom(parameterType)) {
+                return false;
+            }
+        }
+        // the response is committed with the reason right after the invocation
+        ResponseStatus responseStatus = handlerMethod.getMethodAnnotation(ResponseStatus.class);
+        if (responseStatus == null) {
+            responseStatus = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), ResponseStatus.class);
+        }
+        if (responseStatus != null && StringUtils.hasText(responseStatus.reason())) return false;
+        Class<?> returnType = handlerMethod.getReturnType().getParameterType();
+        return !(Callable.class.isAssignableFrom(returnType)
+                || WebAsyncTask.class.isAssignableFrom(returnType)
+                || DeferredResult.class.isAssignableFrom(returnType)
+                || ListenableFuture.class.isAssignableFrom(returnType)
+                || CompletionStage.class.isAssignableFrom(returnType)
+                || ResponseBodyEmitter.class.isAssignableFrom(returnType)
+                || StreamingResponseBody.class.isAssignableFrom(returnType)
+                || getReactiveAdapterRegistry().getAdapter(returnType) != null);
+    }
+
+    /**
+     * Whether a handler method belongs to a plugin.
+     * @param handlerMethod the handler method
+     * @return true if the class of the handler is loaded by a plugin
+     */
+    protected boolean isPluginHandler(HandlerMethod handlerMethod) {
+        return handlerMethod.getBeanType().getClassLoader() instanceof PluginClassLoader;
+    }
+
+    @Override
+    public void destroy() {
+        if (pluginExecutor != null) pluginExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the invocation of the handler method as a {@link WebAsyncTask}, so the value
+     * returned by the handler method is handled as usual on the async dispatch.
+     */
+    private static class OffloadedInvocableHandlerMethod extends ServletInvocableHandlerMethod {
+
+        private final AsyncTaskExecutor taskExecutor;
+
+        private final Long timeout;
+
+        OffloadedInvocableHandlerMethod(HandlerMethod handlerMethod, AsyncTaskExecutor taskExecutor, Long timeout) {
+            super(handlerMethod);
+            this.taskExecutor = taskExecutor;
+            this.timeout = timeout;
+        }
+
+        @Override
+        protected Object doInvoke(Object... args) {
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+            LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+            if (requestAttributes != null) {
+                requestAttributes.setAttribute(OFFLOADED_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+            }
+            return new WebAsyncTask<>(timeout, taskExecutor, () -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader previousClassLoader = thread.getContextClassLoader();
+                RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+                LocaleContext previousLocaleContext = LocaleContextHolder.getLocaleContext();
+                thread.setContextClassLoader(contextClassLoader);
+                // bound by the DispatcherServlet already, otherwise bound like on the request thread,
+                // whose request attributes are completed once it returns
+                if (previousAttributes == null && requestAttributes instanceof ServletRequestAttributes) {
+                    HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
+                    HttpServletResponse response = ((ServletRequestAttributes) requestAttributes).getResponse();
+                    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+                }
+                if (previousLocaleContext == null) LocaleContextHolder.setLocaleContext(localeContext);
+                try {
+                    return super.doInvoke(args);
+                } finally {
+                    thread.setContextClassLoader(previousClassLoader);
+                    RequestContextHolder.setRequestAttributes(previousAttributes);
+                    LocaleContextHolder.setLocaleContext(previousLocaleContext);
+                }
+            });
+        }
+    }
+}
@@ -16,23 +16,133 @@
 package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
 
 import org.javaloong.kongmink.pf4j.spring.boot.SpringBootPlugin;
-import org.javaloong.kongmink.pf4j.spring.boot.SpringBootstrap;
-import org.springframework.context.ApplicationContext;
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginHandlerMapping;
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.javaloong.kongmink.pf4j.spring.util.PathPrefixTrie;
 import org.springframework.context.support.GenericApplicationContext;
-import org.springframework.stereotype.Controller;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.util.StringUtils;
+import org.springframework.util.StringValueResolver;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
-import java.util.HashMap;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 
 /**
+ * {@link RequestMappingHandlerMapping} that registers and unregisters plugin controllers at runtime.
+ *
+ * <p>With {@link #setPrefixDispatchEnabled(boolean) prefix dispatch} enabled, the controllers of
+ * a plugin declaring {@code pf4j-plugin.url-prefix} are kept in a mapping registry of their own.
+ * Requests are routed to that registry by the longest matching prefix, so lookups only match
+ * against the mappings of the owning plugin instead of all mappings of the application.
+ * The plugin's request mappings are expected to live under its prefix.
+ *
+ * <p>Requests handled by plugin controllers are recorded by the configured
+ * {@link PluginRequestMetrics}, through a {@link PluginHandlerInterceptor} created for each
+ * handler method when the controllers are registered. The same interceptor applies the
+ * {@link PluginBulkhead} created for each plugin by the {@link #setBulkheadFactory bulkhead factory}.
+ *
  * @author <a href="https://github.com/hank-cp">Hank CP</a>
  */
-public class PluginRequestMappingHandlerMapping extends RequestMappingHandlerMapping {
+public class PluginRequestMappingHandlerMapping extends RequestMappingHandlerMapping
+        implements PluginHandlerMapping {
+
+    /**
+     * Mappings registered for each controller instance, so that unregistering a
+     * controller does not need to scan the mappings of the whole application.
+     */
+    private final Map<Object, List<RequestMappingInfo>> controllerMappings =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Controllers registered by each plugin, keyed by plugin id.
+     */
+    private final Map<String, Set<Object>> pluginControllers = new ConcurrentHashMap<>();
+
+    private final PathPrefixTrie<PluginRouteMapping> routeMappings = new PathPrefixTrie<>();
+
+    private final Map<String, PluginRouteMapping> pluginRouteMappings = new ConcurrentHashMap<>();
+
+    private final Map<Object, PluginRouteMapping> controllerRouteMappings =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Interceptors of the plugin handler methods.
+     */
+    private final Map<Method, PluginHandlerInterceptor> handlerInterceptors = new ConcurrentHashMap<>();
+
+    private boolean prefixDispatchEnabled = false;
+
+    private PluginRequestMetrics requestMetrics;
+
+    private final Map<String, PluginBulkhead> pluginBulkheads = new ConcurrentHashMap<>();
+
+    private Function<SpringBootPlugin, PluginBulkhead> bulkheadFactory;
+
+    private final Map<String, PluginRequestTracker> pluginRequestTrackers = new ConcurrentHashMap<>();
+
+    private StringValueResolver embeddedValueResolver;
+
+    /**
+     * Whether to dispatch requests to plugins by their declared url prefix.
+     * @param prefixDispatchEnabled true to enable prefix dispatch
+     */
+    public void setPrefixDispatchEnabled(boolean prefixDispatchEnabled) {
+        this.prefixDispatchEnabled = prefixDispatchEnabled;
+    }
+
+    public boolean isPrefixDispatchEnabled() {
+        return prefixDispatchEnabled;
+    }
+
+    /**
+     * Record the requests handled by plugin controllers registered from now on.
+     * @param requestMetrics the metrics, or {@code null} to not record requests
+     */
+    public void setRequestMetrics(PluginRequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    public PluginRequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    /**
+     * Limit the concurrent requests of plugins registered from now on.
+     * @param bulkheadFactory creates the bulkhead of a plugin, which may return {@code null}
+     *                        to not limit the plugin
+     */
+    public void setBulkheadFactory(Function<SpringBootPlugin, PluginBulkhead> bulkheadFactory) {
+        this.bulkheadFactory = bulkheadFactory;
+    }
+
+    /**
+     * Get the bulkhead of a plugin, whose limits can be adjusted at runtime.
+     * @param pluginId the id of the plugin
+     * @return the bulkhead, or {@code null} if the plugin is not limited
+     */
+    public PluginBulkhead getBulkhead(String pluginId) {
+        return pluginBulkheads.get(pluginId);
+    }
+
+    @Override
+    public void setEmbeddedValueResolver(StringValueResolver resolver) {
+        super.setEmbeddedValueResolver(resolver);
+        this.embeddedValueResolver = resolver;
+    }
 
     /**
      * {@inheritDoc}
@@ -42,44 +152,198 @@ public class PluginRequestMappingHandlerMapping extends RequestMappingHandlerMap
         super.detectHandlerMethods(controller);
     }
 
+    @Override
+    protected void registerHandlerMethod(Object handler, Method method, RequestMappingInfo mapping) {
+        super.registerHandlerMethod(handler, method, mapping);
+        // handlers of main application are registered by bean name
+        if (!(handler instanceof String)) {
+            controllerMappings.computeIfAbsent(handler, key -> new CopyOnWriteArrayList<>()).add(mapping);
+        }
+    }
+
+    @Override
+    protected HandlerMethod getHandlerInternal(HttpServletRequest request) throws Exception {
+        if (!routeMappings.isEmpty()) {
+            PluginRouteMapping routeMapping = routeMappings.match(
+                    getUrlPathHelper().getLookupPathForRequest(request));
+            if (routeMapping != null) {
+                HandlerMethod handlerMethod = routeMapping.getHandlerInternal(request);
+                if (handlerMethod != null) return handlerMethod;
+            }
+        }
+        return super.getHandlerInternal(request);
+    }
+
+    @Override
+    protected HandlerExecutionChain getHandlerExecutionChain(Object handler, HttpServletRequest request) {
+        HandlerExecutionChain chain = super.getHandlerExecutionChain(handler, request);
+        if (!handlerInterceptors.isEmpty() && handler instanceof HandlerMethod) {
+            PluginHandlerInterceptor interceptor = handlerInterceptors.get(((HandlerMethod) handler).getMethod());
+            // first in, last out, so that the other interceptors are included
+            if (interceptor != null) chain.addInterceptor(0, interceptor);
+        }
+        return chain;
+    }
+
+    @Override
+    protected boolean hasCorsConfigurationSource(Object handler) {
+        PluginRouteMapping routeMapping = getRouteMapping(handler);
+        return routeMapping != null ? routeMapping.hasCorsConfigurationSource(handler)
+                : super.hasCorsConfigurationSource(handler);
+    }
+
+    @Override
+    protected CorsConfiguration getCorsConfiguration(Object handler, HttpServletRequest request) {
+        PluginRouteMapping routeMapping = getRouteMapping(handler);
+        return routeMapping != null ? routeMapping.getCorsConfiguration(handler, request)
+                : super.getCorsConfiguration(handler, request);
+    }
+
+    @Override
     public void registerControllers(SpringBootPlugin springBootPlugin) {
-        getControllerBeans(springBootPlugin).forEach(bean -> registerController(springBootPlugin, bean));
+        Set<Object> controllers = getControllerBeans(springBootPlugin);
+        for (Object controller : controllers) {
+            // unregister RequestMapping if already registered
+            unregisterController(springBootPlugin.getMainApplicationContext(), controller);
+            springBootPlugin.registerBeanToMainContext(controller.getClass().getName(), controller);
+        }
+        String pluginId = springBootPlugin.getWrapper().getPluginId();
+        PluginBulkhead bulkhead = bulkheadFactory != null ? bulkheadFactory.apply(springBootPlugin) : null;
+        if (bulkhead != null) registerBulkhead(pluginId, bulkhead);
+        PluginRequestTracker requestTracker = springBootPlugin.getRequestTracker();
+        if (requestTracker != null) registerRequestTracker(pluginId, requestTracker);
+        registerHandlerMethods(pluginId, springBootPlugin.getWrapper().getDescriptor().getVersion(),
+                prefixDispatchEnabled ? springBootPlugin.getUrlPrefix() : null, controllers);
     }
 
-    private void registerController(SpringBootPlugin springBootPlugin, Object controller) {
-        String beanName = controller.getClass().getName();
-        // unregister RequestMapping if already registered
-        unregisterController(springBootPlugin.getMainApplicationContext(), controller);
-        springBootPlugin.registerBeanToMainContext(beanName, controller);
-        detectHandlerMethods(controller);
+    void registerHandlerMethods(String pluginId, String urlPrefix, Collection<Object> controllers) {
+        registerHandlerMethods(pluginId, null, urlPrefix, controllers);
     }
 
-    public void unregisterControllers(SpringBootPlugin springBootPlugin) {
-        getControllerBeans(springBootPlugin).forEach(bean ->
-                unregisterController(springBootPlugin.getMainApplicationContext(), bean));
+    void registerHandlerMethods(String pluginId, String pluginVersion, String urlPrefix,
+                                Collection<Object> controllers) {
+        pluginControllers.put(pluginId, new LinkedHashSet<>(controllers));
+        if (StringUtils.hasText(urlPrefix) && routeMappings.get(urlPrefix) != null) {
+            logger.warn("Url prefix '" + urlPrefix + "' of plugin '" + pluginId + "' is already " +
+                    "declared by another plugin, fall back to the shared mapping registry");
+            urlPrefix = null;
+        }
+        if (!StringUtils.hasText(urlPrefix)) {
+            controllers.forEach(this::detectHandlerMethods);
+            registerInterceptors(pluginId, pluginVersion, this, controllers);
+            return;
+        }
+
+        PluginRouteMapping routeMapping = createRouteMapping(urlPrefix);
+        for (Object controller : controllers) {
+            routeMapping.detectHandlerMethods(controller);
+            controllerRouteMappings.put(controller, routeMapping);
+        }
+        registerInterceptors(pluginId, pluginVersion, routeMapping, controllers);
+        pluginRouteMappings.put(pluginId, routeMapping);
+        routeMappings.put(urlPrefix, routeMapping);
+    }
+
+    void registerBulkhead(String pluginId, PluginBulkhead bulkhead) {
+        pluginBulkheads.put(pluginId, bulkhead);
+        if (requestMetrics != null) requestMetrics.registerBulkhead(pluginId, bulkhead);
+    }
+
+    void registerRequestTracker(String pluginId, PluginRequestTracker requestTracker) {
+        pluginRequestTrackers.put(pluginId, requestTracker);
+        if (requestMetrics != null) requestMetrics.registerRequestTracker(pluginId, requestTracker);
     }
 
-    @SuppressWarnings("unchecked")
-    public Set<Object> getControllerBeans(SpringBootPlugin springBootPlugin) {
-        LinkedHashSet<Object> beans = new LinkedHashSet<>();
-        ApplicationContext applicationContext = springBootPlugin.getApplicationContext();
-        //no inspection unchecked
-        Set<String> sharedBeanNames = (Set<String>) applicationContext.getBean(
-                SpringBootstrap.BEAN_IMPORTED_BEAN_NAMES);
-        beans.addAll(applicationContext.getBeansWithAnnotation(Controller.class)
-                .entrySet().stream().filter(beanEntry -> !sharedBeanNames.contains(beanEntry.getKey()))
-                .map(Map.Entry::getValue).collect(Collectors.toList()));
-        beans.addAll(applicationContext.getBeansWithAnnotation(RestController.class)
-                .entrySet().stream().filter(beanEntry -> !sharedBeanNames.contains(beanEntry.getKey()))
-                .map(Map.Entry::getValue).collect(Collectors.toList()));
-        return beans;
+    private void registerInterceptors(String pluginId, String pluginVersion,
+                                      PluginRequestMappingHandlerMapping mapping, Collection<Object> controllers) {
+        PluginBulkhead bulkhead = pluginBulkheads.get(pluginId);
+        PluginRequestTracker requestTracker = pluginRequestTrackers.get(pluginId);
+        if (requestMetrics == null && bulkhead == null && requestTracker == null) return;
+        Map<RequestMappingInfo, HandlerMethod> handlerMethods = mapping.getHandlerMethods();
+        for (Object controller : controllers) {
+            List<RequestMappingInfo> mappings = mapping.controllerMappings.get(controller);
+            if (mappings == null) continue;
+            for (RequestMappingInfo info : mappings) {
+                HandlerMethod handlerMethod = handlerMethods.get(info);
+                if (handlerMethod == null) continue;
+                PluginRequestMetrics.Recorder recorder = requestMetrics != null
+                        ? requestMetrics.register(pluginId, pluginVersion, handlerMethod) : null;
+                handlerInterceptors.put(handlerMethod.getMethod(),
+                        new PluginHandlerInterceptor(pluginId, controller, recorder, bulkhead, requestTracker));
+            }
+        }
     }
 
+    @Override
+    public void unregisterControllers(SpringBootPlugin springBootPlugin) {
+        String pluginId = springBootPlugin.getWrapper().getPluginId();
+        PluginRouteMapping routeMapping = pluginRouteMappings.remove(pluginId);
+        if (routeMapping != null) routeMappings.remove(routeMapping.urlPrefix, routeMapping);
+
+        Set<Object> controllers = pluginControllers.remove(pluginId);
+        if (controllers == null) controllers = getControllerBeans(springBootPlugin);
+        controllers.forEach(bean ->
+                unregisterController(springBootPlugin.getMainApplicationContext(), bean));
+        pluginBulkheads.remove(pluginId);
+        pluginRequestTrackers.remove(pluginId);
+        if (requestMetrics != null) requestMetrics.remove(pluginId);
+    }
+
+    @Override
     public void unregisterController(GenericApplicationContext mainCtx, Object controller) {
-        new HashMap<>(getHandlerMethods()).forEach((mapping, handlerMethod) -> {
-            if (controller == handlerMethod.getBean()) super.unregisterMapping(mapping);
-        });
+        unregisterMappings(controller);
+        PluginRouteMapping routeMapping = controllerRouteMappings.remove(controller);
+        if (routeMapping != null) routeMapping.unregisterMappings(controller);
+        if (!handlerInterceptors.isEmpty()) {
+            handlerInterceptors.values().removeIf(interceptor -> interceptor.getController() == controller);
+        }
         SpringBootPlugin.unregisterBeanFromMainContext(mainCtx, controller);
     }
 
+    void unregisterMappings(Object controller) {
+        List<RequestMappingInfo> mappings = controllerMappings.remove(controller);
+        if (mappings != null) mappings.forEach(this::unregisterMapping);
+    }
+
+    private PluginRouteMapping getRouteMapping(Object handler) {
+        if (!(handler instanceof HandlerMethod) || controllerRouteMappings.isEmpty()) return null;
+        return controllerRouteMappings.get(((HandlerMethod) handler).getBean());
+    }
+
+    /**
+     * The suffix pattern settings are deprecated, but copied on purpose so that routed plugin
+     * handlers match like the handlers of this mapping.
+     */
+    @SuppressWarnings("deprecation")
+    private PluginRouteMapping createRouteMapping(String urlPrefix) {
+        PluginRouteMapping routeMapping = new PluginRouteMapping(urlPrefix);
+        routeMapping.setApplicationContext(getApplicationContext());
+        if (embeddedValueResolver != null) routeMapping.setEmbeddedValueResolver(embeddedValueResolver);
+        routeMapping.setUrlPathHelper(getUrlPathHelper());
+        routeMapping.setPathMatcher(getPathMatcher());
+        routeMapping.setContentNegotiationManager(getContentNegotiationManager());
+        routeMapping.setUseSuffixPatternMatch(useSuffixPatternMatch());
+        routeMapping.setUseRegisteredSuffixPatternMatch(useRegisteredSuffixPatternMatch());
+        routeMapping.setUseTrailingSlashMatch(useTrailingSlashMatch());
+        routeMapping.setPathPrefixes(getPathPrefixes());
+        routeMapping.afterPropertiesSet();
+        return routeMapping;
+    }
+
+    /**
+     * Mapping registry holding the handler methods of a single plugin declaring an url prefix.
+     */
+    private static class PluginRouteMapping extends PluginRequestMappingHandlerMapping {
+
+        private final String urlPrefix;
+
+        PluginRouteMapping(String urlPrefix) {
+            this.urlPrefix = urlPrefix;
+        }
+
+        @Override
+        protected void initHandlerMethods() {
+            // handler methods are registered by the owning handler mapping
+        }
+    }
 }
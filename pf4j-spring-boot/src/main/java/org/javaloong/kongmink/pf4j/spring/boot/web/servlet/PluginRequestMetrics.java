@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Records the requests handled by plugin controllers.
+ *
+ * <p>A {@link Recorder} is created for each handler method when the controllers of a plugin are
+ * registered by {@link PluginRequestMappingHandlerMapping}, so that recording a request does
+ * not need to look anything up. The recorders of a plugin are released when its controllers
+ * are unregistered.
+ *
+ * @author Xu Cheng
+ */
+public interface PluginRequestMetrics {
+
+    /**
+     * Create the recorder of a plugin handler method.
+     * @param pluginId the id of the plugin
+     * @param pluginVersion the version of the plugin
+     * @param handlerMethod the handler method
+     * @return the recorder, or {@code null} to not record the handler method
+     */
+    Recorder register(String pluginId, String pluginVersion, HandlerMethod handlerMethod);
+
+    /**
+     * Record the state of the bulkhead of a plugin, until the plugin is {@link #remove(String) removed}.
+     * @param pluginId the id of the plugin
+     * @param bulkhead the bulkhead
+     */
+    default void registerBulkhead(String pluginId, PluginBulkhead bulkhead) {
+    }
+
+    /**
+     * Record the in-flight requests of a plugin, until the plugin is {@link #remove(String) removed}.
+     * @param pluginId the id of the plugin
+     * @param requestTracker the request tracker
+     */
+    default void registerRequestTracker(String pluginId, PluginRequestTracker requestTracker) {
+    }
+
+    /**
+     * Release the recorders of a plugin.
+     * @param pluginId the id of the plugin
+     */
+    void remove(String pluginId);
+
+    interface Recorder {
+
+        /**
+         * Record a handled request.
+         * @param durationNanos the time spent handling the request
+         * @param error whether the request failed, with an exception or a 5xx status
+         */
+        void record(long durationNanos, boolean error);
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.pf4j.PluginWrapper;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Resource chain cache bounded by the estimated weight of its entries, evicting the least
+ * recently used entries first.
+ *
+ * <p>Each entry is tagged with the plugin owning the cached resource. When a plugin is
+ * started or stopped, only the entries of that plugin are evicted, together with the entries
+ * not owned by any plugin since a plugin may now shadow them.
+ *
+ * @author Xu Cheng
+ * @see PluginResourceResolver
+ */
+public class PluginResourceCache extends AbstractValueAdaptingCache implements PluginStateListener {
+
+    private static final String APPLICATION_OWNER = "";
+
+    private final String name;
+
+    private final long maxWeight;
+
+    private final LinkedHashMap<Object, CacheEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final Map<String, Set<Object>> ownerKeys = new HashMap<>();
+
+    private final Map<ClassLoader, String> pluginClassLoaders = new ConcurrentHashMap<>();
+
+    private final Map<String, String> pluginPaths = new ConcurrentHashMap<>();
+
+    private long weight;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param name the name of the cache
+     * @param maxWeight the maximum estimated weight in bytes of the cached entries
+     */
+    public PluginResourceCache(String name, long maxWeight) {
+        super(false);
+        Assert.notNull(name, "name must not be null");
+        Assert.isTrue(maxWeight > 0, "maxWeight must be greater than 0");
+        this.name = name;
+        this.maxWeight = maxWeight;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return entries;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) return (T) fromStoreValue(value);
+        try {
+            value = valueLoader.call();
+        } catch (Throwable ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        put(key, value);
+        return (T) value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) return;
+        Object storeValue = toStoreValue(value);
+        String owner = resolveOwner(value);
+        long entryWeight = weigh(key, storeValue);
+        if (entryWeight > maxWeight) return;
+
+        synchronized (entries) {
+            removeEntry(key);
+            entries.put(key, new CacheEntry(storeValue, owner, entryWeight));
+            ownerKeys.computeIfAbsent(owner, k -> new HashSet<>()).add(key);
+            weight += entryWeight;
+
+            Iterator<Map.Entry<Object, CacheEntry>> iterator = entries.entrySet().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                Map.Entry<Object, CacheEntry> eldest = iterator.next();
+                iterator.remove();
+                unlink(eldest.getKey(), eldest.getValue());
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        synchronized (entries) {
+            removeEntry(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            ownerKeys.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Evict the entries of a plugin, and the entries not owned by any plugin.
+     * @param pluginId the id of the plugin
+     */
+    public void evictPlugin(String pluginId) {
+        synchronized (entries) {
+            evictOwner(pluginId);
+            evictOwner(APPLICATION_OWNER);
+        }
+    }
+
+    public void addPlugin(PluginWrapper plugin) {
+        pluginClassLoaders.put(plugin.getPluginClassLoader(), plugin.getPluginId());
+        if (plugin.getPluginPath() != null) {
+            pluginPaths.put(plugin.getPluginId(),
+                    plugin.getPluginPath().toAbsolutePath().toUri().getRawPath());
+        }
+    }
+
+    public void removePlugin(String pluginId) {
+        pluginClassLoaders.values().remove(pluginId);
+        pluginPaths.remove(pluginId);
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        PluginWrapper plugin = event.getPlugin();
+        if (plugin.getPluginState() == PluginState.STARTED) {
+            addPlugin(plugin);
+            evictPlugin(plugin.getPluginId());
+        } else if (event.getOldState() == PluginState.STARTED) {
+            evictPlugin(plugin.getPluginId());
+            removePlugin(plugin.getPluginId());
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Resolve the plugin owning a cached value.
+     * @param value the cached value
+     * @return the id of the owning plugin, or an empty string if no plugin owns it
+     */
+    protected String resolveOwner(Object value) {
+        if (!(value instanceof Resource) || pluginClassLoaders.isEmpty()) return APPLICATION_OWNER;
+
+        if (value instanceof PluginHttpResource) {
+            return ((PluginHttpResource) value).getPluginId();
+        }
+        if (value instanceof ClassPathResource) {
+            String pluginId = pluginClassLoaders.get(((ClassPathResource) value).getClassLoader());
+            return pluginId != null ? pluginId : APPLICATION_OWNER;
+        }
+        try {
+            String url = ((Resource) value).getURL().toString();
+            for (Map.Entry<String, String> entry : pluginPaths.entrySet()) {
+                if (url.contains(entry.getValue())) return entry.getKey();
+            }
+        } catch (IOException e) {
+            // not backed by an URL, such as a resource transformed in memory
+        }
+        return APPLICATION_OWNER;
+    }
+
+    /**
+     * Estimate the memory retained by an entry.
+     * @param key the cache key
+     * @param value the cached value
+     * @return the estimated weight in bytes
+     */
+    protected long weigh(Object key, Object value) {
+        long entryWeight = 64 + 2L * key.toString().length();
+        if (value instanceof String) {
+            entryWeight += 40 + 2L * ((String) value).length();
+        } else if (value instanceof Resource) {
+            entryWeight += 64 + 2L * ((Resource) value).getDescription().length();
+        } else {
+            entryWeight += 64;
+        }
+        return entryWeight;
+    }
+
+    private void evictOwner(String owner) {
+        Set<Object> keys = ownerKeys.remove(owner);
+        if (keys == null) return;
+        for (Object key : keys) {
+            CacheEntry entry = entries.remove(key);
+            if (entry != null) {
+                weight -= entry.weight;
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void removeEntry(Object key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null) unlink(key, entry);
+    }
+
+    private void unlink(Object key, CacheEntry entry) {
+        weight -= entry.weight;
+        Set<Object> keys = ownerKeys.get(entry.owner);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) ownerKeys.remove(entry.owner);
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final Object value;
+
+        private final String owner;
+
+        private final long weight;
+
+        private CacheEntry(Object value, String owner, long weight) {
+            this.value = value;
+            this.owner = owner;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Index of the static resources provided by started plugins under the configured
+ * classpath locations, so that a resource path resolves directly to the plugin owning it.
+ *
+ * <p>The index is built when a plugin is started and dropped when it is stopped. If several
+ * plugins provide the same path, the plugin started first owns it.
+ *
+ * @author Xu Cheng
+ * @see PluginResourceResolver
+ */
+public class PluginResourceIndex implements PluginStateListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginResourceIndex.class);
+
+    private final List<String> locations = new ArrayList<>();
+
+    private final Map<String, Set<String>> pluginResources = new LinkedHashMap<>();
+
+    private final Map<String, String> resourceOwners = new ConcurrentHashMap<>();
+
+    /**
+     * @param locations the classpath locations to index, e.g. {@code classpath:/static/}
+     */
+    public PluginResourceIndex(String... locations) {
+        for (String location : locations) {
+            if (!location.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)) continue;
+            String path = normalizeLocation(location.substring(ResourceUtils.CLASSPATH_URL_PREFIX.length()));
+            if (!this.locations.contains(path)) this.locations.add(path);
+        }
+    }
+
+    /**
+     * Whether resources under a classpath location are covered by this index.
+     * @param locationPath the classpath location path, e.g. {@code static/}
+     * @return true if the location is indexed
+     */
+    public boolean isIndexed(String locationPath) {
+        String path = normalizeLocation(locationPath);
+        for (String location : locations) {
+            if (path.startsWith(location)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the plugin owning a resource.
+     * @param locationPath the classpath location path, e.g. {@code static/}
+     * @param resourcePath the resource path relative to the location
+     * @return the id of the owning plugin, or {@code null} if no started plugin provides it
+     */
+    public String getOwner(String locationPath, String resourcePath) {
+        if (resourceOwners.isEmpty()) return null;
+        return resourceOwners.get(normalizeLocation(locationPath) + StringUtils.cleanPath(resourcePath));
+    }
+
+    /**
+     * Get the indexed resources of a plugin.
+     * @param pluginId the id of the plugin
+     * @return the classpath paths of the plugin's resources
+     */
+    public synchronized Set<String> getResources(String pluginId) {
+        Set<String> resources = pluginResources.get(pluginId);
+        return resources != null ? Collections.unmodifiableSet(resources) : Collections.emptySet();
+    }
+
+    public synchronized void addPlugin(PluginWrapper plugin) {
+        String pluginId = plugin.getPluginId();
+        if (pluginResources.containsKey(pluginId)) removePlugin(pluginId);
+
+        long startTs = System.currentTimeMillis();
+        Set<String> resources = scanResources(plugin);
+        pluginResources.put(pluginId, resources);
+        for (String resource : resources) {
+            resourceOwners.putIfAbsent(resource, pluginId);
+        }
+        log.debug("Indexed {} static resources of plugin {} in {}ms", resources.size(), pluginId,
+                System.currentTimeMillis() - startTs);
+    }
+
+    public synchronized void removePlugin(String pluginId) {
+        Set<String> resources = pluginResources.remove(pluginId);
+        if (resources == null) return;
+        for (String resource : resources) {
+            if (!resourceOwners.remove(resource, pluginId)) continue;
+            // hand the resource over to the next plugin providing it
+            for (Map.Entry<String, Set<String>> entry : pluginResources.entrySet()) {
+                if (entry.getValue().contains(resource)) {
+                    resourceOwners.put(resource, entry.getKey());
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        PluginWrapper plugin = event.getPlugin();
+        if (plugin.getPluginState() == PluginState.STARTED) {
+            addPlugin(plugin);
+        } else if (event.getOldState() == PluginState.STARTED) {
+            removePlugin(plugin.getPluginId());
+        }
+    }
+
+    protected Set<String> scanResources(PluginWrapper plugin) {
+        Set<String> resources = new LinkedHashSet<>();
+        if (!(plugin.getPluginClassLoader() instanceof URLClassLoader)) return resources;
+
+        for (URL url : ((URLClassLoader) plugin.getPluginClassLoader()).getURLs()) {
+            if (!ResourceUtils.URL_PROTOCOL_FILE.equals(url.getProtocol())) continue;
+            try {
+                Path path = Paths.get(url.toURI());
+                if (Files.isDirectory(path)) {
+                    scanDirectory(path, resources);
+                } else if (Files.isRegularFile(path)) {
+                    scanJar(path, resources);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to index static resources of plugin {} in {}", plugin.getPluginId(), url, e);
+            }
+        }
+        return resources;
+    }
+
+    private void scanDirectory(Path directory, Set<String> resources) throws IOException {
+        for (String location : locations) {
+            Path locationDirectory = directory.resolve(location);
+            if (!Files.isDirectory(locationDirectory)) continue;
+            try (Stream<Path> files = Files.walk(locationDirectory)) {
+                files.filter(Files::isRegularFile).forEach(file -> resources.add(
+                        location + StringUtils.cleanPath(locationDirectory.relativize(file).toString())));
+            }
+        }
+    }
+
+    private void scanJar(Path jarPath, Set<String> resources) throws IOException {
+        try (JarFile jarFile = new JarFile(jarPath.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && isIndexed(entry.getName())) {
+                    resources.add(entry.getName());
+                }
+            }
+        }
+    }
+
+    private static String normalizeLocation(String location) {
+        String path = StringUtils.cleanPath(location);
+        while (path.startsWith("/")) path = path.substring(1);
+        if (!path.isEmpty() && !path.endsWith("/")) path = path + "/";
+        return path;
+    }
+}
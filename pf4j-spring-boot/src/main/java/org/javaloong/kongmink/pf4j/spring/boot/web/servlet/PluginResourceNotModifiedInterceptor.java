@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import java.lang.reflect.Method;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+/**
+ * Answer conditional requests for stored plugin resources with 304 when the
+ * {@code If-None-Match} header matches the ETag of the {@link PluginHttpResource}.
+ *
+ * <p>{@link ResourceHttpRequestHandler} only compares the {@code If-Modified-Since} header
+ * with the last modified time of a resource, so the resource is resolved once more ahead of
+ * the handler. With the resource chain cache enabled, the second resolution is a cache hit.
+ *
+ * @author Xu Cheng
+ */
+public class PluginResourceNotModifiedInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginResourceNotModifiedInterceptor.class);
+
+    private static final Method GET_RESOURCE = ReflectionUtils.findMethod(
+            ResourceHttpRequestHandler.class, "getResource", HttpServletRequest.class);
+
+    static {
+        if (GET_RESOURCE != null) ReflectionUtils.makeAccessible(GET_RESOURCE);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof ResourceHttpRequestHandler) || GET_RESOURCE == null) return true;
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        // If-Modified-Since alone is validated by the handler
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == null) return true;
+
+        Resource resource = getResource((ResourceHttpRequestHandler) handler, request);
+        if (!(resource instanceof PluginHttpResource)) return true;
+        PluginHttpResource httpResource = (PluginHttpResource) resource;
+        if (!new ServletWebRequest(request, response).checkNotModified(httpResource.getETag(),
+                httpResource.lastModified())) {
+            return true;
+        }
+        // a 304 carries the caching headers of the 200 it stands for
+        HttpHeaders headers = httpResource.getResponseHeaders();
+        if (headers.getCacheControl() != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, headers.getCacheControl());
+        }
+        for (String vary : headers.getVary()) {
+            response.addHeader(HttpHeaders.VARY, vary);
+        }
+        return false;
+    }
+
+    private Resource getResource(ResourceHttpRequestHandler handler, HttpServletRequest request) {
+        try {
+            return (Resource) GET_RESOURCE.invoke(handler, request);
+        } catch (Exception e) {
+            // the handler runs into the same failure and answers it
+            log.debug("Failed to resolve resource of '{}'", request.getRequestURI(), e);
+            return null;
+        }
+    }
+}
@@ -22,11 +22,18 @@ import org.pf4j.PluginWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author <a href="https://github.com/hank-cp">Hank CP</a>
@@ -36,6 +43,85 @@ public class PluginResourceResolver extends PathResourceResolver {
     @Autowired @Lazy
     private PluginManager pluginManager;
 
+    private final PluginResourceIndex resourceIndex;
+
+    private PluginResourceStore resourceStore;
+
+    private String versionedCacheControl;
+
+    public PluginResourceResolver() {
+        this(null);
+    }
+
+    /**
+     * @param resourceIndex index used to resolve resources straight to the owning plugin,
+     *                      or {@code null} to probe every started plugin
+     */
+    public PluginResourceResolver(PluginResourceIndex resourceIndex) {
+        this.resourceIndex = resourceIndex;
+    }
+
+    /**
+     * Serve plugin resources with the content hash and encoded variants from a store.
+     * @param resourceStore the store, or {@code null} to serve resources as they are
+     */
+    public void setResourceStore(PluginResourceStore resourceStore) {
+        this.resourceStore = resourceStore;
+    }
+
+    /**
+     * Set the Cache-Control header of stored plugin resources requested with a versioned
+     * URL, e.g. {@code public, max-age=31536000, immutable}.
+     * @param versionedCacheControl the header value, or {@code null} to keep the default
+     */
+    public void setVersionedCacheControl(String versionedCacheControl) {
+        this.versionedCacheControl = versionedCacheControl;
+    }
+
+    @Override
+    protected Resource resolveResourceInternal(@Nullable HttpServletRequest request, String requestPath,
+            List<? extends Resource> locations, ResourceResolverChain chain) {
+        Resource resource = super.resolveResourceInternal(request, requestPath, locations, chain);
+        if (resourceStore == null || !(resource instanceof ClassPathResource)) return resource;
+
+        ClassPathResource classPathResource = (ClassPathResource) resource;
+        String pluginId = resourceStore.getPluginId(classPathResource.getClassLoader());
+        if (pluginId == null) return resource;
+        PluginResourceStore.StoredResource storedResource =
+                resourceStore.getStoredResource(pluginId, classPathResource.getPath());
+        if (storedResource == null) return resource;
+
+        String cacheControl = isVersionedRequest(request, requestPath) ? versionedCacheControl : null;
+        if (storedResource.getGzipFile() != null && isGzipAccepted(request)) {
+            return new PluginHttpResource(new FileSystemResource(storedResource.getGzipFile()), pluginId,
+                    resource.getFilename(), storedResource.getContentHash(), "gzip",
+                    storedResource.getGzipLength(), storedResource.getLastModified(), cacheControl);
+        }
+        if (storedResource.getFile() != null) {
+            // file backed, no need to inflate the resource from the plugin jar
+            resource = new FileSystemResource(storedResource.getFile());
+        }
+        return new PluginHttpResource(resource, pluginId, classPathResource.getFilename(),
+                storedResource.getContentHash(), null, storedResource.getContentLength(),
+                storedResource.getLastModified(), cacheControl);
+    }
+
+    private boolean isGzipAccepted(@Nullable HttpServletRequest request) {
+        if (request == null) return false;
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * Whether the version of the resource was stripped from the request path by a
+     * {@link org.springframework.web.servlet.resource.VersionResourceResolver} ahead in the chain.
+     */
+    private boolean isVersionedRequest(@Nullable HttpServletRequest request, String requestPath) {
+        if (versionedCacheControl == null || request == null) return false;
+        Object path = request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        return path instanceof String && !requestPath.startsWith((String) path);
+    }
+
     @Override
     protected Resource getResource(String resourcePath, Resource location) throws IOException {
         if (!(location instanceof ClassPathResource)) return null;
@@ -47,22 +133,39 @@ public class PluginResourceResolver extends PathResourceResolver {
             pluginManager = ApplicationContextProvider.getBean(PluginManager.class);
         }
 
-        for (PluginWrapper plugin : pluginManager.getPlugins(PluginState.STARTED)) {
-            Resource pluginLocation = new ClassPathResource(classPathLocation.getPath(), plugin.getPluginClassLoader());
-            Resource resource = pluginLocation.createRelative(resourcePath);
-            if (resource.isReadable()) {
-                if (checkResource(resource, pluginLocation)) {
-                    return resource;
-                }
-                else if (logger.isWarnEnabled()) {
-                    Resource[] allowedLocations = getAllowedLocations();
-                    logger.warn("Resource path \"" + resourcePath + "\" was successfully resolved " +
-                            "but resource \"" +	resource.getURL() + "\" is neither under the " +
-                            "current location \"" + location.getURL() + "\" nor under any of the " +
-                            "allowed locations " + (allowedLocations != null ? Arrays.asList(allowedLocations) : "[]"));
-                }
+        if (resourceIndex != null && resourceIndex.isIndexed(classPathLocation.getPath())) {
+            String pluginId = resourceIndex.getOwner(classPathLocation.getPath(), resourcePath);
+            PluginWrapper plugin = pluginId != null ? pluginManager.getPlugin(pluginId) : null;
+            if (plugin != null && plugin.getPluginState() == PluginState.STARTED) {
+                Resource resource = getPluginResource(plugin, resourcePath, classPathLocation);
+                if (resource != null) return resource;
             }
+            return super.getResource(resourcePath, location);
+        }
+
+        for (PluginWrapper plugin : pluginManager.getPlugins(PluginState.STARTED)) {
+            Resource resource = getPluginResource(plugin, resourcePath, classPathLocation);
+            if (resource != null) return resource;
         }
         return super.getResource(resourcePath, location);
     }
+
+    private Resource getPluginResource(PluginWrapper plugin, String resourcePath,
+                                       ClassPathResource location) throws IOException {
+        Resource pluginLocation = new ClassPathResource(location.getPath(), plugin.getPluginClassLoader());
+        Resource resource = pluginLocation.createRelative(resourcePath);
+        if (resource.isReadable()) {
+            if (checkResource(resource, pluginLocation)) {
+                return resource;
+            }
+            else if (logger.isWarnEnabled()) {
+                Resource[] allowedLocations = getAllowedLocations();
+                logger.warn("Resource path \"" + resourcePath + "\" was successfully resolved " +
+                        "but resource \"" +	resource.getURL() + "\" is neither under the " +
+                        "current location \"" + location.getURL() + "\" nor under any of the " +
+                        "allowed locations " + (allowedLocations != null ? Arrays.asList(allowedLocations) : "[]"));
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginStateListener;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Local store of the static resources of started plugins. When a plugin is started, the
+ * content hash of each resource listed in the {@link PluginResourceIndex} is computed,
+ * and a gzip variant of each compressible resource is written under the store location.
+ *
+ * <p>Optionally, the resources of jar plugins are extracted as well into a directory keyed
+ * by the hash of the jar, reused when the plugin is restarted and deleted when it is unloaded.
+ *
+ * <p>Brotli variants are not generated since no encoder is available on the classpath,
+ * {@code .br} siblings shipped within the plugin are still served by
+ * {@link org.springframework.web.servlet.resource.EncodedResourceResolver}.
+ *
+ * @author Xu Cheng
+ * @see PluginResourceResolver
+ */
+public class PluginResourceStore implements PluginStateListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginResourceStore.class);
+
+    private static final String INDEX_FILE_NAME = ".index";
+
+    private static final Set<String> DEFAULT_COMPRESSIBLE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "html", "htm", "css", "js", "mjs", "json", "map", "svg", "txt", "xml", "csv", "ico"));
+
+    private final Path storeLocation;
+
+    private final PluginResourceIndex resourceIndex;
+
+    private Set<String> compressibleExtensions = DEFAULT_COMPRESSIBLE_EXTENSIONS;
+
+    private final Map<String, Map<String, StoredResource>> pluginResources = new ConcurrentHashMap<>();
+
+    private final Map<ClassLoader, String> pluginClassLoaders = new ConcurrentHashMap<>();
+
+    private final Map<String, Path> pluginDirectories = new ConcurrentHashMap<>();
+
+    private boolean extractEnabled = false;
+
+    /**
+     * @param storeLocation the directory to write the plugin resource variants to
+     * @param resourceIndex the index listing the resources of each plugin
+     */
+    public PluginResourceStore(Path storeLocation, PluginResourceIndex resourceIndex) {
+        Assert.notNull(storeLocation, "storeLocation must not be null");
+        Assert.notNull(resourceIndex, "resourceIndex must not be null");
+        this.storeLocation = storeLocation.toAbsolutePath().normalize();
+        this.resourceIndex = resourceIndex;
+    }
+
+    public void setCompressibleExtensions(Set<String> compressibleExtensions) {
+        this.compressibleExtensions = compressibleExtensions;
+    }
+
+    /**
+     * Extract the resources of jar plugins to the store location, so that they are
+     * served from files instead of being inflated from the jar on each request.
+     * @param extractEnabled whether to extract the resources
+     */
+    public void setExtractEnabled(boolean extractEnabled) {
+        this.extractEnabled = extractEnabled;
+    }
+
+    public boolean isExtractEnabled() {
+        return extractEnabled;
+    }
+
+    public Path getStoreLocation() {
+        return storeLocation;
+    }
+
+    /**
+     * Get the plugin loading resources with a class loader.
+     * @param classLoader the class loader
+     * @return the id of the plugin, or {@code null} if the class loader belongs to no stored plugin
+     */
+    public String getPluginId(ClassLoader classLoader) {
+        return classLoader != null ? pluginClassLoaders.get(classLoader) : null;
+    }
+
+    /**
+     * Get a stored resource of a plugin.
+     * @param pluginId the id of the plugin
+     * @param path the classpath path of the resource
+     * @return the stored resource, or {@code null} if not stored
+     */
+    public StoredResource getStoredResource(String pluginId, String path) {
+        Map<String, StoredResource> resources = pluginResources.get(pluginId);
+        return resources != null ? resources.get(path) : null;
+    }
+
+    public void addPlugin(PluginWrapper plugin) {
+        String pluginId = plugin.getPluginId();
+        long startTs = System.currentTimeMillis();
+        Path pluginDirectory = getPluginDirectory(plugin);
+
+        Map<String, StoredResource> resources = extractEnabled ? loadStoredResources(pluginDirectory) : null;
+        if (resources == null) {
+            resources = storeResources(plugin, pluginDirectory);
+        } else {
+            log.debug("Reuse extracted static resources of plugin {} in {}", pluginId, pluginDirectory);
+        }
+        pluginResources.put(pluginId, resources);
+        pluginClassLoaders.put(plugin.getPluginClassLoader(), pluginId);
+        log.debug("Stored {} static resources of plugin {} in {}ms", resources.size(), pluginId,
+                System.currentTimeMillis() - startTs);
+    }
+
+    /**
+     * Release the stored resources of a plugin.
+     * @param plugin the plugin
+     * @param unloaded whether the plugin is unloaded, extracted resources are
+     *                 kept for a restart otherwise
+     */
+    public void removePlugin(PluginWrapper plugin, boolean unloaded) {
+        pluginClassLoaders.values().remove(plugin.getPluginId());
+        pluginResources.remove(plugin.getPluginId());
+        if (extractEnabled && !unloaded) return;
+
+        Path pluginDirectory = pluginDirectories.remove(plugin.getPluginId());
+        deleteDirectory(plugin.getPluginId(), pluginDirectory != null ? pluginDirectory : getPluginDirectory(plugin));
+    }
+
+    @Override
+    public void pluginStateChanged(PluginStateEvent event) {
+        PluginWrapper plugin = event.getPlugin();
+        boolean unloaded = event.getSource().getPlugin(plugin.getPluginId()) == null;
+        if (plugin.getPluginState() == PluginState.STARTED) {
+            addPlugin(plugin);
+        } else if (event.getOldState() == PluginState.STARTED || unloaded) {
+            removePlugin(plugin, unloaded);
+        }
+    }
+
+    /**
+     * Get the directory of the stored resources of a plugin. Extracted resources of a jar
+     * plugin are keyed by the hash of the jar, so that they are reused until the jar changes.
+     */
+    protected Path getPluginDirectory(PluginWrapper plugin) {
+        String pluginId = plugin.getPluginId();
+        Path pluginPath = plugin.getPluginPath();
+        if (!extractEnabled || pluginPath == null || !Files.isRegularFile(pluginPath)) {
+            return storeLocation.resolve(pluginId);
+        }
+        return pluginDirectories.computeIfAbsent(pluginId, key -> {
+            try (InputStream in = Files.newInputStream(pluginPath)) {
+                return storeLocation.resolve(pluginId + "-" + DigestUtils.md5DigestAsHex(in));
+            } catch (IOException e) {
+                log.warn("Failed to hash plugin {}", pluginPath, e);
+                return storeLocation.resolve(pluginId);
+            }
+        });
+    }
+
+    protected boolean isCompressible(String path) {
+        String extension = StringUtils.getFilenameExtension(path);
+        return extension != null && compressibleExtensions.contains(extension.toLowerCase());
+    }
+
+    private Map<String, StoredResource> storeResources(PluginWrapper plugin, Path pluginDirectory) {
+        String pluginId = plugin.getPluginId();
+        deleteStaleDirectories(pluginId);
+        deleteDirectory(pluginId, pluginDirectory);
+
+        Map<String, StoredResource> resources = new HashMap<>();
+        for (String path : resourceIndex.getResources(pluginId)) {
+            try {
+                StoredResource resource = storeResource(plugin.getPluginClassLoader(), path, pluginDirectory);
+                if (resource != null) resources.put(path, resource);
+            } catch (IOException e) {
+                log.warn("Failed to store resource {} of plugin {}", path, pluginId, e);
+            }
+        }
+        if (extractEnabled) {
+            try {
+                saveStoredResources(pluginDirectory, resources);
+            } catch (IOException e) {
+                log.warn("Failed to save resource store index of plugin {}", pluginId, e);
+            }
+        }
+        return resources;
+    }
+
+    private StoredResource storeResource(ClassLoader classLoader, String path,
+                                         Path pluginDirectory) throws IOException {
+        ClassPathResource resource = new ClassPathResource(path, classLoader);
+        Path file = extractEnabled ? resolveFile(pluginDirectory, path) : null;
+        Path gzipFile = isCompressible(path) ? resolveFile(pluginDirectory, path + ".gz") : null;
+        if ((extractEnabled && file == null) || (isCompressible(path) && gzipFile == null)) return null;
+
+        MessageDigest digest = createDigest();
+        long contentLength;
+        if (file != null) {
+            try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+                contentLength = Files.copy(in, file);
+            }
+            if (gzipFile != null) {
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+                    StreamUtils.copy(in, out);
+                }
+            }
+        } else {
+            try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+                if (gzipFile != null) {
+                    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+                        contentLength = StreamUtils.copy(in, out);
+                    }
+                } else {
+                    contentLength = StreamUtils.drain(in);
+                }
+            }
+        }
+
+        long gzipLength = 0;
+        if (gzipFile != null) {
+            gzipLength = Files.size(gzipFile);
+            if (gzipLength >= contentLength) {
+                // not worth serving the encoded variant
+                Files.delete(gzipFile);
+                gzipFile = null;
+            }
+        }
+        return new StoredResource(toHex(digest.digest()), contentLength, resource.lastModified(),
+                file, gzipFile, gzipLength);
+    }
+
+    private static Path resolveFile(Path directory, String path) throws IOException {
+        Path file = directory.resolve(path).normalize();
+        if (!file.startsWith(directory)) return null;
+        Files.createDirectories(file.getParent());
+        return file;
+    }
+
+    /**
+     * Load the resources extracted by a previous start of the plugin. The extracted files
+     * might have been removed since, e.g. by a temporary directory cleaner.
+     * @return the stored resources, or {@code null} if the plugin was not completely extracted
+     * or an extracted file is missing
+     */
+    private Map<String, StoredResource> loadStoredResources(Path pluginDirectory) {
+        Path indexFile = pluginDirectory.resolve(INDEX_FILE_NAME);
+        if (!Files.isRegularFile(indexFile)) return null;
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            properties.load(in);
+            Map<String, StoredResource> resources = new HashMap<>();
+            for (String path : properties.stringPropertyNames()) {
+                String[] values = StringUtils.commaDelimitedListToStringArray(properties.getProperty(path));
+                Path gzipFile = Long.parseLong(values[3]) > 0 ? pluginDirectory.resolve(path + ".gz") : null;
+                StoredResource resource = new StoredResource(values[0], Long.parseLong(values[1]),
+                        Long.parseLong(values[2]), pluginDirectory.resolve(path), gzipFile, Long.parseLong(values[3]));
+                if (!isExtracted(resource)) {
+                    log.info("Extracted resource {} of {} is missing, extract again", path, pluginDirectory);
+                    return null;
+                }
+                resources.put(path, resource);
+            }
+            return resources;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load resource store index {}", indexFile, e);
+            return null;
+        }
+    }
+
+    private static boolean isExtracted(StoredResource resource) throws IOException {
+        if (!Files.isRegularFile(resource.getFile()) || Files.size(resource.getFile()) != resource.getContentLength()) {
+            return false;
+        }
+        return resource.getGzipFile() == null || (Files.isRegularFile(resource.getGzipFile())
+                && Files.size(resource.getGzipFile()) == resource.getGzipLength());
+    }
+
+    private void saveStoredResources(Path pluginDirectory, Map<String, StoredResource> resources) throws IOException {
+        Properties properties = new Properties();
+        resources.forEach((path, resource) -> properties.setProperty(path, resource.getContentHash() + ","
+                + resource.getContentLength() + "," + resource.getLastModified() + ","
+                + (resource.getGzipFile() != null ? resource.getGzipLength() : 0)));
+        Files.createDirectories(pluginDirectory);
+        // written last, marks the directory as completely extracted
+        try (OutputStream out = Files.newOutputStream(pluginDirectory.resolve(INDEX_FILE_NAME))) {
+            properties.store(out, null);
+        }
+    }
+
+    private void deleteStaleDirectories(String pluginId) {
+        if (!extractEnabled || !Files.isDirectory(storeLocation)) return;
+        Path current = pluginDirectories.get(pluginId);
+        try (Stream<Path> directories = Files.list(storeLocation)) {
+            directories.filter(directory -> !directory.equals(current))
+                    .filter(directory -> isPluginDirectory(pluginId, directory.getFileName().toString()))
+                    .forEach(directory -> deleteDirectory(pluginId, directory));
+        } catch (IOException e) {
+            log.warn("Failed to clean resource store of plugin {}", pluginId, e);
+        }
+    }
+
+    private static boolean isPluginDirectory(String pluginId, String name) {
+        if (name.equals(pluginId)) return true;
+        return name.length() == pluginId.length() + 33 && name.startsWith(pluginId + "-")
+                && name.substring(pluginId.length() + 1).chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    private static void deleteDirectory(String pluginId, Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            log.warn("Failed to clean resource store of plugin {}", pluginId, e);
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Content hash and encoded variant of a plugin resource.
+     */
+    public static class StoredResource {
+
+        private final String contentHash;
+
+        private final long contentLength;
+
+        private final long lastModified;
+
+        private final Path file;
+
+        private final Path gzipFile;
+
+        private final long gzipLength;
+
+        StoredResource(String contentHash, long contentLength, long lastModified,
+                       Path file, Path gzipFile, long gzipLength) {
+            this.contentHash = contentHash;
+            this.contentLength = contentLength;
+            this.lastModified = lastModified;
+            this.file = file;
+            this.gzipFile = gzipFile;
+            this.gzipLength = gzipLength;
+        }
+
+        /**
+         * @return the MD5 hex digest of the resource content
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the extracted resource, or {@code null} if not extracted
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return the gzip variant of the resource, or {@code null} if not compressible
+         */
+        public Path getGzipFile() {
+            return gzipFile;
+        }
+
+        public long getGzipLength() {
+            return gzipLength;
+        }
+    }
+}
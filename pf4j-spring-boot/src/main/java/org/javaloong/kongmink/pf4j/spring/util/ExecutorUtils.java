@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Create {@link ExecutorService}s that run on virtual threads when the running JDK
+ * provides them, and on a bounded pool of platform threads otherwise.
+ *
+ * <p>The project is compiled against Java 8, so virtual threads are looked up reflectively.
+ *
+ * @author Xu Cheng
+ */
+public class ExecutorUtils {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = ReflectionUtils.findMethod(
+            Executors.class, "newVirtualThreadPerTaskExecutor");
+
+    private ExecutorUtils() {
+    }
+
+    /**
+     * Whether the running JDK can create virtual threads.
+     * @return true if virtual threads are available
+     */
+    public static boolean isVirtualThreadSupported() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor == null) return false;
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task.
+     * @return the executor, or {@code null} if virtual threads are not available
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null) return null;
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (Exception ex) {
+            // virtual threads are a preview feature on JDK 19/20
+            return null;
+        }
+    }
+
+    /**
+     * Create an executor that runs on virtual threads if possible, otherwise on
+     * at most {@code maxPoolSize} daemon platform threads.
+     * @param threadNamePrefix the name prefix of platform threads
+     * @param maxPoolSize the maximum number of platform threads
+     * @return the executor
+     */
+    public static ExecutorService newExecutorService(String threadNamePrefix, int maxPoolSize) {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor != null) return executor;
+
+        return newThreadPoolExecutor(threadNamePrefix, maxPoolSize, new LinkedBlockingQueue<>());
+    }
+
+    /**
+     * Create an executor that runs on virtual threads if possible, otherwise on at most
+     * {@code maxPoolSize} daemon platform threads with a bounded queue. Tasks submitted while
+     * the queue is full run on the submitting thread, which slows down submitters instead
+     * of queueing without bound.
+     * @param threadNamePrefix the name prefix of platform threads
+     * @param maxPoolSize the maximum number of platform threads
+     * @param queueCapacity the maximum number of tasks waiting for a platform thread
+     * @return the executor
+     */
+    public static ExecutorService newExecutorService(String threadNamePrefix, int maxPoolSize, int queueCapacity) {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor != null) return executor;
+
+        ThreadPoolExecutor poolExecutor = newThreadPoolExecutor(threadNamePrefix, maxPoolSize,
+                new LinkedBlockingQueue<>(queueCapacity));
+        poolExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return poolExecutor;
+    }
+
+    private static ThreadPoolExecutor newThreadPoolExecutor(String threadNamePrefix, int maxPoolSize,
+                                                            BlockingQueue<Runnable> queue) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(maxPoolSize, maxPoolSize,
+                60L, TimeUnit.SECONDS, queue, threadFactory);
+        poolExecutor.allowCoreThreadTimeOut(true);
+        return poolExecutor;
+    }
+}
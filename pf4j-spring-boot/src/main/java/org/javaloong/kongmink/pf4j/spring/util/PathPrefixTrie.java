@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.javaloong.kongmink.pf4j.spring.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * A trie of URL path prefixes, matched segment by segment. A prefix {@code /foo/bar}
+ * matches {@code /foo/bar} and {@code /foo/bar/baz}, but not {@code /foo/barbaz}.
+ *
+ * <p>Lookups are lock free, updates are serialized.
+ *
+ * @param <T> the type of the values
+ * @author Xu Cheng
+ */
+public class PathPrefixTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    private volatile int size;
+
+    /**
+     * Associate a value with a path prefix.
+     * @param prefix the path prefix
+     * @param value the value
+     * @return the value previously associated with the prefix, or {@code null}
+     */
+    public synchronized T put(String prefix, T value) {
+        Assert.notNull(value, "value must not be null");
+        Node<T> node = root;
+        for (String segment : segments(prefix)) {
+            node = node.children.computeIfAbsent(segment, key -> new Node<>());
+        }
+        T previous = node.value;
+        node.value = value;
+        if (previous == null) size++;
+        return previous;
+    }
+
+    /**
+     * Get the value associated with exactly the given path prefix.
+     * @param prefix the path prefix
+     * @return the value, or {@code null}
+     */
+    public T get(String prefix) {
+        Node<T> node = find(prefix);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Remove the value associated with a path prefix.
+     * @param prefix the path prefix
+     * @return the removed value, or {@code null}
+     */
+    public synchronized T remove(String prefix) {
+        Node<T> node = find(prefix);
+        if (node == null || node.value == null) return null;
+        T previous = node.value;
+        node.value = null;
+        size--;
+        return previous;
+    }
+
+    /**
+     * Remove a path prefix only if it is currently associated with the given value.
+     * @param prefix the path prefix
+     * @param value the value expected to be associated with the prefix
+     * @return true if the value was removed
+     */
+    public synchronized boolean remove(String prefix, T value) {
+        Node<T> node = find(prefix);
+        if (node == null || node.value == null || node.value != value) return false;
+        node.value = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Find the value of the longest prefix matching the given path.
+     * @param path the path
+     * @return the matched value, or {@code null}
+     */
+    public T match(String path) {
+        Node<T> node = root;
+        T matched = node.value;
+        int length = path.length();
+        int start = 0;
+        while (start < length && node != null) {
+            if (path.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) end = length;
+            node = node.children.get(path.substring(start, end));
+            if (node != null && node.value != null) matched = node.value;
+            start = end;
+        }
+        return matched;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private Node<T> find(String prefix) {
+        Node<T> node = root;
+        for (String segment : segments(prefix)) {
+            node = node.children.get(segment);
+            if (node == null) return null;
+        }
+        return node;
+    }
+
+    private static String[] segments(String prefix) {
+        Assert.notNull(prefix, "prefix must not be null");
+        return StringUtils.tokenizeToStringArray(prefix, "/");
+    }
+
+    private static class Node<T> {
+
+        private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+
+        private volatile T value;
+    }
+}
@@ -0,0 +1,90 @@
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.DefaultPluginDescriptor;
+import org.pf4j.PluginDescriptor;
+import org.pf4j.PluginDescriptorFinder;
+import org.pf4j.PluginRuntimeException;
+import org.springframework.util.FileSystemUtils;
+
+public class CachingPluginDescriptorFinderTest {
+
+    private Path root;
+    private PluginDescriptorFinder delegate;
+    private CachingPluginDescriptorFinder descriptorFinder;
+
+    @BeforeEach
+    void init() throws Exception {
+        root = Paths.get(new File("build", "descriptor-finder").getAbsolutePath());
+        Files.createDirectories(root);
+        delegate = mock(PluginDescriptorFinder.class);
+        descriptorFinder = new CachingPluginDescriptorFinder(delegate);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void find_Unchanged_ShouldReturnCachedDescriptor() throws Exception {
+        Path pluginPath = Files.write(root.resolve("plugin1.jar"), new byte[] { 1 });
+        PluginDescriptor descriptor = createDescriptor("plugin1");
+        when(delegate.find(pluginPath)).thenReturn(descriptor);
+
+        assertThat(descriptorFinder.find(pluginPath), sameInstance(descriptor));
+        assertThat(descriptorFinder.find(pluginPath), sameInstance(descriptor));
+        verify(delegate, times(1)).find(pluginPath);
+        assertThat(descriptorFinder.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void find_Modified_ShouldReadDescriptorAgain() throws Exception {
+        Path pluginPath = Files.write(root.resolve("plugin1.jar"), new byte[] { 1 });
+        when(delegate.find(pluginPath)).thenReturn(createDescriptor("plugin1"));
+        descriptorFinder.find(pluginPath);
+
+        Files.write(pluginPath, new byte[] { 1, 2 });
+        Files.setLastModifiedTime(pluginPath, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        descriptorFinder.find(pluginPath);
+        verify(delegate, times(2)).find(pluginPath);
+    }
+
+    @Test
+    public void find_Failure_ShouldCacheFailure() throws Exception {
+        Path pluginPath = Files.write(root.resolve("broken.jar"), new byte[] { 1 });
+        when(delegate.find(pluginPath)).thenThrow(new PluginRuntimeException("broken"));
+
+        assertThrows(PluginRuntimeException.class, () -> descriptorFinder.find(pluginPath));
+        assertThrows(PluginRuntimeException.class, () -> descriptorFinder.find(pluginPath));
+        verify(delegate, times(1)).find(pluginPath);
+    }
+
+    @Test
+    public void find_Directory_ShouldNotCache() throws Exception {
+        Path pluginPath = Files.createDirectories(root.resolve("plugin1"));
+        when(delegate.find(pluginPath)).thenReturn(createDescriptor("plugin1"));
+
+        descriptorFinder.find(pluginPath);
+        descriptorFinder.find(pluginPath);
+        verify(delegate, times(2)).find(pluginPath);
+        assertThat(descriptorFinder.size(), is(0));
+    }
+
+    private PluginDescriptor createDescriptor(String pluginId) {
+        return new DefaultPluginDescriptor(pluginId, "", "", "1.0.0", "*", "", "");
+    }
+}
@@ -0,0 +1,160 @@
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStartingError;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+
+public class PluginLifecycleJobManagerTest {
+
+    private SpringBootPluginManager pluginManager;
+    private ExecutorService executor;
+    private PluginLifecycleJobManager jobManager;
+
+    @BeforeEach
+    void init() {
+        pluginManager = mock(SpringBootPluginManager.class);
+        executor = Executors.newSingleThreadExecutor();
+        jobManager = new PluginLifecycleJobManager(pluginManager, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobManager.destroy();
+    }
+
+    @Test
+    public void submit_SamePluginAndOperation_ShouldDeduplicate() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(pluginManager.startPlugin("plugin1")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return PluginState.STARTED;
+        });
+
+        PluginLifecycleJob job = jobManager.submit(PluginLifecycleJob.Operation.START, "plugin1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertThat(job.getStatus(), is(PluginLifecycleJob.Status.RUNNING));
+        assertThat(jobManager.submit(PluginLifecycleJob.Operation.START, "plugin1"), sameInstance(job));
+        PluginLifecycleJob stopJob = jobManager.submit(PluginLifecycleJob.Operation.STOP, "plugin1");
+        assertThat(stopJob, not(sameInstance(job)));
+
+        release.countDown();
+        awaitDone(stopJob);
+        assertThat(job.getStatus(), is(PluginLifecycleJob.Status.COMPLETED));
+        assertThat(job.getPluginState(), is(PluginState.STARTED));
+        assertNotNull(job.getDuration());
+        verify(pluginManager, times(1)).startPlugin("plugin1");
+        assertThat(jobManager.getJob(job.getId()), sameInstance(job));
+        assertThat(jobManager.submit(PluginLifecycleJob.Operation.START, "plugin1"), not(sameInstance(job)));
+    }
+
+    @Test
+    public void submit_StartingErrorRecorded_ShouldFailWithError() throws Exception {
+        PluginStartingError error = new PluginStartingError("plugin1", "failed", "failed");
+        when(pluginManager.startPlugin("plugin1")).thenAnswer(invocation -> {
+            when(pluginManager.getPluginStartingError("plugin1")).thenReturn(error);
+            return PluginState.STOPPED;
+        });
+
+        PluginLifecycleJob job = jobManager.submit(PluginLifecycleJob.Operation.START, "plugin1");
+        awaitDone(job);
+        assertThat(job.getStatus(), is(PluginLifecycleJob.Status.FAILED));
+        assertThat(job.getError(), sameInstance(error));
+        assertThat(job.getPluginState(), is(PluginState.STOPPED));
+    }
+
+    @Test
+    public void submit_OverRetainedJobs_ShouldForgetOldestFinishedJobs() throws Exception {
+        jobManager.setMaxRetainedJobs(1);
+        PluginLifecycleJob job1 = jobManager.submit(PluginLifecycleJob.Operation.STOP, "plugin1");
+        awaitDone(job1);
+        PluginLifecycleJob job2 = jobManager.submit(PluginLifecycleJob.Operation.STOP, "plugin2");
+        awaitDone(job2);
+
+        assertNull(jobManager.getJob(job1.getId()));
+        assertThat(jobManager.getJob(job2.getId()), sameInstance(job2));
+    }
+
+    @Test
+    public void submit_Restart_ShouldReportStateAfterStarting() throws Exception {
+        PluginWrapper pluginWrapper = mock(PluginWrapper.class);
+        when(pluginWrapper.getPluginState()).thenReturn(PluginState.STARTED);
+        when(pluginManager.getPlugin("plugin1")).thenReturn(pluginWrapper);
+        when(pluginManager.restartPlugin("plugin1")).thenReturn(PluginState.STOPPED);
+
+        PluginLifecycleJob job = jobManager.submit(PluginLifecycleJob.Operation.RESTART, "plugin1");
+        awaitDone(job);
+        assertThat(job.getStatus(), is(PluginLifecycleJob.Status.COMPLETED));
+        assertThat(job.getPluginState(), is(PluginState.STARTED));
+    }
+
+    @Test
+    public void execute_WhileJobRuns_ShouldWaitForJobOnLifecycleThread() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> jobThread = new AtomicReference<>();
+        when(pluginManager.startPlugin("plugin1")).thenAnswer(invocation -> {
+            jobThread.set(Thread.currentThread());
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return PluginState.STARTED;
+        });
+        PluginLifecycleJob job = jobManager.submit(PluginLifecycleJob.Operation.START, "plugin1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> executed = caller.submit(() -> jobManager.execute(job::isDone));
+            Thread.sleep(100);
+            assertFalse(executed.isDone());
+
+            release.countDown();
+            assertTrue(executed.get(5, TimeUnit.SECONDS));
+        } finally {
+            caller.shutdownNow();
+        }
+        assertThat(jobManager.execute(Thread::currentThread), sameInstance(jobThread.get()));
+    }
+
+    @Test
+    public void execute_FromJobTask_ShouldRunAtOnce() throws Exception {
+        PluginLifecycleJob job = jobManager.submit(PluginLifecycleJob.Operation.INSTALL, null,
+                () -> jobManager.execute(() -> "done"));
+        awaitDone(job);
+        assertThat(job.getStatus(), is(PluginLifecycleJob.Status.COMPLETED));
+        assertThat(job.getResult(), is((Object) "done"));
+    }
+
+    @Test
+    public void execute_TaskFails_ShouldRethrow() {
+        IllegalStateException error = new IllegalStateException("broken");
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> jobManager.execute(() -> {
+            throw error;
+        }));
+        assertThat(thrown, sameInstance(error));
+    }
+
+    private static void awaitDone(PluginLifecycleJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.isDone() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isDone());
+    }
+}
@@ -0,0 +1,285 @@
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginEventBroadcaster;
+import org.javaloong.kongmink.pf4j.spring.boot.context.PluginStateChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.DefaultPluginDescriptor;
+import org.pf4j.Plugin;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+public class SpringBootPluginManagerTest {
+
+    private final File pluginsDir = new File("build", "plugin-manager-test");
+
+    private final Map<String, AtomicInteger> startCounts = new ConcurrentHashMap<>();
+    private final List<String> startOrder = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger stateChangedEvents = new AtomicInteger();
+
+    private GenericApplicationContext applicationContext;
+    private TestPluginManager pluginManager;
+
+    @BeforeEach
+    void init() {
+        pluginsDir.mkdirs();
+        applicationContext = new GenericApplicationContext();
+        applicationContext.addApplicationListener(
+                (ApplicationListener<PluginStateChangedEvent>) event -> stateChangedEvents.incrementAndGet());
+        applicationContext.refresh();
+        pluginManager = new TestPluginManager(pluginsDir.toPath());
+        pluginManager.setApplicationContext(applicationContext);
+        pluginManager.setLifecycleParallelism(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        applicationContext.close();
+        FileSystemUtils.deleteRecursively(pluginsDir);
+    }
+
+    @Test
+    public void applyToPlugins_DiamondDependencies_ShouldStartEachPluginOnceAfterItsDependencies() {
+        pluginManager.addPlugin("a", "", null);
+        pluginManager.addPlugin("b", "a", null);
+        pluginManager.addPlugin("c", "a", null);
+        pluginManager.addPlugin("d", "b, c", null);
+
+        List<PluginLifecycleResult> results = pluginManager.applyToPlugins(
+                PluginLifecycleJob.Operation.START, Collections.singletonList("d"));
+
+        assertThat(results.size(), is(1));
+        assertTrue(results.get(0).isSuccess());
+        assertThat(results.get(0).getPluginState(), is(PluginState.STARTED));
+        for (String pluginId : Arrays.asList("a", "b", "c", "d")) {
+            assertThat(pluginManager.getPlugin(pluginId).getPluginState(), is(PluginState.STARTED));
+            assertThat(startCounts.get(pluginId).get(), is(1));
+        }
+        assertThat(startOrder.get(0), is("a"));
+        assertThat(startOrder.get(3), is("d"));
+        assertThat(stateChangedEvents.get(), is(1));
+    }
+
+    @Test
+    public void applyToPlugins_DependencyFails_ShouldFailDependentsWithoutStartingDependencyAgain() {
+        pluginManager.addPlugin("a", "", () -> {
+            throw new IllegalStateException("broken");
+        });
+        pluginManager.addPlugin("b", "a", null);
+        pluginManager.addPlugin("c", "a", null);
+        pluginManager.addPlugin("d", "", null);
+
+        List<PluginLifecycleResult> results = pluginManager.applyToPlugins(
+                PluginLifecycleJob.Operation.START, Arrays.asList("b", "c", "d"));
+
+        assertThat(startCounts.get("a").get(), is(1));
+        assertNull(startCounts.get("b"));
+        assertNull(startCounts.get("c"));
+        for (PluginLifecycleResult result : results.subList(0, 2)) {
+            assertFalse(result.isSuccess());
+            assertThat(result.getPluginState(), is(PluginState.RESOLVED));
+            assertThat(result.getError().getErrorMessage(), containsString("'a'"));
+        }
+        assertTrue(results.get(2).isSuccess());
+        assertNotNull(pluginManager.getPluginStartingError("a"));
+        assertThat(stateChangedEvents.get(), is(1));
+    }
+
+    @Test
+    public void applyToPlugins_IndependentPlugins_ShouldStartConcurrently() {
+        // every start waits for the others, starting one by one would time out
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        Runnable awaitOthers = () -> {
+            try {
+                barrier.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        pluginManager.addPlugin("a", "", awaitOthers);
+        pluginManager.addPlugin("b", "", awaitOthers);
+        pluginManager.addPlugin("c", "", awaitOthers);
+
+        List<PluginLifecycleResult> results = pluginManager.applyToPlugins(
+                PluginLifecycleJob.Operation.START, Arrays.asList("a", "b", "c"));
+
+        for (PluginLifecycleResult result : results) {
+            assertTrue(result.isSuccess());
+            assertThat(result.getPluginState(), is(PluginState.STARTED));
+        }
+    }
+
+    @Test
+    public void startPlugin_BlockingEventSubscriber_ShouldComplete() throws Exception {
+        PluginEventBroadcaster eventBroadcaster = new PluginEventBroadcaster(1);
+        pluginManager.addPluginStateListener(eventBroadcaster);
+        CountDownLatch release = new CountDownLatch(1);
+        eventBroadcaster.subscribe(0, event -> release.await());
+        pluginManager.addPlugin("a", "", null);
+        pluginManager.addPlugin("b", "", null);
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                assertThat(pluginManager.startPlugin("a"), is(PluginState.STARTED));
+                assertThat(pluginManager.startPlugin("b"), is(PluginState.STARTED));
+                assertThat(pluginManager.stopPlugin("a"), is(PluginState.STOPPED));
+            });
+        } finally {
+            release.countDown();
+            eventBroadcaster.destroy();
+        }
+    }
+
+    @Test
+    public void invokeExtensions_FailingAndSlowExtensions_ShouldReportEachInOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        pluginManager.setExtensionExecutor(executor);
+        pluginManager.extensions.add((Greeter) () -> "a");
+        pluginManager.extensions.add((Greeter) () -> {
+            throw new IllegalStateException("broken");
+        });
+        pluginManager.extensions.add((Greeter) () -> sleep(10000));
+        pluginManager.extensions.add((Greeter) () -> "d");
+        try {
+            List<ExtensionResult<String>> results = pluginManager.invokeExtensions(
+                    Greeter.class, Greeter::greet, 500, TimeUnit.MILLISECONDS);
+
+            assertThat(results.size(), is(4));
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).getExtension(), sameInstance(pluginManager.extensions.get(i)));
+            }
+            assertTrue(results.get(0).isSuccess());
+            assertThat(results.get(0).getValue(), is("a"));
+            assertFalse(results.get(1).isSuccess());
+            assertThat(results.get(1).getError(), instanceOf(IllegalStateException.class));
+            assertTrue(results.get(2).isTimedOut());
+            assertNull(results.get(2).getError());
+            assertThat(results.get(2).getElapsed(TimeUnit.MILLISECONDS) >= 500, is(true));
+            assertTrue(results.get(3).isSuccess());
+            assertThat(results.get(3).getValue(), is("d"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void invokeExtensions_SaturatedExecutor_ShouldReportRejection() {
+        // a single thread and no queue, the second invocation is rejected
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.SECONDS,
+                new SynchronousQueue<>());
+        pluginManager.setExtensionExecutor(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        pluginManager.extensions.add((Greeter) () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "a";
+        });
+        pluginManager.extensions.add((Greeter) () -> "b");
+        try {
+            List<ExtensionResult<String>> results = pluginManager.invokeExtensions(
+                    Greeter.class, Greeter::greet, 200, TimeUnit.MILLISECONDS);
+
+            assertThat(results.size(), is(2));
+            assertTrue(results.get(0).isTimedOut());
+            assertFalse(results.get(1).isSuccess());
+            assertFalse(results.get(1).isTimedOut());
+            assertThat(results.get(1).getError(), instanceOf(RejectedExecutionException.class));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    interface Greeter {
+
+        String greet();
+    }
+
+    private class TestPluginManager extends SpringBootPluginManager {
+
+        final List<Object> extensions = new ArrayList<>();
+
+        TestPluginManager(Path pluginsRoot) {
+            super(pluginsRoot);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> getExtensions(Class<T> type) {
+            return (List<T>) new ArrayList<>(extensions);
+        }
+
+        void addPlugin(String pluginId, String dependencies, Runnable onStart) {
+            TestPluginDescriptor descriptor = new TestPluginDescriptor(pluginId, dependencies);
+            PluginWrapper pluginWrapper = new PluginWrapper(this, descriptor, new File(pluginsDir, pluginId).toPath(),
+                    getClass().getClassLoader()) {
+                private final Plugin plugin = new Plugin(this) {
+                    @Override
+                    public void start() {
+                        startCounts.computeIfAbsent(pluginId, k -> new AtomicInteger()).incrementAndGet();
+                        if (onStart != null) onStart.run();
+                        startOrder.add(pluginId);
+                    }
+                };
+
+                @Override
+                public Plugin getPlugin() {
+                    return plugin;
+                }
+            };
+            pluginWrapper.setPluginState(PluginState.RESOLVED);
+            plugins.put(pluginId, pluginWrapper);
+            resolvedPlugins.add(pluginWrapper);
+            // stopping a plugin looks up its dependents in the dependency graph
+            dependencyResolver.resolve(plugins.values().stream()
+                    .map(PluginWrapper::getDescriptor).collect(Collectors.toList()));
+        }
+    }
+
+    private static class TestPluginDescriptor extends DefaultPluginDescriptor {
+
+        TestPluginDescriptor(String pluginId, String dependencies) {
+            super(pluginId, null, Plugin.class.getName(), "1.0.0", "*", null, null);
+            setDependencies(dependencies);
+        }
+    }
+}
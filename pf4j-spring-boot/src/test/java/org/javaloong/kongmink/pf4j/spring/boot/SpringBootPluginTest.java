@@ -0,0 +1,129 @@
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+
+public class SpringBootPluginTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    @BeforeEach
+    void init() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("test.name", "initial");
+        properties.put("test.count", 2);
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(
+                SpringBootstrap.PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME, properties));
+        context.register(TestConfiguration.class);
+        context.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void rebindConfigurationProperties_PropertyChanged_ShouldUpdateBean() {
+        TestProperties testProperties = context.getBean(TestProperties.class);
+        assertThat(testProperties.getName(), is("initial"));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("test.name", "changed");
+        properties.put("test.count", 3);
+        replacePluginProperties(properties);
+        SpringBootPlugin.rebindConfigurationProperties(context);
+
+        assertThat(context.getBean(TestProperties.class), sameInstance(testProperties));
+        assertThat(testProperties.getName(), is("changed"));
+        assertThat(testProperties.getCount(), is(3));
+    }
+
+    @Test
+    public void rebindConfigurationProperties_PropertyRemoved_ShouldResetToDefault() {
+        TestProperties testProperties = context.getBean(TestProperties.class);
+        assertThat(testProperties.getCount(), is(2));
+
+        replacePluginProperties(Collections.singletonMap("test.name", "initial"));
+        SpringBootPlugin.rebindConfigurationProperties(context);
+
+        assertThat(testProperties.getName(), is("initial"));
+        assertThat(testProperties.getCount(), is(1));
+    }
+
+    @Test
+    public void rebindConfigurationProperties_PropertyAdded_ShouldBindIt() {
+        TestProperties testProperties = context.getBean(TestProperties.class);
+        assertThat(testProperties.getDescription(), is(nullValue()));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("test.name", "initial");
+        properties.put("test.count", 2);
+        properties.put("test.description", "added");
+        replacePluginProperties(properties);
+        SpringBootPlugin.rebindConfigurationProperties(context);
+
+        assertThat(testProperties.getDescription(), is("added"));
+        assertThat(testProperties.getCount(), is(2));
+    }
+
+    private void replacePluginProperties(Map<String, Object> properties) {
+        MutablePropertySources propertySources = context.getEnvironment().getPropertySources();
+        propertySources.replace(SpringBootstrap.PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME, new MapPropertySource(
+                SpringBootstrap.PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME, properties));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(TestProperties.class)
+    static class TestConfiguration {
+    }
+
+    @ConfigurationProperties("test")
+    public static class TestProperties {
+
+        private String name = "default";
+
+        private int count = 1;
+
+        private String description;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+    }
+}
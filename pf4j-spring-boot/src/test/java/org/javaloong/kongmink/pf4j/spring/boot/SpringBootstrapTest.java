@@ -0,0 +1,110 @@
+package org.javaloong.kongmink.pf4j.spring.boot;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.javaloong.kongmink.pf4j.spring.boot.env.ConfigurationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.DefaultPluginDescriptor;
+import org.pf4j.PluginWrapper;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+public class SpringBootstrapTest {
+
+    private ConfigurationRepository configurationRepository;
+    private SpringBootstrap springBootstrap;
+    private StandardEnvironment environment;
+    private Map<String, Object> pluginProperties;
+
+    @BeforeEach
+    void init() {
+        configurationRepository = mock(ConfigurationRepository.class);
+        pluginProperties = new HashMap<>();
+        when(configurationRepository.get("plugin1")).thenAnswer(invocation -> new HashMap<>(pluginProperties));
+        SpringBootPluginManager pluginManager = mock(SpringBootPluginManager.class);
+        when(pluginManager.getConfigurationRepository()).thenReturn(configurationRepository);
+        PluginWrapper pluginWrapper = new PluginWrapper(pluginManager, new DefaultPluginDescriptor("plugin1",
+                null, TestPlugin.class.getName(), "1.0.0", "*", null, null), Paths.get("plugin1"),
+                getClass().getClassLoader());
+        springBootstrap = new SpringBootstrap(new TestPlugin(pluginWrapper));
+
+        environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test",
+                Collections.singletonMap("pf4j-plugin.plugin-config-enabled", true)));
+    }
+
+    @Test
+    public void refreshPluginPropertySources_PropertyAdded_ShouldAddPropertySource() {
+        springBootstrap.bindToSpringApplication(environment);
+        assertNull(environment.getPropertySources().get(SpringBootstrap.PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME));
+
+        pluginProperties.put("test.name", "added");
+        Set<String> changedPropertyNames = springBootstrap.refreshPluginPropertySources(environment);
+        assertThat(changedPropertyNames, is(Collections.singleton("test.name")));
+        assertThat(environment.getProperty("test.name"), is("added"));
+    }
+
+    @Test
+    public void refreshPluginPropertySources_PropertyChanged_ShouldReplaceValue() {
+        pluginProperties.put("test.name", "initial");
+        pluginProperties.put("test.count", 1);
+        springBootstrap.bindToSpringApplication(environment);
+        assertThat(environment.getProperty("test.name"), is("initial"));
+
+        pluginProperties.put("test.name", "changed");
+        Set<String> changedPropertyNames = springBootstrap.refreshPluginPropertySources(environment);
+        assertThat(changedPropertyNames, is(Collections.singleton("test.name")));
+        assertThat(environment.getProperty("test.name"), is("changed"));
+        assertThat(environment.getProperty("test.count"), is("1"));
+        assertTrue(springBootstrap.refreshPluginPropertySources(environment).isEmpty());
+    }
+
+    @Test
+    public void refreshPluginPropertySources_PropertyRemoved_ShouldRemoveValue() {
+        pluginProperties.put("test.name", "initial");
+        pluginProperties.put("test.count", 1);
+        springBootstrap.bindToSpringApplication(environment);
+
+        pluginProperties.remove("test.count");
+        assertThat(springBootstrap.refreshPluginPropertySources(environment),
+                is(Collections.singleton("test.count")));
+        assertNull(environment.getProperty("test.count"));
+        assertThat(environment.getProperty("test.name"), is("initial"));
+
+        pluginProperties.clear();
+        assertThat(springBootstrap.refreshPluginPropertySources(environment),
+                is(Collections.singleton("test.name")));
+        assertNull(environment.getPropertySources().get(SpringBootstrap.PLUGIN_CONFIGURATIONS_PROPERTY_SOURCE_NAME));
+    }
+
+    @Test
+    public void refreshPluginPropertySources_PluginConfigDisabled_ShouldIgnoreChanges() {
+        springBootstrap.bindToSpringApplication(new StandardEnvironment());
+
+        pluginProperties.put("test.name", "added");
+        assertTrue(springBootstrap.refreshPluginPropertySources(environment).isEmpty());
+        assertNull(environment.getProperty("test.name"));
+    }
+
+    static class TestPlugin extends SpringBootPlugin {
+
+        TestPlugin(PluginWrapper wrapper) {
+            super(wrapper);
+        }
+
+        @Override
+        protected SpringBootstrap createSpringBootstrap() {
+            return new SpringBootstrap(this);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.javaloong.kongmink.pf4j.spring.boot.context;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginWrapper;
+
+public class PluginEventBroadcasterTest {
+
+    private PluginEventBroadcaster eventBroadcaster;
+
+    @BeforeEach
+    void init() {
+        // deliver on the publishing thread, so that events are received when published
+        eventBroadcaster = new PluginEventBroadcaster(3, Runnable::run);
+    }
+
+    @Test
+    public void subscribe_AfterSequence_ShouldReplayBacklogThenDeliverNewEvents() {
+        fireStateChanged("plugin1", PluginState.RESOLVED, PluginState.STARTED);
+        fireStateChanged("plugin2", PluginState.RESOLVED, PluginState.STARTED);
+        List<PluginLifecycleEvent> received = new ArrayList<>();
+
+        PluginEventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(1, received::add);
+        eventBroadcaster.pluginStartingFailed(new PluginStartingError("plugin3", "failed", "failed"));
+
+        assertTrue(subscription.isBacklogComplete());
+        assertThat(received.size(), is(2));
+        assertThat(received.get(0).getSequence(), is(2L));
+        assertThat(received.get(0).getPluginId(), is("plugin2"));
+        assertThat(received.get(0).getPluginState(), is(PluginState.STARTED));
+        assertThat(received.get(1).getSequence(), is(3L));
+        assertThat(received.get(1).getType(), is(PluginLifecycleEvent.Type.STARTING_ERROR));
+        assertThat(received.get(1).getError().getPluginId(), is("plugin3"));
+
+        subscription.cancel();
+        fireStateChanged("plugin1", PluginState.STARTED, PluginState.STOPPED);
+        assertThat(received.size(), is(2));
+    }
+
+    @Test
+    public void subscribe_DroppedFromBacklog_ShouldNotifyBacklogIncomplete() {
+        for (int i = 0; i < 5; i++) {
+            fireStateChanged("plugin" + i, PluginState.RESOLVED, PluginState.STARTED);
+        }
+        List<Object> received = new ArrayList<>();
+
+        PluginEventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(1,
+                new PluginEventBroadcaster.Subscriber() {
+
+                    @Override
+                    public void onEvent(PluginLifecycleEvent event) {
+                        received.add(event.getSequence());
+                    }
+
+                    @Override
+                    public void onBacklogIncomplete() {
+                        received.add("reset");
+                    }
+                });
+
+        assertFalse(subscription.isBacklogComplete());
+        assertThat(received.toString(), is("[reset, 3, 4, 5]"));
+        assertThat(eventBroadcaster.getEvents(4).size(), is(1));
+        assertTrue(eventBroadcaster.getEvents(5).isEmpty());
+    }
+
+    @Test
+    public void subscribe_FailingSubscriber_ShouldBeCancelled() {
+        PluginEventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(0, event -> {
+            throw new IllegalStateException("closed");
+        });
+
+        fireStateChanged("plugin1", PluginState.RESOLVED, PluginState.STARTED);
+        assertTrue(subscription.isCancelled());
+    }
+
+    @Test
+    public void subscribe_FailingSubscriber_ShouldBeNotifiedOfCancellation() {
+        AtomicInteger cancellations = new AtomicInteger();
+        PluginEventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(0,
+                new PluginEventBroadcaster.Subscriber() {
+
+                    @Override
+                    public void onEvent(PluginLifecycleEvent event) {
+                        throw new IllegalStateException("closed");
+                    }
+
+                    @Override
+                    public void onCancelled() {
+                        cancellations.incrementAndGet();
+                    }
+                });
+
+        fireStateChanged("plugin1", PluginState.RESOLVED, PluginState.STARTED);
+        subscription.cancel();
+        eventBroadcaster.destroy();
+        assertThat(cancellations.get(), is(1));
+    }
+
+    @Test
+    public void cancel_BySubscriber_ShouldNotNotifyCancellation() {
+        AtomicInteger cancellations = new AtomicInteger();
+        PluginEventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(0,
+                new PluginEventBroadcaster.Subscriber() {
+
+                    @Override
+                    public void onEvent(PluginLifecycleEvent event) {
+                    }
+
+                    @Override
+                    public void onCancelled() {
+                        cancellations.incrementAndGet();
+                    }
+                });
+
+        subscription.cancel();
+        eventBroadcaster.destroy();
+        assertThat(cancellations.get(), is(0));
+    }
+
+    @Test
+    public void subscribe_BlockingSubscriber_ShouldNotBlockPublishing() throws Exception {
+        PluginEventBroadcaster asyncBroadcaster = new PluginEventBroadcaster(3);
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        PluginEventBroadcaster.Subscription subscription = asyncBroadcaster.subscribe(0,
+                new PluginEventBroadcaster.Subscriber() {
+
+                    @Override
+                    public void onEvent(PluginLifecycleEvent event) throws Exception {
+                        received.countDown();
+                        release.await();
+                    }
+
+                    @Override
+                    public void onCancelled() {
+                        cancelled.countDown();
+                    }
+                });
+        eventBroadcaster = asyncBroadcaster;
+        try {
+            fireStateChanged("plugin1", PluginState.RESOLVED, PluginState.STARTED);
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            // the subscriber is stuck on the first event, the others overflow its queue
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 5; i++) {
+                    fireStateChanged("plugin1", PluginState.STARTED, PluginState.STOPPED);
+                }
+            });
+            assertTrue(subscription.isCancelled());
+            assertThat(asyncBroadcaster.getLastSequence(), is(6L));
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            asyncBroadcaster.destroy();
+        }
+    }
+
+    private void fireStateChanged(String pluginId, PluginState oldState, PluginState pluginState) {
+        PluginWrapper plugin = mock(PluginWrapper.class);
+        when(plugin.getPluginId()).thenReturn(pluginId);
+        when(plugin.getPluginState()).thenReturn(pluginState);
+        eventBroadcaster.pluginStateChanged(new PluginStateEvent(mock(PluginManager.class), plugin, oldState));
+    }
+}
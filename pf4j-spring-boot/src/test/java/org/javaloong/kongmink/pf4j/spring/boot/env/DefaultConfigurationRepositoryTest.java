@@ -5,11 +5,17 @@ import static org.hamcrest.MatcherAssert.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -60,6 +66,53 @@ public class DefaultConfigurationRepositoryTest {
         assertTrue(repository.delete("plugin1"));
     }
     
+    @Test
+    public void get_Unchanged_ShouldReturnCachedConfigProperties() throws Exception {
+        saveFile("plugin1");
+        Map<String, Object> properties = repository.get("plugin1");
+        assertSame(properties, repository.get("plugin1"));
+        assertThrows(UnsupportedOperationException.class, () -> properties.put("key3", "value3"));
+    }
+    
+    @Test
+    public void get_EditedExternally_ShouldReloadAndNotifyListeners() throws Exception {
+        Files.createDirectories(configRoot);
+        DefaultConfigurationRepository watchingRepository = new DefaultConfigurationRepository(configRoot, 50);
+        List<String> changedIds = new CopyOnWriteArrayList<>();
+        watchingRepository.addChangeListener(changedIds::add);
+        try {
+            watchingRepository.save("Plugin1", Collections.singletonMap("key1", "value1"));
+            assertThat(changedIds, is(Collections.singletonList("Plugin1")));
+            assertThat(watchingRepository.get("Plugin1").get("key1"), is("value1"));
+            
+            Files.write(configRoot.resolve("plugin1.properties"), "key1=value2\n".getBytes(StandardCharsets.ISO_8859_1));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!"value2".equals(watchingRepository.get("Plugin1").get("key1"))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(watchingRepository.get("Plugin1").get("key1"), is("value2"));
+            assertThat(changedIds, is(Arrays.asList("Plugin1", "Plugin1")));
+        } finally {
+            watchingRepository.close();
+        }
+    }
+    
+    @Test
+    public void get_SameSizeEditWithinModificationTime_ShouldReload() throws Exception {
+        DefaultConfigurationRepository pollingRepository = new DefaultConfigurationRepository(configRoot, -1);
+        pollingRepository.save("plugin1", Collections.singletonMap("key1", "value1"));
+        assertThat(pollingRepository.get("plugin1").get("key1"), is("value1"));
+        Path propertiesPath = configRoot.resolve("plugin1.properties");
+        FileTime lastModifiedTime = Files.getLastModifiedTime(propertiesPath);
+
+        String content = new String(Files.readAllBytes(propertiesPath), StandardCharsets.ISO_8859_1);
+        Files.write(propertiesPath, content.replace("value1", "value2").getBytes(StandardCharsets.ISO_8859_1));
+        Files.setLastModifiedTime(propertiesPath, lastModifiedTime);
+
+        assertThat(pollingRepository.get("plugin1").get("key1"), is("value2"));
+    }
+    
     private void saveFile(String pluginId) {
         Map<String, Object> map = new HashMap<>();
         map.put("key1", "value1");
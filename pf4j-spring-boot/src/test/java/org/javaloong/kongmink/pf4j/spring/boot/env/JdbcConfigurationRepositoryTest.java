@@ -0,0 +1,108 @@
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+public class JdbcConfigurationRepositoryTest {
+
+    private EmbeddedDatabase database;
+    private JdbcConfigurationRepository repository;
+    private JdbcConfigurationRepository otherNode;
+
+    @BeforeEach
+    void init() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        repository = new JdbcConfigurationRepository(database,
+                JdbcConfigurationRepository.DEFAULT_TABLE_NAME, 0);
+        repository.initializeSchema();
+        otherNode = new JdbcConfigurationRepository(database,
+                JdbcConfigurationRepository.DEFAULT_TABLE_NAME, 0);
+        otherNode.initializeSchema();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        repository.close();
+        otherNode.close();
+        database.shutdown();
+    }
+
+    @Test
+    public void save_ShouldStoreConfigPropertiesCaseInsensitive() {
+        assertTrue(repository.get("plugin1").isEmpty());
+        assertFalse(repository.delete("plugin1"));
+
+        repository.save("Plugin1", Collections.singletonMap("key1", "value1"));
+        assertThat(repository.get("plugin1").get("key1"), is("value1"));
+        assertThat(otherNode.get("PLUGIN1").get("key1"), is("value1"));
+
+        assertTrue(repository.delete("plugin1"));
+        assertTrue(repository.get("plugin1").isEmpty());
+    }
+
+    @Test
+    public void initializeSchema_TableNameInOtherCase_ShouldFindExistingTable() throws Exception {
+        JdbcConfigurationRepository mixedCase = new JdbcConfigurationRepository(database, "Plugin_Config", 0);
+        mixedCase.initializeSchema();
+        mixedCase.initializeSchema();
+
+        mixedCase.save("plugin1", Collections.singletonMap("key1", "value1"));
+        assertThat(mixedCase.get("plugin1").get("key1"), is("value1"));
+        mixedCase.close();
+    }
+
+    @Test
+    public void initializeSchema_SimilarTableName_ShouldCreateTable() throws Exception {
+        // an underscore is a wildcard of metadata patterns
+        new JdbcTemplate(database).execute("CREATE TABLE PLUGINXCONFIG (ID INT)");
+        JdbcConfigurationRepository similar = new JdbcConfigurationRepository(database, "PLUGIN_CONFIG", 0);
+        similar.initializeSchema();
+
+        similar.save("plugin1", Collections.singletonMap("key1", "value1"));
+        assertThat(similar.get("plugin1").get("key1"), is("value1"));
+        similar.close();
+    }
+
+    @Test
+    public void get_Cached_ShouldNotQueryDatabase() {
+        repository.save("plugin1", Collections.singletonMap("key1", "value1"));
+        new JdbcTemplate(database).update("UPDATE PF4J_PLUGIN_CONFIG SET PROPERTIES = NULL");
+
+        assertThat(repository.get("plugin1").get("key1"), is("value1"));
+    }
+
+    @Test
+    public void poll_ChangedByOtherNode_ShouldReloadAndNotifyListeners() {
+        ConfigurationChangeListener listener = mock(ConfigurationChangeListener.class);
+        repository.addChangeListener(listener);
+        repository.get("plugin1");
+        repository.save("plugin2", Collections.singletonMap("key1", "value1"));
+        reset(listener);
+
+        repository.poll();
+        verify(listener, never()).configurationChanged(anyString());
+
+        otherNode.save("plugin1", Collections.singletonMap("key1", "value2"));
+        otherNode.delete("plugin2");
+        repository.poll();
+        assertThat(repository.get("plugin1").get("key1"), is("value2"));
+        assertTrue(repository.get("plugin2").isEmpty());
+        verify(listener).configurationChanged("plugin1");
+        verify(listener).configurationChanged("plugin2");
+    }
+}
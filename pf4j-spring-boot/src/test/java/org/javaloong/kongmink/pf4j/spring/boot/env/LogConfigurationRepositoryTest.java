@@ -0,0 +1,142 @@
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.PluginRuntimeException;
+import org.springframework.util.FileSystemUtils;
+
+public class LogConfigurationRepositoryTest {
+
+    private Path configRoot;
+    private Path logFile;
+    private LogConfigurationRepository repository;
+
+    @BeforeEach
+    void init() {
+        File configDir = new File("build", "config-log");
+        configRoot = Paths.get(configDir.getAbsolutePath());
+        logFile = configRoot.resolve("plugins-config.log");
+        repository = new LogConfigurationRepository(logFile);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        repository.close();
+        FileSystemUtils.deleteRecursively(configRoot);
+    }
+
+    @Test
+    public void get_NotSaved_ShouldReturnEmptyConfigProperties() {
+        assertTrue(repository.get("plugin1").isEmpty());
+        assertFalse(repository.delete("plugin1"));
+    }
+
+    @Test
+    public void save_ShouldReplaceConfigPropertiesAndSurviveReopen() throws Exception {
+        saveProperties("plugin1", "value1");
+        saveProperties("Plugin1", "value2");
+        saveProperties("plugin2", "value3");
+        assertTrue(repository.delete("plugin2"));
+        assertThat(repository.get("plugin1").get("key1"), is("value2"));
+
+        repository.close();
+        repository = new LogConfigurationRepository(logFile);
+        assertThat(repository.get("PLUGIN1").get("key1"), is("value2"));
+        assertThat(repository.get("plugin1").get("key2"), is("2"));
+        assertTrue(repository.get("plugin2").isEmpty());
+    }
+
+    @Test
+    public void open_TornRecord_ShouldDiscardIt() throws Exception {
+        saveProperties("plugin1", "value1");
+        long size = repository.getSize();
+        repository.close();
+        Files.write(logFile, new byte[] { 0, 0, 0, 42, 1, 2 }, StandardOpenOption.APPEND);
+
+        repository = new LogConfigurationRepository(logFile);
+        assertThat(repository.getSize(), is(size));
+        assertThat(repository.get("plugin1").get("key1"), is("value1"));
+        saveProperties("plugin2", "value2");
+        assertThat(repository.get("plugin2").get("key1"), is("value2"));
+    }
+
+    @Test
+    public void save_ManySupersededRecords_ShouldCompactLog() throws Exception {
+        String value = String.join("", Collections.nCopies(1000, "x"));
+        for (int i = 0; i < 200; i++) {
+            saveProperties("plugin" + (i % 2), value + i);
+        }
+        assertTrue(repository.getSize() < 64 * 1024 + 4 * 1024);
+        assertThat(repository.get("plugin0").get("key1"), is(value + 198));
+        assertThat(repository.get("plugin1").get("key1"), is(value + 199));
+
+        repository.compact();
+        repository.close();
+        repository = new LogConfigurationRepository(logFile);
+        assertThat(repository.get("plugin1").get("key1"), is(value + 199));
+    }
+
+    @Test
+    public void save_CompactionFails_ShouldKeepRecordAndNotifyListeners() throws Exception {
+        // a directory in place of the compaction file makes every compaction fail
+        Files.createDirectories(logFile.resolveSibling(logFile.getFileName() + ".compact").resolve("blocked"));
+        List<String> changed = new ArrayList<>();
+        repository.addChangeListener(changed::add);
+        String value = String.join("", Collections.nCopies(1000, "x"));
+        for (int i = 0; i < 200; i++) {
+            saveProperties("plugin" + (i % 2), value + i);
+        }
+        assertThat(changed.size(), is(200));
+        assertTrue(repository.getSize() > 64 * 1024 * 2);
+        assertTrue(repository.delete("plugin0"));
+        assertThat(changed.size(), is(201));
+
+        repository.close();
+        repository = new LogConfigurationRepository(logFile);
+        assertTrue(repository.get("plugin0").isEmpty());
+        assertThat(repository.get("plugin1").get("key1"), is(value + 199));
+    }
+
+    @Test
+    public void open_TornMagic_ShouldRewriteIt() throws Exception {
+        repository.close();
+        Files.write(logFile, new byte[] { 'P', 'F', '4' });
+
+        repository = new LogConfigurationRepository(logFile);
+        assertThat(repository.getSize(), is(8L));
+        saveProperties("plugin1", "value1");
+        assertThat(repository.get("plugin1").get("key1"), is("value1"));
+    }
+
+    @Test
+    public void open_ShortForeignFile_ShouldThrowPluginRuntimeException() throws Exception {
+        repository.close();
+        Files.write(logFile, new byte[] { 'a', 'b', 'c' });
+
+        assertThrows(PluginRuntimeException.class, () -> new LogConfigurationRepository(logFile));
+        assertThat(Files.readAllBytes(logFile).length, is(3));
+    }
+
+    private void saveProperties(String pluginId, String value) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("key1", value);
+        map.put("key2", 2);
+        repository.save(pluginId, map);
+    }
+}
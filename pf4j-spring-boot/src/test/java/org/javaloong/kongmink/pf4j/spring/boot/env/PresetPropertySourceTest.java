@@ -0,0 +1,28 @@
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class PresetPropertySourceTest {
+
+    @Test
+    public void getProperty_SourceMapChanged_ShouldKeepCopiedProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("key1", "value1");
+        PresetPropertySource propertySource = new PresetPropertySource(properties);
+        properties.put("key2", "value2");
+
+        assertThat(propertySource.getProperty("key1"), is("value1"));
+        assertTrue(propertySource.containsProperty("key1"));
+        assertFalse(propertySource.containsProperty("key2"));
+        assertThat(propertySource.getPropertyNames(), is(new String[] { "key1" }));
+        assertThrows(UnsupportedOperationException.class,
+                () -> propertySource.getSource().put("key3", "value3"));
+    }
+}
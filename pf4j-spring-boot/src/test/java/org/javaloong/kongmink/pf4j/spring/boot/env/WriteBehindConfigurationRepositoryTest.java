@@ -0,0 +1,90 @@
+package org.javaloong.kongmink.pf4j.spring.boot.env;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.PluginRuntimeException;
+
+public class WriteBehindConfigurationRepositoryTest {
+
+    private ConfigurationRepository delegate;
+    private WriteBehindConfigurationRepository repository;
+
+    @BeforeEach
+    void init() {
+        delegate = mock(ConfigurationRepository.class, withSettings().extraInterfaces(Closeable.class));
+        when(delegate.get(anyString())).thenReturn(Collections.emptyMap());
+        repository = new WriteBehindConfigurationRepository(delegate, 60000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        repository.close();
+    }
+
+    @Test
+    public void save_ShouldApplyAtOnceAndCoalesceUntilFlush() {
+        ConfigurationChangeListener listener = mock(ConfigurationChangeListener.class);
+        repository.addChangeListener(listener);
+
+        repository.save("plugin1", Collections.singletonMap("key1", "value1"));
+        repository.save("Plugin1", Collections.singletonMap("key1", "value2"));
+        assertThat(repository.get("plugin1").get("key1"), is("value2"));
+        assertThat(repository.getPendingCount(), is(1));
+        verify(delegate, never()).save(anyString(), any());
+        verify(listener, times(2)).configurationChanged(anyString());
+
+        repository.flush();
+        verify(delegate).save("Plugin1", Collections.singletonMap("key1", "value2"));
+        assertThat(repository.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void delete_ShouldHideConfigPropertiesUntilFlush() {
+        Map<String, Object> properties = Collections.singletonMap("key1", "value1");
+        when(delegate.get("plugin1")).thenReturn(properties);
+
+        assertTrue(repository.delete("plugin1"));
+        assertTrue(repository.get("plugin1").isEmpty());
+        assertFalse(repository.delete("plugin1"));
+
+        repository.flush();
+        verify(delegate).delete("plugin1");
+    }
+
+    @Test
+    public void flush_DelegateFails_ShouldKeepWritePending() {
+        doThrow(new PluginRuntimeException("disk full")).doNothing()
+                .when(delegate).save(eq("plugin1"), any());
+        repository.save("plugin1", Collections.singletonMap("key1", "value1"));
+
+        assertThrows(PluginRuntimeException.class, () -> repository.flush());
+        assertThat(repository.getPendingCount(), is(1));
+        assertThat(repository.get("plugin1").get("key1"), is("value1"));
+
+        repository.flush();
+        verify(delegate, times(2)).save(eq("plugin1"), any());
+        assertThat(repository.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void close_ShouldFlushAndCloseDelegate() throws Exception {
+        repository.save("plugin1", Collections.singletonMap("key1", "value1"));
+
+        repository.close();
+        verify(delegate).save(eq("plugin1"), any());
+        verify((Closeable) delegate).close();
+        assertThrows(IllegalStateException.class,
+                () -> repository.save("plugin2", Collections.emptyMap()));
+    }
+}
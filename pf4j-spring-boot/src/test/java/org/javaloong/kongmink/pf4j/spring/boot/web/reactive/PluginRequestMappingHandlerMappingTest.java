@@ -0,0 +1,97 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.reactive;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.server.ResponseStatusException;
+
+import reactor.core.publisher.Mono;
+
+public class PluginRequestMappingHandlerMappingTest {
+
+    private GenericApplicationContext mainContext;
+    private PluginRequestMappingHandlerMapping handlerMapping;
+
+    @BeforeEach
+    void init() {
+        mainContext = new GenericApplicationContext();
+        mainContext.refresh();
+        handlerMapping = new PluginRequestMappingHandlerMapping();
+        handlerMapping.setApplicationContext(mainContext);
+        handlerMapping.afterPropertiesSet();
+    }
+
+    @Test
+    public void unregisterController_ShouldRemoveOnlyItsMappings() {
+        Object controller1 = new TestController();
+        Object controller2 = new AnotherTestController();
+        handlerMapping.registerHandlerMethods("plugin1", null, Arrays.asList(controller1, controller2));
+        assertThat(handlerMapping.getHandlerMethods().size(), is(3));
+
+        handlerMapping.unregisterController(mainContext, controller1);
+        assertThat(handlerMapping.getHandlerMethods().size(), is(1));
+        assertNull(getHandler("/test/foo").block());
+        assertThat(((HandlerMethod) getHandler("/another/foo").block()).getBean(), sameInstance(controller2));
+    }
+
+    @Test
+    public void getHandler_RequestTracking_ShouldTrackAndRefuseWhileDraining() {
+        PluginRequestTracker requestTracker = new PluginRequestTracker("plugin1");
+        handlerMapping.setRequestTrackingEnabled(true);
+        handlerMapping.registerHandlerMethods("plugin1", requestTracker,
+                Collections.singletonList(new TestController()));
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test/foo"));
+        handlerMapping.getHandler(exchange).block();
+        assertThat(requestTracker.getInFlightRequests(), is(1));
+        new PluginRequestTrackingWebFilter().filter(exchange, e -> Mono.empty()).block();
+        assertThat(requestTracker.getInFlightRequests(), is(0));
+
+        requestTracker.drain(0, TimeUnit.MILLISECONDS);
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> getHandler("/test/foo").block());
+        assertThat(ex.getStatus(), is(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    private Mono<Object> getHandler(String path) {
+        return handlerMapping.getHandler(MockServerWebExchange.from(MockServerHttpRequest.get(path)));
+    }
+
+    @RestController
+    static class TestController {
+
+        @GetMapping("/test/foo")
+        public String foo() {
+            return "foo";
+        }
+
+        @GetMapping("/test/bar")
+        public String bar() {
+            return "bar";
+        }
+    }
+
+    @RestController
+    static class AnotherTestController {
+
+        @GetMapping("/another/foo")
+        public String foo() {
+            return "foo";
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.DispatcherType;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class PluginBulkheadTest {
+
+    private PluginBulkhead bulkhead;
+
+    @BeforeEach
+    void init() {
+        bulkhead = new PluginBulkhead("plugin1");
+        bulkhead.setQueueTimeout(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void tryAcquire_OverMaxConcurrentRequests_ShouldReject() {
+        bulkhead.setMaxConcurrentRequests(2);
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        assertThat(bulkhead.getActiveRequests(), is(2));
+        assertThat(bulkhead.getRejectedCount(), is(1L));
+
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+    }
+
+    @Test
+    public void tryAcquire_WithQueue_ShouldWaitForReleasedPermit() throws Exception {
+        bulkhead.setMaxConcurrentRequests(1);
+        bulkhead.setMaxQueueSize(1);
+        bulkhead.setQueueTimeout(5, TimeUnit.SECONDS);
+        assertTrue(bulkhead.tryAcquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(bulkhead::tryAcquire);
+        while (bulkhead.getQueuedRequests() == 0) {
+            Thread.sleep(1);
+        }
+        bulkhead.release();
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertThat(bulkhead.getQueuedCount(), is(1L));
+        assertThat(bulkhead.getRejectedCount(), is(0L));
+    }
+
+    @Test
+    public void setMaxConcurrentRequests_ShouldAdjustLimitAtRuntime() {
+        bulkhead.setMaxConcurrentRequests(2);
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+
+        bulkhead.setMaxConcurrentRequests(1);
+        bulkhead.release();
+        assertFalse(bulkhead.tryAcquire());
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+
+        bulkhead.setMaxConcurrentRequests(0);
+        assertTrue(bulkhead.tryAcquire());
+        assertThat(bulkhead.getActiveRequests(), is(2));
+    }
+
+    @Test
+    public void preHandle_Rejected_ShouldSendRejectStatus() throws Exception {
+        bulkhead.setMaxConcurrentRequests(1);
+        bulkhead.setRejectStatus(HttpStatus.TOO_MANY_REQUESTS);
+        PluginHandlerInterceptor interceptor = new PluginHandlerInterceptor("plugin1", new Object(), null, bulkhead,
+                new PluginRequestTracker("plugin1"));
+
+        MockHttpServletRequest request1 = new MockHttpServletRequest();
+        MockHttpServletResponse response1 = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request1, response1, null));
+
+        MockHttpServletResponse response2 = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), response2, null));
+        assertThat(response2.getStatus(), is(429));
+
+        interceptor.afterCompletion(request1, response1, null, null);
+        assertThat(bulkhead.getActiveRequests(), is(0));
+    }
+
+    @Test
+    public void afterConcurrentHandlingStarted_Offloaded_ShouldHoldPermitUntilAsyncDispatchCompletes() throws Exception {
+        bulkhead.setMaxConcurrentRequests(1);
+        PluginHandlerInterceptor interceptor = new PluginHandlerInterceptor("plugin1", new Object(), null, bulkhead,
+                null);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, null));
+        request.setAttribute(PluginRequestMappingHandlerAdapter.OFFLOADED_ATTRIBUTE, Boolean.TRUE);
+        request.setAsyncStarted(true);
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        assertThat(bulkhead.getActiveRequests(), is(1));
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), null));
+
+        request.setAsyncStarted(false);
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertTrue(interceptor.preHandle(request, response, null));
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(bulkhead.getActiveRequests(), is(0));
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(bulkhead.getActiveRequests(), is(0));
+    }
+
+    @Test
+    public void afterConcurrentHandlingStarted_NotOffloaded_ShouldReleasePermit() throws Exception {
+        PluginHandlerInterceptor interceptor = new PluginHandlerInterceptor("plugin1", new Object(), null, bulkhead,
+                null);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, null));
+        request.setAsyncStarted(true);
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        assertThat(bulkhead.getActiveRequests(), is(0));
+
+        request.setAsyncStarted(false);
+        request.setDispatcherType(DispatcherType.ASYNC);
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(bulkhead.getActiveRequests(), is(0));
+    }
+}
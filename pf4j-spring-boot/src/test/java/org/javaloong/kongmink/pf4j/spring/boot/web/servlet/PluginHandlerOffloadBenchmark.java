@@ -0,0 +1,163 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+import org.javaloong.kongmink.pf4j.spring.util.ExecutorUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Throughput of blocking plugin handler methods on container threads, compared with
+ * handler methods offloaded to the plugin executor. Handlers call a local stub backend
+ * that answers after a fixed latency.
+ *
+ * <p>Run with {@code gradle :pf4j-spring-boot:test --tests *PluginHandlerOffloadBenchmark -Dpf4j.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "pf4j.benchmark", matches = "true")
+public class PluginHandlerOffloadBenchmark {
+
+    private static final int CONTAINER_THREADS = 16;
+    private static final int REQUESTS = 2_000;
+    private static final int WARMUP_REQUESTS = 200;
+    private static final long BACKEND_LATENCY_MILLIS = 50;
+
+    private HttpServer backend;
+    private ExecutorService backendExecutor;
+    private ExecutorService containerThreads;
+
+    @BeforeEach
+    void init() throws IOException {
+        backendExecutor = Executors.newCachedThreadPool();
+        backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        backend.setExecutor(backendExecutor);
+        backend.createContext("/", exchange -> {
+            try {
+                Thread.sleep(BACKEND_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        backend.start();
+        containerThreads = Executors.newFixedThreadPool(CONTAINER_THREADS, new CustomizableThreadFactory("container-"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        containerThreads.shutdownNow();
+        backend.stop(0);
+        backendExecutor.shutdownNow();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        BackendController controller = new BackendController(
+                new URL("http://127.0.0.1:" + backend.getAddress().getPort() + "/"));
+        HandlerMethod handlerMethod = new HandlerMethod(controller, "call");
+
+        System.out.printf("%-40s %15s%n", "mode (" + CONTAINER_THREADS + " container threads)", "req/s");
+        PluginRequestMappingHandlerAdapter defaultAdapter = createHandlerAdapter(null);
+        System.out.printf("%-40s %15.1f%n", "container threads", measure(defaultAdapter, handlerMethod));
+        PluginRequestMappingHandlerAdapter offloadAdapter = createHandlerAdapter(
+                ExecutorUtils.newExecutorService("pf4j-handler-", 200));
+        System.out.printf("%-40s %15.1f%n", ExecutorUtils.isVirtualThreadSupported()
+                ? "offloaded (virtual threads)" : "offloaded (200 platform threads)",
+                measure(offloadAdapter, handlerMethod));
+        offloadAdapter.destroy();
+    }
+
+    private PluginRequestMappingHandlerAdapter createHandlerAdapter(ExecutorService pluginExecutor) {
+        StaticWebApplicationContext mainContext = new StaticWebApplicationContext();
+        mainContext.refresh();
+        PluginRequestMappingHandlerAdapter handlerAdapter = new PluginRequestMappingHandlerAdapter() {
+            @Override
+            protected boolean isOffloaded(HandlerMethod handlerMethod) {
+                // the benchmark controller is not loaded by a plugin
+                return true;
+            }
+        };
+        handlerAdapter.setApplicationContext(mainContext);
+        handlerAdapter.setPluginExecutor(pluginExecutor);
+        handlerAdapter.afterPropertiesSet();
+        return handlerAdapter;
+    }
+
+    private double measure(PluginRequestMappingHandlerAdapter handlerAdapter, HandlerMethod handlerMethod)
+            throws Exception {
+        run(handlerAdapter, handlerMethod, WARMUP_REQUESTS);
+        long start = System.nanoTime();
+        run(handlerAdapter, handlerMethod, REQUESTS);
+        return REQUESTS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private void run(PluginRequestMappingHandlerAdapter handlerAdapter, HandlerMethod handlerMethod,
+                     int requests) throws Exception {
+        CountDownLatch completed = new CountDownLatch(requests);
+        for (int i = 0; i < requests; i++) {
+            containerThreads.execute(() -> {
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/backend");
+                request.setAsyncSupported(true);
+                try {
+                    handlerAdapter.handle(request, new MockHttpServletResponse(), handlerMethod);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                if (request.isAsyncStarted()) {
+                    // the container thread is free, the request completes on the async dispatch
+                    ((MockAsyncContext) request.getAsyncContext()).addDispatchHandler(completed::countDown);
+                } else {
+                    completed.countDown();
+                }
+            });
+        }
+        assertTrue(completed.await(5, TimeUnit.MINUTES));
+    }
+
+    @RestController
+    static class BackendController {
+
+        private final URL backendUrl;
+
+        BackendController(URL backendUrl) {
+            this.backendUrl = backendUrl;
+        }
+
+        @GetMapping("/backend")
+        public String call() throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) backendUrl.openConnection();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[64];
+                int length = in.read(buffer);
+                return new String(buffer, 0, Math.max(length, 0));
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+
+/**
+ * Request matching latency of plugin controllers, with and without prefix dispatch.
+ *
+ * <p>Run with {@code gradle :pf4j-spring-boot:test --tests *PluginRequestMappingBenchmark -Dpf4j.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "pf4j.benchmark", matches = "true")
+public class PluginRequestMappingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 100_000;
+    private static final String[] PATHS = {"/items", "/items/42", "/search", "/stats"};
+
+    @Test
+    public void benchmark() throws Exception {
+        System.out.printf("%-12s %20s %20s%n", "controllers", "shared (ns/op)", "prefix (ns/op)");
+        for (int controllers : new int[] {10, 100, 1000}) {
+            double shared = measure(createHandlerMapping(controllers, false), controllers);
+            double prefix = measure(createHandlerMapping(controllers, true), controllers);
+            System.out.printf("%-12d %20.1f %20.1f%n", controllers, shared, prefix);
+        }
+    }
+
+    private PluginRequestMappingHandlerMapping createHandlerMapping(int controllers, boolean prefixDispatch) {
+        StaticWebApplicationContext mainContext = new StaticWebApplicationContext();
+        mainContext.refresh();
+        PluginRequestMappingHandlerMapping handlerMapping = new PluginRequestMappingHandlerMapping();
+        handlerMapping.setApplicationContext(mainContext);
+        handlerMapping.setPrefixDispatchEnabled(prefixDispatch);
+        handlerMapping.afterPropertiesSet();
+        for (int i = 0; i < controllers; i++) {
+            String prefix = "/plugin" + i;
+            handlerMapping.setEmbeddedValueResolver(value -> value.replace("${plugin.prefix}", prefix));
+            handlerMapping.registerHandlerMethods("plugin" + i, prefixDispatch ? prefix : null,
+                    Collections.singletonList(new BenchmarkController()));
+        }
+        return handlerMapping;
+    }
+
+    private double measure(PluginRequestMappingHandlerMapping handlerMapping, int controllers) throws Exception {
+        MockHttpServletRequest[] requests = new MockHttpServletRequest[1024];
+        for (int i = 0; i < requests.length; i++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String path = "/plugin" + random.nextInt(controllers) + PATHS[random.nextInt(PATHS.length)];
+            requests[i] = new MockHttpServletRequest("GET", path);
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            assertNotNull(handlerMapping.getHandler(requests[i % requests.length]));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            handlerMapping.getHandler(requests[i % requests.length]);
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    @RestController
+    @RequestMapping("${plugin.prefix}")
+    static class BenchmarkController {
+
+        @GetMapping("/items")
+        public String list() {
+            return "items";
+        }
+
+        @GetMapping("/items/{id}")
+        public String get(@PathVariable String id) {
+            return id;
+        }
+
+        @PostMapping("/items")
+        public String create() {
+            return "created";
+        }
+
+        @GetMapping("/search")
+        public String search() {
+            return "search";
+        }
+
+        @GetMapping("/stats")
+        public String stats() {
+            return "stats";
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+
+public class PluginRequestMappingHandlerAdapterTest {
+
+    private PluginRequestMappingHandlerAdapter handlerAdapter;
+
+    @BeforeEach
+    void init() {
+        StaticWebApplicationContext mainContext = new StaticWebApplicationContext();
+        mainContext.refresh();
+        handlerAdapter = new PluginRequestMappingHandlerAdapter() {
+            @Override
+            protected boolean isPluginHandler(HandlerMethod handlerMethod) {
+                // test controllers are not loaded by a plugin
+                return true;
+            }
+        };
+        handlerAdapter.setApplicationContext(mainContext);
+        handlerAdapter.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        handlerAdapter.destroy();
+    }
+
+    @Test
+    public void handle_PluginExecutor_ShouldInvokeHandlerOffContainerThread() throws Exception {
+        handlerAdapter.setPluginExecutor(Executors.newFixedThreadPool(1, new CustomizableThreadFactory("test-handler-")));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test/thread");
+        request.setAsyncSupported(true);
+
+        handlerAdapter.handle(request, new MockHttpServletResponse(),
+                new HandlerMethod(new TestController(), "thread"));
+        assertTrue(request.isAsyncStarted());
+        CountDownLatch dispatched = new CountDownLatch(1);
+        ((MockAsyncContext) request.getAsyncContext()).addDispatchHandler(dispatched::countDown);
+        assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+        assertThat((String) WebAsyncUtils.getAsyncManager(request).getConcurrentResult(), startsWith("test-handler-"));
+    }
+
+    @Test
+    public void handle_NoPluginExecutor_ShouldInvokeHandlerOnContainerThread() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test/thread");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        handlerAdapter.handle(request, response, new HandlerMethod(new TestController(), "thread"));
+        assertFalse(request.isAsyncStarted());
+        assertThat(response.getContentAsString(), is(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void handle_PluginExecutor_ShouldBindRequestAttributesAndLocale() throws Exception {
+        handlerAdapter.setPluginExecutor(Executors.newFixedThreadPool(1, new CustomizableThreadFactory("test-handler-")));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test/context");
+        request.setAsyncSupported(true);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        LocaleContextHolder.setLocale(Locale.GERMANY);
+        try {
+            handlerAdapter.handle(request, new MockHttpServletResponse(),
+                    new HandlerMethod(new TestController(), "context"));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            LocaleContextHolder.resetLocaleContext();
+        }
+        CountDownLatch dispatched = new CountDownLatch(1);
+        ((MockAsyncContext) request.getAsyncContext()).addDispatchHandler(dispatched::countDown);
+        assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+        assertThat((String) WebAsyncUtils.getAsyncManager(request).getConcurrentResult(), is("/test/context de_DE"));
+    }
+
+    @Test
+    public void isOffloaded_SynchronousHandler_ShouldBeTrue() throws Exception {
+        assertTrue(handlerAdapter.isOffloaded(new HandlerMethod(new TestController(), "thread")));
+    }
+
+    @Test
+    public void isOffloaded_VoidHandler_ShouldBeFalse() throws Exception {
+        assertFalse(handlerAdapter.isOffloaded(new HandlerMethod(new TestController(), "noContent")));
+    }
+
+    @Test
+    public void isOffloaded_ResponseOrStreamParameter_ShouldBeFalse() throws Exception {
+        assertFalse(handlerAdapter.isOffloaded(new HandlerMethod(new TestController(), "response",
+                HttpServletResponse.class)));
+        assertFalse(handlerAdapter.isOffloaded(new HandlerMethod(new TestController(), "writer", Writer.class)));
+    }
+
+    @Test
+    public void isOffloaded_AsynchronousHandler_ShouldBeFalse() throws Exception {
+        assertFalse(handlerAdapter.isOffloaded(new HandlerMethod(new TestController(), "deferred")));
+    }
+
+    @Test
+    public void isOffloaded_ResponseStatusReason_ShouldBeFalse() throws Exception {
+        assertFalse(handlerAdapter.isOffloaded(new HandlerMethod(new TestController(), "gone")));
+    }
+
+    @Test
+    public void isOffloaded_NotPluginHandler_ShouldBeFalse() throws Exception {
+        PluginRequestMappingHandlerAdapter defaultAdapter = new PluginRequestMappingHandlerAdapter();
+        assertFalse(defaultAdapter.isOffloaded(new HandlerMethod(new TestController(), "thread")));
+    }
+
+    @RestController
+    static class TestController {
+
+        @GetMapping("/test/thread")
+        public String thread() {
+            return Thread.currentThread().getName();
+        }
+
+        @GetMapping("/test/context")
+        public String context() {
+            HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder
+                    .currentRequestAttributes()).getRequest();
+            return request.getRequestURI() + " " + LocaleContextHolder.getLocale();
+        }
+
+        @GetMapping("/test/no-content")
+        @ResponseStatus(HttpStatus.NO_CONTENT)
+        public void noContent() {
+        }
+
+        @GetMapping("/test/response")
+        public String response(HttpServletResponse response) {
+            response.setHeader("X-Test", "test");
+            return "response";
+        }
+
+        @GetMapping("/test/writer")
+        public String writer(Writer writer) throws IOException {
+            writer.write("writer");
+            return null;
+        }
+
+        @GetMapping("/test/deferred")
+        public DeferredResult<String> deferred() {
+            return new DeferredResult<>();
+        }
+
+        @GetMapping("/test/gone")
+        @ResponseStatus(value = HttpStatus.GONE, reason = "gone")
+        public String gone() {
+            return "gone";
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+public class PluginRequestMappingHandlerMappingTest {
+
+    private GenericApplicationContext mainContext;
+    private PluginRequestMappingHandlerMapping handlerMapping;
+
+    @BeforeEach
+    void init() {
+        mainContext = new StaticWebApplicationContext();
+        mainContext.refresh();
+        handlerMapping = new PluginRequestMappingHandlerMapping();
+        handlerMapping.setApplicationContext(mainContext);
+        handlerMapping.afterPropertiesSet();
+    }
+
+    @Test
+    public void unregisterController_ShouldRemoveOnlyItsMappings() throws Exception {
+        Object controller1 = new TestController();
+        Object controller2 = new AnotherTestController();
+        handlerMapping.detectHandlerMethods(controller1);
+        handlerMapping.detectHandlerMethods(controller2);
+        assertThat(handlerMapping.getHandlerMethods().size(), is(3));
+
+        handlerMapping.unregisterController(mainContext, controller1);
+        assertThat(handlerMapping.getHandlerMethods().size(), is(1));
+        assertThat(handlerMapping.getHandlerMethods().values().iterator().next().getBean(),
+                sameInstance(controller2));
+    }
+
+    @Test
+    public void unregisterController_NotRegistered_ShouldKeepMappings() throws Exception {
+        handlerMapping.detectHandlerMethods(new TestController());
+        handlerMapping.unregisterController(mainContext, new TestController());
+        assertThat(handlerMapping.getHandlerMethods().size(), is(2));
+    }
+
+    @Test
+    public void getHandler_PrefixDispatch_ShouldMatchWithinPluginMappings() throws Exception {
+        Object controller1 = new TestController();
+        Object controller2 = new AnotherTestController();
+        handlerMapping.registerHandlerMethods("plugin1", "/test", Collections.singletonList(controller1));
+        handlerMapping.registerHandlerMethods("plugin2", null, Collections.singletonList(controller2));
+        assertThat(handlerMapping.getHandlerMethods().size(), is(1));
+
+        assertThat(getHandlerBean("/test/foo"), sameInstance(controller1));
+        assertThat(getHandlerBean("/another/foo"), sameInstance(controller2));
+        assertNull(handlerMapping.getHandler(new MockHttpServletRequest("GET", "/test/baz")));
+    }
+
+    @Test
+    public void unregisterController_PrefixDispatch_ShouldRemovePluginMappings() throws Exception {
+        Object controller1 = new TestController();
+        handlerMapping.registerHandlerMethods("plugin1", "/test", Arrays.asList(controller1));
+        handlerMapping.unregisterController(mainContext, controller1);
+        assertNull(handlerMapping.getHandler(new MockHttpServletRequest("GET", "/test/foo")));
+    }
+
+    @Test
+    public void getHandler_RequestMetrics_ShouldRecordPluginRequests() throws Exception {
+        List<Boolean> recorded = new ArrayList<>();
+        handlerMapping.setRequestMetrics(new PluginRequestMetrics() {
+            @Override
+            public Recorder register(String pluginId, String pluginVersion, HandlerMethod handlerMethod) {
+                return (durationNanos, error) -> recorded.add(error);
+            }
+
+            @Override
+            public void remove(String pluginId) {
+            }
+        });
+        Object controller1 = new TestController();
+        handlerMapping.registerHandlerMethods("plugin1", "1.0.0", null, Collections.singletonList(controller1));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/test/foo");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HandlerExecutionChain chain = handlerMapping.getHandler(request);
+        HandlerInterceptor interceptor = chain.getInterceptors()[0];
+        assertThat(interceptor, instanceOf(PluginHandlerInterceptor.class));
+        assertTrue(interceptor.preHandle(request, response, chain.getHandler()));
+        response.setStatus(500);
+        interceptor.afterCompletion(request, response, chain.getHandler(), null);
+        assertThat(recorded, is(Collections.singletonList(true)));
+
+        handlerMapping.unregisterController(mainContext, controller1);
+        handlerMapping.detectHandlerMethods(controller1);
+        HandlerInterceptor[] interceptors = handlerMapping.getHandler(request).getInterceptors();
+        assertTrue(interceptors == null || interceptors.length == 0);
+    }
+
+    private Object getHandlerBean(String path) throws Exception {
+        HandlerExecutionChain chain = handlerMapping.getHandler(new MockHttpServletRequest("GET", path));
+        assertNotNull(chain);
+        return ((HandlerMethod) chain.getHandler()).getBean();
+    }
+
+    @RestController
+    static class TestController {
+
+        @GetMapping("/test/foo")
+        public String foo() {
+            return "foo";
+        }
+
+        @GetMapping("/test/bar")
+        public String bar() {
+            return "bar";
+        }
+    }
+
+    @RestController
+    static class AnotherTestController {
+
+        @GetMapping("/another/foo")
+        public String foo() {
+            return "foo";
+        }
+    }
+}
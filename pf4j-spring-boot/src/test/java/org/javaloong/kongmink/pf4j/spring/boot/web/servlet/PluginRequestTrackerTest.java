@@ -0,0 +1,97 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.DispatcherType;
+import java.util.concurrent.TimeUnit;
+
+import org.javaloong.kongmink.pf4j.spring.boot.web.PluginRequestTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class PluginRequestTrackerTest {
+
+    private PluginRequestTracker requestTracker;
+
+    private PluginHandlerInterceptor interceptor;
+
+    @BeforeEach
+    void init() {
+        requestTracker = new PluginRequestTracker("plugin1");
+        interceptor = new PluginHandlerInterceptor("plugin1", new Object(), null, null, requestTracker);
+    }
+
+    @Test
+    public void preHandle_ShouldTrackInFlightRequests() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertThat(requestTracker.getInFlightRequests(), is(1));
+
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(requestTracker.getInFlightRequests(), is(0));
+    }
+
+    @Test
+    public void preHandle_ForwardDispatch_ShouldExitWhenForwardCompletes() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setDispatcherType(DispatcherType.FORWARD);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertThat(requestTracker.getInFlightRequests(), is(1));
+
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(requestTracker.getInFlightRequests(), is(0));
+    }
+
+    @Test
+    public void preHandle_ForwardWithinPluginRequest_ShouldExitWhenRequestCompletes() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, null));
+        request.setDispatcherType(DispatcherType.FORWARD);
+        assertTrue(interceptor.preHandle(request, response, null));
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(requestTracker.getInFlightRequests(), is(1));
+
+        request.setDispatcherType(DispatcherType.REQUEST);
+        interceptor.afterCompletion(request, response, null, null);
+        assertThat(requestTracker.getInFlightRequests(), is(0));
+    }
+
+    @Test
+    public void drain_ShouldRefuseNewRequestsAndWaitForInFlightRequests() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+
+        CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(
+                () -> requestTracker.drain(5, TimeUnit.SECONDS));
+        while (!requestTracker.isDraining()) {
+            Thread.sleep(1);
+        }
+        MockHttpServletResponse refused = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), refused, null));
+        assertThat(refused.getStatus(), is(503));
+        assertFalse(drained.isDone());
+
+        interceptor.afterCompletion(request, response, null, null);
+        assertTrue(drained.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void drain_Timeout_ShouldReturnFalse() {
+        assertTrue(requestTracker.tryEnter());
+        assertFalse(requestTracker.drain(10, TimeUnit.MILLISECONDS));
+        assertThat(requestTracker.getInFlightRequests(), is(1));
+
+        requestTracker.reset();
+        assertTrue(requestTracker.tryEnter());
+    }
+}
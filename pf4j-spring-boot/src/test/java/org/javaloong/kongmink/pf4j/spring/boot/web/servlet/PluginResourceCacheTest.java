@@ -0,0 +1,77 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginStateEvent;
+import org.pf4j.PluginWrapper;
+import org.springframework.core.io.ClassPathResource;
+
+public class PluginResourceCacheTest {
+
+    private PluginResourceCache resourceCache;
+
+    @BeforeEach
+    void init() {
+        resourceCache = new PluginResourceCache("test", 1024 * 1024);
+    }
+
+    @Test
+    public void get_ShouldCountHitsAndMisses() {
+        assertNull(resourceCache.get("key1"));
+        resourceCache.put("key1", "value1");
+        assertThat(resourceCache.get("key1").get(), is("value1"));
+        assertThat(resourceCache.getHitCount(), is(1L));
+        assertThat(resourceCache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void put_OverMaxWeight_ShouldEvictLeastRecentlyUsed() {
+        resourceCache = new PluginResourceCache("test", 300);
+        resourceCache.put("key1", "value1");
+        resourceCache.put("key2", "value2");
+        resourceCache.get("key1");
+        resourceCache.put("key3", "value3");
+
+        assertNotNull(resourceCache.get("key1"));
+        assertNull(resourceCache.get("key2"));
+        assertNotNull(resourceCache.get("key3"));
+        assertThat(resourceCache.getEvictionCount(), is(1L));
+        assertTrue(resourceCache.getWeight() <= 300);
+    }
+
+    @Test
+    public void pluginStateChanged_ShouldEvictOnlyAffectedPluginEntries() {
+        PluginWrapper plugin1 = createPlugin("plugin1");
+        PluginWrapper plugin2 = createPlugin("plugin2");
+        resourceCache.addPlugin(plugin1);
+        resourceCache.addPlugin(plugin2);
+        resourceCache.put("resource1", new ClassPathResource("static/a.js", plugin1.getPluginClassLoader()));
+        resourceCache.put("resource2", new ClassPathResource("static/b.js", plugin2.getPluginClassLoader()));
+        resourceCache.put("resource3", new ClassPathResource("static/c.js", getClass().getClassLoader()));
+
+        when(plugin1.getPluginState()).thenReturn(PluginState.STOPPED);
+        resourceCache.pluginStateChanged(new PluginStateEvent(mock(PluginManager.class), plugin1, PluginState.STARTED));
+
+        assertNull(resourceCache.get("resource1"));
+        assertNotNull(resourceCache.get("resource2"));
+        assertNull(resourceCache.get("resource3"));
+        assertThat(resourceCache.size(), is(1));
+    }
+
+    private PluginWrapper createPlugin(String pluginId) {
+        PluginWrapper plugin = mock(PluginWrapper.class);
+        when(plugin.getPluginId()).thenReturn(pluginId);
+        when(plugin.getPluginClassLoader()).thenReturn(new URLClassLoader(new URL[0], null));
+        return plugin;
+    }
+}
@@ -0,0 +1,82 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.PluginWrapper;
+import org.springframework.util.FileSystemUtils;
+
+public class PluginResourceIndexTest {
+
+    private Path pluginsRoot;
+    private PluginResourceIndex resourceIndex;
+
+    @BeforeEach
+    void init() {
+        File pluginsDir = new File("build", "resource-index");
+        pluginsRoot = Paths.get(pluginsDir.getAbsolutePath());
+        resourceIndex = new PluginResourceIndex("classpath:/static/", "classpath:/public/");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        FileSystemUtils.deleteRecursively(pluginsRoot);
+    }
+
+    @Test
+    public void getOwner_ResourceInPlugin_ShouldReturnPluginId() throws Exception {
+        resourceIndex.addPlugin(createPlugin("plugin1", "static/js/app.js"));
+        resourceIndex.addPlugin(createPlugin("plugin2", "public/index.html"));
+
+        assertThat(resourceIndex.getOwner("static/", "js/app.js"), is("plugin1"));
+        assertThat(resourceIndex.getOwner("/public", "index.html"), is("plugin2"));
+        assertNull(resourceIndex.getOwner("static/", "index.html"));
+    }
+
+    @Test
+    public void isIndexed_ShouldMatchConfiguredLocations() {
+        assertTrue(resourceIndex.isIndexed("static/"));
+        assertTrue(resourceIndex.isIndexed("static/js/"));
+        assertFalse(resourceIndex.isIndexed("templates/"));
+    }
+
+    @Test
+    public void removePlugin_SharedResource_ShouldHandOverToNextPlugin() throws Exception {
+        resourceIndex.addPlugin(createPlugin("plugin1", "static/index.html"));
+        resourceIndex.addPlugin(createPlugin("plugin2", "static/index.html"));
+        assertThat(resourceIndex.getOwner("static/", "index.html"), is("plugin1"));
+
+        resourceIndex.removePlugin("plugin1");
+        assertThat(resourceIndex.getOwner("static/", "index.html"), is("plugin2"));
+        assertTrue(resourceIndex.getResources("plugin1").isEmpty());
+
+        resourceIndex.removePlugin("plugin2");
+        assertNull(resourceIndex.getOwner("static/", "index.html"));
+    }
+
+    private PluginWrapper createPlugin(String pluginId, String... resources) throws Exception {
+        Path pluginDir = pluginsRoot.resolve(pluginId);
+        for (String resource : resources) {
+            Path file = pluginDir.resolve(resource);
+            Files.createDirectories(file.getParent());
+            Files.write(file, resource.getBytes());
+        }
+        PluginWrapper plugin = mock(PluginWrapper.class);
+        when(plugin.getPluginId()).thenReturn(pluginId);
+        when(plugin.getPluginClassLoader()).thenReturn(
+                new URLClassLoader(new URL[] { pluginDir.toUri().toURL() }, null));
+        return plugin;
+    }
+}
@@ -0,0 +1,90 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+public class PluginResourceNotModifiedInterceptorTest {
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final PluginResourceNotModifiedInterceptor interceptor = new PluginResourceNotModifiedInterceptor();
+
+    @Test
+    public void preHandle_MatchingETag_ShouldAnswerNotModified() {
+        PluginHttpResource resource = createResource(null);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app.js");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(request, response, new TestResourceHandler(resource)));
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.getHeader(HttpHeaders.ETAG), is("\"abc\""));
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL), is(CACHE_CONTROL));
+        assertThat(response.getContentLength(), is(0));
+    }
+
+    @Test
+    public void preHandle_MatchingEncodedETag_ShouldAnswerNotModifiedWithVary() {
+        PluginHttpResource resource = createResource("gzip");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app.js");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc-gzip\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(request, response, new TestResourceHandler(resource)));
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.getHeader(HttpHeaders.VARY), is(HttpHeaders.ACCEPT_ENCODING));
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void preHandle_StaleETag_ShouldContinue() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app.js");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"old\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request, response, new TestResourceHandler(createResource(null))));
+        assertThat(response.getStatus(), is(200));
+    }
+
+    @Test
+    public void preHandle_NotPluginResource_ShouldContinue() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app.js");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "*");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request, response,
+                new TestResourceHandler(new ByteArrayResource(new byte[] { 1 }))));
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+        assertThat(response.getStatus(), is(200));
+    }
+
+    private static PluginHttpResource createResource(String contentEncoding) {
+        return new PluginHttpResource(new ByteArrayResource(new byte[] { 1, 2, 3 }), "plugin1", "app.js",
+                "abc", contentEncoding, 3, 1000L, CACHE_CONTROL);
+    }
+
+    private static class TestResourceHandler extends ResourceHttpRequestHandler {
+
+        private final Resource resource;
+
+        TestResourceHandler(Resource resource) {
+            this.resource = resource;
+        }
+
+        @Override
+        protected Resource getResource(HttpServletRequest request) {
+            return resource;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.javaloong.kongmink.pf4j.spring.boot.web.servlet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pf4j.PluginWrapper;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+
+public class PluginResourceStoreTest {
+
+    private Path root;
+    private PluginResourceIndex resourceIndex;
+    private PluginResourceStore resourceStore;
+
+    @BeforeEach
+    void init() {
+        File rootDir = new File("build", "resource-store");
+        root = Paths.get(rootDir.getAbsolutePath());
+        resourceIndex = new PluginResourceIndex("classpath:/static/");
+        resourceStore = new PluginResourceStore(root.resolve("store"), resourceIndex);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void addPlugin_ShouldStoreContentHashAndGzipVariant() throws Exception {
+        byte[] script = new byte[4096];
+        Arrays.fill(script, (byte) 'a');
+        PluginWrapper plugin = createPlugin("plugin1");
+        writeResource("plugin1", "static/app.js", script);
+        writeResource("plugin1", "static/logo.png", new byte[] { 1, 2, 3 });
+        resourceIndex.addPlugin(plugin);
+
+        resourceStore.addPlugin(plugin);
+
+        PluginResourceStore.StoredResource app = resourceStore.getStoredResource("plugin1", "static/app.js");
+        assertThat(app.getContentHash(), is(DigestUtils.md5DigestAsHex(script)));
+        assertThat(app.getContentLength(), is(4096L));
+        assertTrue(Files.isRegularFile(app.getGzipFile()));
+        assertTrue(app.getGzipLength() < app.getContentLength());
+
+        PluginResourceStore.StoredResource logo = resourceStore.getStoredResource("plugin1", "static/logo.png");
+        assertNull(logo.getGzipFile());
+        assertThat(resourceStore.getPluginId(plugin.getPluginClassLoader()), is("plugin1"));
+    }
+
+    @Test
+    public void removePlugin_ShouldDeleteStoredResources() throws Exception {
+        PluginWrapper plugin = createPlugin("plugin1");
+        writeResource("plugin1", "static/app.js", new byte[4096]);
+        resourceIndex.addPlugin(plugin);
+        resourceStore.addPlugin(plugin);
+        Path gzipFile = resourceStore.getStoredResource("plugin1", "static/app.js").getGzipFile();
+
+        resourceStore.removePlugin(plugin, true);
+        assertNull(resourceStore.getStoredResource("plugin1", "static/app.js"));
+        assertFalse(Files.exists(gzipFile));
+        assertNull(resourceStore.getPluginId(plugin.getPluginClassLoader()));
+    }
+
+    @Test
+    public void addPlugin_ExtractEnabled_ShouldExtractJarAndReuseOnRestart() throws Exception {
+        byte[] script = new byte[4096];
+        Path jarFile = root.resolve("plugin1.jar");
+        Files.createDirectories(root);
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jarFile))) {
+            out.putNextEntry(new JarEntry("static/app.js"));
+            out.write(script);
+            out.closeEntry();
+        }
+        PluginWrapper plugin = mock(PluginWrapper.class);
+        when(plugin.getPluginId()).thenReturn("plugin1");
+        when(plugin.getPluginPath()).thenReturn(jarFile);
+        when(plugin.getPluginClassLoader()).thenReturn(
+                new URLClassLoader(new URL[] { jarFile.toUri().toURL() }, null));
+        resourceIndex.addPlugin(plugin);
+        resourceStore.setExtractEnabled(true);
+
+        resourceStore.addPlugin(plugin);
+        Path file = resourceStore.getStoredResource("plugin1", "static/app.js").getFile();
+        assertThat(Files.readAllBytes(file), is(script));
+        assertThat(file.getParent().getParent().getFileName().toString(),
+                is("plugin1-" + DigestUtils.md5DigestAsHex(Files.readAllBytes(jarFile))));
+
+        resourceStore.removePlugin(plugin, false);
+        assertTrue(Files.exists(file));
+        PluginResourceStore restartedStore = new PluginResourceStore(root.resolve("store"), new PluginResourceIndex());
+        restartedStore.setExtractEnabled(true);
+        restartedStore.addPlugin(plugin);
+        PluginResourceStore.StoredResource reused = restartedStore.getStoredResource("plugin1", "static/app.js");
+        assertThat(reused.getFile(), is(file));
+        assertThat(reused.getContentHash(), is(DigestUtils.md5DigestAsHex(script)));
+
+        restartedStore.removePlugin(plugin, true);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void addPlugin_ExtractedFileMissing_ShouldExtractAgain() throws Exception {
+        byte[] script = new byte[4096];
+        Path jarFile = root.resolve("plugin1.jar");
+        Files.createDirectories(root);
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jarFile))) {
+            out.putNextEntry(new JarEntry("static/app.js"));
+            out.write(script);
+            out.closeEntry();
+        }
+        PluginWrapper plugin = mock(PluginWrapper.class);
+        when(plugin.getPluginId()).thenReturn("plugin1");
+        when(plugin.getPluginPath()).thenReturn(jarFile);
+        when(plugin.getPluginClassLoader()).thenReturn(
+                new URLClassLoader(new URL[] { jarFile.toUri().toURL() }, null));
+        resourceIndex.addPlugin(plugin);
+        resourceStore.setExtractEnabled(true);
+        resourceStore.addPlugin(plugin);
+        PluginResourceStore.StoredResource stored = resourceStore.getStoredResource("plugin1", "static/app.js");
+        resourceStore.removePlugin(plugin, false);
+        Files.delete(stored.getFile());
+        Files.delete(stored.getGzipFile());
+
+        PluginResourceStore restartedStore = new PluginResourceStore(root.resolve("store"), resourceIndex);
+        restartedStore.setExtractEnabled(true);
+        restartedStore.addPlugin(plugin);
+        PluginResourceStore.StoredResource extracted = restartedStore.getStoredResource("plugin1", "static/app.js");
+        assertThat(Files.readAllBytes(extracted.getFile()), is(script));
+        assertTrue(Files.isRegularFile(extracted.getGzipFile()));
+        assertThat(extracted.getContentHash(), is(DigestUtils.md5DigestAsHex(script)));
+    }
+
+    private void writeResource(String pluginId, String path, byte[] content) throws Exception {
+        Path file = root.resolve(pluginId).resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private PluginWrapper createPlugin(String pluginId) throws Exception {
+        Path pluginDir = root.resolve(pluginId);
+        Files.createDirectories(pluginDir);
+        PluginWrapper plugin = mock(PluginWrapper.class);
+        when(plugin.getPluginId()).thenReturn(pluginId);
+        when(plugin.getPluginClassLoader()).thenReturn(
+                new URLClassLoader(new URL[] { pluginDir.toUri().toURL() }, null));
+        return plugin;
+    }
+}
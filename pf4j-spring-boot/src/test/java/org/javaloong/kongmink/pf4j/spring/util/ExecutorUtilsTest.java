@@ -0,0 +1,72 @@
+package org.javaloong.kongmink.pf4j.spring.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ExecutorUtilsTest {
+
+    @Test
+    public void newVirtualThreadPerTaskExecutor_ShouldMatchVirtualThreadSupport() {
+        ExecutorService executor = ExecutorUtils.newVirtualThreadPerTaskExecutor();
+        try {
+            assertThat(executor != null, is(ExecutorUtils.isVirtualThreadSupported()));
+        } finally {
+            if (executor != null) executor.shutdown();
+        }
+    }
+
+    @Test
+    public void newExecutorService_ShouldRunTasks() throws Exception {
+        ExecutorService executor = ExecutorUtils.newExecutorService("test-", 2);
+        try {
+            assertThat(executor.submit(() -> "done").get(5, TimeUnit.SECONDS), is("done"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void newExecutorService_NoVirtualThreads_ShouldUseBoundedDaemonThreads() throws Exception {
+        if (ExecutorUtils.isVirtualThreadSupported()) return;
+
+        ExecutorService executor = ExecutorUtils.newExecutorService("test-", 2);
+        try {
+            assertThat(executor, instanceOf(ThreadPoolExecutor.class));
+            assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize(), is(2));
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            assertTrue(thread.isDaemon());
+            assertThat(thread.getName(), startsWith("test-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void newExecutorService_QueueFull_ShouldRunOnSubmittingThread() throws Exception {
+        if (ExecutorUtils.isVirtualThreadSupported()) return;
+
+        ExecutorService executor = ExecutorUtils.newExecutorService("test-", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.submit(() -> {
+                release.await();
+                return null;
+            });
+            executor.submit(() -> "queued");
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            assertThat(thread, sameInstance(Thread.currentThread()));
+            assertThat(((ThreadPoolExecutor) executor).getQueue().size(), is(1));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.javaloong.kongmink.pf4j.spring.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PathPrefixTrieTest {
+
+    private PathPrefixTrie<String> trie;
+
+    @BeforeEach
+    void init() {
+        trie = new PathPrefixTrie<>();
+        trie.put("/plugin1", "plugin1");
+        trie.put("/plugin1/admin/", "plugin1-admin");
+        trie.put("plugin2", "plugin2");
+    }
+
+    @Test
+    public void match_ShouldReturnLongestPrefix() {
+        assertThat(trie.match("/plugin1"), is("plugin1"));
+        assertThat(trie.match("/plugin1/items/1"), is("plugin1"));
+        assertThat(trie.match("/plugin1/admin/users"), is("plugin1-admin"));
+        assertThat(trie.match("//plugin2/"), is("plugin2"));
+    }
+
+    @Test
+    public void match_ShouldOnlyMatchWholeSegments() {
+        assertNull(trie.match("/plugin10/items"));
+        assertNull(trie.match("/"));
+        assertNull(trie.match("/other/plugin1"));
+    }
+
+    @Test
+    public void remove_ShouldRemoveOnlyMatchingValue() {
+        assertFalse(trie.remove("/plugin1", "other"));
+        assertTrue(trie.remove("/plugin1", "plugin1"));
+        assertNull(trie.match("/plugin1/items"));
+        assertThat(trie.match("/plugin1/admin"), is("plugin1-admin"));
+        assertThat(trie.size(), is(2));
+    }
+}